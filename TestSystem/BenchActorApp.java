@@ -0,0 +1,115 @@
+package TestSystem;
+
+import gamesleague.*;
+import java.io.File;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compares registering game reports directly with queueing them for each league's single
+ * writer, at a day close: many threads report at once into a few busy leagues.
+ * Every store update of a league re-encodes it for the journal, so the benchmark also
+ * counts league updates reaching the storage engine.
+ * Each run works in its own directory under ./bench so real save data is untouched;
+ * creating the entities allocates ids, so run it from a scratch directory.
+ */
+public class BenchActorApp {
+
+    private static final int LEAGUES = 4;
+    private static final int MEMBERS = 50;
+    private static final int THREADS = 64;
+    private static final int REPORTS = 500;
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("========== Starting League Actor Benchmark ==========\n");
+        new File("./src/gamesleague/save").mkdirs();
+
+        System.out.println(String.format("%-10s %10s %12s %12s %16s", "mode", "reports", "total ms",
+                "reports/s", "league updates"));
+        bench("direct");
+        bench("actor");
+
+        System.out.println("\n========== League Actor Benchmark Complete ==========");
+    }
+
+    private static void bench(String mode) throws Exception {
+        String saveDir = "./bench/actor-" + mode;
+        deleteDir(new File(saveDir));
+        AtomicInteger leagueUpdates = new AtomicInteger();
+        StorageEngine engine = new FileStorageEngine(saveDir, FsyncPolicy.BATCHED, GamesLeagueStore.DEFAULT_BATCH_SIZE,
+                GamesLeagueStore.DEFAULT_FLUSH_INTERVAL_MILLIS) {
+            @Override
+            public synchronized void leagueChanged(League league) {
+                leagueUpdates.incrementAndGet();
+                super.leagueChanged(league);
+            }
+        };
+        GamesLeague system = new GamesLeague(engine);
+
+        int today = (int) LocalDate.now().toEpochDay();
+        int[] leagues = new int[LEAGUES];
+        int[][] members = new int[LEAGUES][MEMBERS];
+        for (int i = 0; i < LEAGUES; i++) {
+            int owner = system.createPlayer("hot" + i + "@example.com", "Hot" + i, "Hot Owner " + i, "");
+            leagues[i] = system.createLeague(owner, "Hot League " + i, GameType.WORDMASTER);
+            system.setLeagueStartDate(leagues[i], today - 1);
+            system.setLeagueEndDate(leagues[i], today + 1000);
+            members[i][0] = owner;
+            for (int m = 1; m < MEMBERS; m++) {
+                String email = "hot" + i + "-" + m + "@example.com";
+                members[i][m] = system.createPlayer(email, "H" + i + "-" + m, "Hot Player " + m, "");
+                system.invitePlayerToLeague(leagues[i], email);
+                system.acceptInviteToLeague(leagues[i], members[i][m]);
+            }
+        }
+        leagueUpdates.set(0);
+
+        long start = System.nanoTime();
+        Thread[] threads = new Thread[THREADS];
+        List<List<CompletableFuture<Void>>> queued = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+            queued.add(futures);
+            threads[t] = new Thread(() -> {
+                for (int r = 0; r < REPORTS; r++) {
+                    int i = (thread + r) % LEAGUES;
+                    int playerId = members[i][(thread * REPORTS + r) % MEMBERS];
+                    String report = "thread " + thread + " game " + r;
+                    if (mode.equals("direct")) {
+                        system.registerGameReport(today, leagues[i], playerId, report);
+                    } else {
+                        futures.add(system.submitGameReport(today, leagues[i], playerId, report));
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (List<CompletableFuture<Void>> futures : queued) {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        int updates = leagueUpdates.get();
+        system.close();
+
+        System.out.println(String.format("%-10s %10d %12.1f %12.0f %16d", mode, THREADS * REPORTS, seconds * 1000,
+                THREADS * REPORTS / seconds, updates));
+        deleteDir(new File(saveDir));
+    }
+
+    private static void deleteDir(File dir) {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        dir.delete();
+    }
+}
@@ -0,0 +1,141 @@
+package TestSystem;
+
+import gamesleague.*;
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.LocalDate;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Compares the synchronous GamesLeague methods with AsyncGamesLeague under a few thousand
+ * concurrent callers. Each caller makes a run of requests, and each request reads a league
+ * (name, players, owners, status and a game report) and then registers a game report.
+ * Synchronous callers each need a thread of their own; asynchronous callers issue a
+ * request's reads together and chain the requests on their futures, so they need none.
+ * Each run works in its own directory under ./bench so real save data is untouched;
+ * creating the entities allocates ids, so run it from a scratch directory.
+ */
+public class BenchAsyncApp {
+
+    private static final int LEAGUES = 200;
+    private static final int CALLERS = 4000;
+    private static final int REQUESTS = 10;
+    // calls per request: five reads and a write
+    private static final int CALLS = 6;
+
+    private static boolean virtualThreads;
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("========== Starting Async Benchmark ==========\n");
+        new File("./src/gamesleague/save").mkdirs();
+
+        System.out.println(String.format("%-10s %10s %12s %12s %14s", "api", "callers", "total ms",
+                "calls/s", "peak threads"));
+        bench("sync");
+        bench("async");
+        System.out.println(virtualThreads ? "\nasync tasks ran on virtual threads"
+                : "\nasync tasks ran on a cached thread pool (this runtime has no virtual threads)");
+
+        System.out.println("\n========== Async Benchmark Complete ==========");
+    }
+
+    private static void bench(String api) throws Exception {
+        String saveDir = "./bench/async-" + api;
+        deleteDir(new File(saveDir));
+        GamesLeague system = new GamesLeague(saveDir, FsyncPolicy.BATCHED, GamesLeagueStore.DEFAULT_BATCH_SIZE,
+                GamesLeagueStore.DEFAULT_FLUSH_INTERVAL_MILLIS);
+        int[] leagues = new int[LEAGUES];
+        int[] owners = new int[LEAGUES];
+        int today = (int) LocalDate.now().toEpochDay();
+        for (int i = 0; i < LEAGUES; i++) {
+            owners[i] = system.createPlayer("async" + i + "@example.com", "Async" + i, "Async Player " + i, "");
+            leagues[i] = system.createLeague(owners[i], "Async League " + i, GameType.WORDMASTER);
+            system.setLeagueStartDate(leagues[i], today - REQUESTS);
+            system.setLeagueEndDate(leagues[i], today + 1000);
+        }
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        threads.resetPeakThreadCount();
+        long start = System.nanoTime();
+        if (api.equals("sync")) {
+            runSync(system, leagues, owners, today);
+        } else {
+            runAsync(system, leagues, owners, today);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        int peakThreads = threads.getPeakThreadCount();
+        system.close();
+
+        System.out.println(String.format("%-10s %10d %12.1f %12.0f %14d", api, CALLERS, seconds * 1000,
+                (double) CALLERS * REQUESTS * CALLS / seconds, peakThreads));
+        deleteDir(new File(saveDir));
+    }
+
+    // a thread per caller, all released together
+    private static void runSync(GamesLeague system, int[] leagues, int[] owners, int today) throws Exception {
+        CountDownLatch ready = new CountDownLatch(1);
+        Thread[] callers = new Thread[CALLERS];
+        for (int c = 0; c < CALLERS; c++) {
+            int caller = c;
+            callers[c] = new Thread(() -> {
+                try {
+                    ready.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int r = 0; r < REQUESTS; r++) {
+                    int i = (caller + r) % LEAGUES;
+                    int day = today - 1 - r;
+                    system.getLeagueName(leagues[i]);
+                    system.getLeaguePlayers(leagues[i]);
+                    system.getLeagueOwners(leagues[i]);
+                    system.getLeagueStatus(leagues[i]);
+                    system.getGameReport(day, leagues[i], owners[i]);
+                    system.registerGameReport(day, leagues[i], owners[i], "caller " + caller);
+                }
+            });
+            callers[c].start();
+        }
+        ready.countDown();
+        for (Thread caller : callers) {
+            caller.join();
+        }
+    }
+
+    // every caller's requests chained on futures, all started from this thread
+    private static void runAsync(GamesLeague system, int[] leagues, int[] owners, int today) {
+        AsyncGamesLeague async = new AsyncGamesLeague(system);
+        CompletableFuture<?>[] callers = new CompletableFuture<?>[CALLERS];
+        for (int c = 0; c < CALLERS; c++) {
+            CompletableFuture<Void> requests = CompletableFuture.completedFuture(null);
+            for (int r = 0; r < REQUESTS; r++) {
+                int caller = c;
+                int i = (c + r) % LEAGUES;
+                int day = today - 1 - r;
+                requests = requests.thenCompose(done -> CompletableFuture.allOf(
+                        async.getLeagueName(leagues[i]),
+                        async.getLeaguePlayers(leagues[i]),
+                        async.getLeagueOwners(leagues[i]),
+                        async.getLeagueStatus(leagues[i]),
+                        async.getGameReport(day, leagues[i], owners[i])))
+                    .thenCompose(done -> async.registerGameReport(day, leagues[i], owners[i], "caller " + caller));
+            }
+            callers[c] = requests;
+        }
+        CompletableFuture.allOf(callers).join();
+        virtualThreads = async.usesVirtualThreads();
+        async.close();
+    }
+
+    private static void deleteDir(File dir) {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        dir.delete();
+    }
+}
@@ -0,0 +1,115 @@
+package TestSystem;
+
+import gamesleague.*;
+import java.io.File;
+import java.util.ArrayList;
+
+/**
+ * Measures a full checkpoint of a large system against a delta checkpoint of the few
+ * leagues changed since, plus restore with deltas applied, the merge of the deltas and
+ * the heap held by decoded league sections before and after they are released.
+ * Works in ./bench/checkpoint so real save data is untouched; creating the leagues
+ * allocates ids, so run it from a scratch directory.
+ */
+public class BenchCheckpointApp {
+
+    private static final String SAVE_DIR = "./bench/checkpoint";
+    private static final int LEAGUES = 100000;
+    private static final int CHANGED = 300;
+    private static final int DAYS = 30;
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("========== Starting Checkpoint Benchmark ==========\n");
+        new File("./src/gamesleague/save").mkdirs();
+        deleteDir(new File(SAVE_DIR));
+
+        GamesLeagueStore store = new GamesLeagueStore(SAVE_DIR, FsyncPolicy.NONE, Integer.MAX_VALUE, 60000);
+        Player owner = new Player(store.nextPlayerId(), "bench@example.com", "Bench", "Bench Owner", "");
+        ArrayList<Player> players = new ArrayList<>();
+        players.add(owner);
+        ArrayList<League> leagues = new ArrayList<>();
+        for (int i = 0; i < LEAGUES; i++) {
+            League league = new League(store.nextLeagueId(), owner.getId(), "Bench League " + i, GameType.DICEROLL);
+            league.addPlayerToLeague(owner.getId());
+            for (int day = 0; day < DAYS; day++) {
+                league.addDayScores(20000 + day, new int[] {day % 7});
+                league.addGameReport(owner.getId(), 20000 + day, "rolled " + day % 7);
+            }
+            leagues.add(league);
+        }
+
+        // replacing the contents writes them as a full checkpoint
+        System.out.println(String.format("%-34s %12s", "step", "ms"));
+        long start = System.nanoTime();
+        store.replaceContents(players, leagues);
+        print("full checkpoint (" + LEAGUES + " leagues)", start);
+
+        for (int i = 0; i < CHANGED; i++) {
+            League league = store.getLeagues().get(i * (LEAGUES / CHANGED));
+            league.setLeagueName("Renamed " + i);
+            store.updateLeague(league);
+        }
+        start = System.nanoTime();
+        store.checkpoint();
+        print("delta checkpoint (" + CHANGED + " renamed)", start);
+
+        for (int i = 0; i < CHANGED; i++) {
+            League league = store.getLeagues().get(i * (LEAGUES / CHANGED) + 1);
+            league.addDayScores(20000 + DAYS, new int[] {3});
+            store.updateLeague(league);
+        }
+        start = System.nanoTime();
+        store.checkpoint();
+        print("delta checkpoint (" + CHANGED + " scored)", start);
+        store.close();
+        store = null; // so the heap figures below only count the restored store
+
+        start = System.nanoTime();
+        MappedStorageEngine engine = new MappedStorageEngine(SAVE_DIR, FsyncPolicy.NONE, Integer.MAX_VALUE, 60000);
+        GamesLeagueStore restored = new GamesLeagueStore(engine);
+        print("restore base + 2 deltas", start);
+
+        start = System.nanoTime();
+        engine.mergeDeltas();
+        print("merge 2 deltas into base", start);
+
+        long headersOnly = usedHeap();
+        for (League league : restored.getLeagues()) {
+            league.getDayScores();
+            league.getGameReports();
+        }
+        long decoded = usedHeap();
+        start = System.nanoTime();
+        int released = engine.reclaimIdleSections(0);
+        print("release sections of " + released, start);
+        long reclaimed = usedHeap();
+        restored.close();
+
+        System.out.println(String.format("%n%-34s %12s", "heap", "MB"));
+        System.out.println(String.format("%-34s %12.1f", "headers only", headersOnly / 1e6));
+        System.out.println(String.format("%-34s %12.1f", "every league's sections decoded", decoded / 1e6));
+        System.out.println(String.format("%-34s %12.1f", "after releasing idle sections", reclaimed / 1e6));
+
+        System.out.println("\n========== Checkpoint Benchmark Complete ==========");
+    }
+
+    private static long usedHeap() {
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static void print(String step, long start) {
+        System.out.println(String.format("%-34s %12.2f", step, (System.nanoTime() - start) / 1e6));
+    }
+
+    private static void deleteDir(File dir) {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        dir.delete();
+    }
+}
@@ -0,0 +1,168 @@
+package TestSystem;
+
+import gamesleague.*;
+import java.io.*;
+import java.util.ArrayList;
+
+/**
+ * Compares size and encode/decode time of default Java serialization against
+ * EntityCodec for a populated set of players and leagues, and restore time of a
+ * serialised file against a mapped Snapshot.
+ * Creating the sample entities allocates ids, so run it from a scratch directory.
+ */
+public class BenchCodecApp {
+
+    private static final int PLAYERS = 1000;
+    private static final int LEAGUES = 100;
+    private static final int MEMBERS = 20;
+    private static final int DAYS = 90;
+    private static final int ROUNDS = 10;
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("========== Starting Codec Benchmark ==========\n");
+        new File("./src/gamesleague/save").mkdirs();
+
+        ArrayList<Player> players = new ArrayList<>();
+        for (int i = 0; i < PLAYERS; i++) {
+            players.add(new Player(i, "bench" + i + "@example.com", "Bench" + i, "Bench Player " + i, "01234 567890"));
+        }
+        ArrayList<League> leagues = new ArrayList<>();
+        for (int i = 0; i < LEAGUES; i++) {
+            League league = new League(i, players.get(i).getId(), "Bench League " + i, GameType.DICEROLL);
+            for (int m = 0; m < MEMBERS; m++) {
+                league.addPlayerToLeague(players.get((i + m) % PLAYERS).getId());
+            }
+            for (int day = 0; day < DAYS; day++) {
+                int[] scores = new int[MEMBERS];
+                for (int m = 0; m < MEMBERS; m++) {
+                    scores[m] = (day * 7 + m * 13) % 30;
+                    league.addGameReport(players.get((i + m) % PLAYERS).getId(), 20000 + day, "rolled " + scores[m]);
+                }
+                league.addDayScores(20000 + day, scores);
+            }
+            leagues.add(league);
+        }
+
+        System.out.println(String.format("%-10s %-8s %12s %12s %12s", "entities", "format", "bytes", "encode ms", "decode ms"));
+        benchJava("players", players);
+        benchCodecPlayers(players);
+        benchJava("leagues", leagues);
+        benchCodecLeagues(leagues);
+        benchRestore(players, leagues);
+
+        System.out.println("\n========== Codec Benchmark Complete ==========");
+    }
+
+    private static void benchJava(String label, ArrayList<?> entities) throws Exception {
+        byte[] bytes = null;
+        long start = System.nanoTime();
+        for (int r = 0; r < ROUNDS; r++) {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            try (ObjectOutputStream out = new ObjectOutputStream(buffer)) {
+                out.writeObject(entities);
+            }
+            bytes = buffer.toByteArray();
+        }
+        long encodeNanos = (System.nanoTime() - start) / ROUNDS;
+
+        start = System.nanoTime();
+        for (int r = 0; r < ROUNDS; r++) {
+            try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+                in.readObject();
+            }
+        }
+        long decodeNanos = (System.nanoTime() - start) / ROUNDS;
+        print(label, "java", bytes.length, encodeNanos, decodeNanos);
+    }
+
+    private static void benchCodecPlayers(ArrayList<Player> players) throws IOException {
+        byte[][] encoded = new byte[players.size()][];
+        long start = System.nanoTime();
+        for (int r = 0; r < ROUNDS; r++) {
+            for (int i = 0; i < players.size(); i++) {
+                encoded[i] = EntityCodec.encodePlayer(players.get(i));
+            }
+        }
+        long encodeNanos = (System.nanoTime() - start) / ROUNDS;
+
+        start = System.nanoTime();
+        for (int r = 0; r < ROUNDS; r++) {
+            for (byte[] bytes : encoded) {
+                EntityCodec.decodePlayer(bytes);
+            }
+        }
+        long decodeNanos = (System.nanoTime() - start) / ROUNDS;
+        print("players", "codec", totalLength(encoded), encodeNanos, decodeNanos);
+    }
+
+    private static void benchCodecLeagues(ArrayList<League> leagues) throws IOException {
+        byte[][] encoded = new byte[leagues.size()][];
+        long start = System.nanoTime();
+        for (int r = 0; r < ROUNDS; r++) {
+            for (int i = 0; i < leagues.size(); i++) {
+                encoded[i] = EntityCodec.encodeLeague(leagues.get(i));
+            }
+        }
+        long encodeNanos = (System.nanoTime() - start) / ROUNDS;
+
+        start = System.nanoTime();
+        for (int r = 0; r < ROUNDS; r++) {
+            for (byte[] bytes : encoded) {
+                EntityCodec.decodeLeague(bytes);
+            }
+        }
+        long decodeNanos = (System.nanoTime() - start) / ROUNDS;
+        print("leagues", "codec", totalLength(encoded), encodeNanos, decodeNanos);
+    }
+
+    private static void benchRestore(ArrayList<Player> players, ArrayList<League> leagues) throws Exception {
+        new File("./bench").mkdirs();
+        String serFile = "./bench/restore.ser";
+        String snapFile = "./bench/restore.snap";
+        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(serFile))) {
+            out.writeObject(players);
+            out.writeObject(leagues);
+        }
+        Snapshot.write(snapFile, players, leagues);
+
+        System.out.println(String.format("%n%-24s %12s %12s", "restore", "bytes", "ms"));
+        long serNanos = 0;
+        long snapNanos = 0;
+        long touchNanos = 0;
+        for (int r = 0; r < ROUNDS; r++) {
+            long start = System.nanoTime();
+            try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(serFile)))) {
+                in.readObject();
+                in.readObject();
+            }
+            serNanos += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            Snapshot snapshot = Snapshot.read(snapFile);
+            snapNanos += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (League l : snapshot.getLeagues()) {
+                l.getDayScores();
+                l.getGameReports();
+            }
+            touchNanos += System.nanoTime() - start;
+        }
+        System.out.println(String.format("%-24s %12d %12.2f", "ObjectInputStream", new File(serFile).length(), serNanos / 1e6 / ROUNDS));
+        System.out.println(String.format("%-24s %12d %12.2f", "Snapshot (headers)", new File(snapFile).length(), snapNanos / 1e6 / ROUNDS));
+        System.out.println(String.format("%-24s %12s %12.2f", "  + touch every league", "", touchNanos / 1e6 / ROUNDS));
+    }
+
+    private static long totalLength(byte[][] encoded) {
+        long total = 0;
+        for (byte[] bytes : encoded) {
+            total += bytes.length;
+        }
+        return total;
+    }
+
+    private static void print(String label, String format, long bytes, long encodeNanos, long decodeNanos) {
+        System.out.println(String.format("%-10s %-8s %12d %12.2f %12.2f", label, format, bytes,
+                encodeNanos / 1e6, decodeNanos / 1e6));
+    }
+}
@@ -0,0 +1,113 @@
+package TestSystem;
+
+import gamesleague.*;
+import java.io.File;
+
+/**
+ * Compares the storage engines on the same workload: populating a system, a run of
+ * league updates, closing, and reopening it with and without touching every league's
+ * scores and reports.
+ * Each file based engine works in its own directory under ./bench so real save data
+ * is untouched; creating the entities allocates ids, so run it from a scratch directory.
+ */
+public class BenchEngineApp {
+
+    private static final int PLAYERS = 2000;
+    private static final int LEAGUES = 1000;
+    private static final int MEMBERS = 20;
+    private static final int DAYS = 30;
+    private static final int UPDATES = 20000;
+
+    public static void main(String[] args) {
+        System.out.println("========== Starting Storage Engine Benchmark ==========\n");
+        new File("./src/gamesleague/save").mkdirs();
+
+        System.out.println(String.format("%-10s %12s %12s %12s %12s %12s", "engine", "populate ms",
+                "updates/s", "close ms", "reopen ms", "+ touch ms"));
+        for (String name : new String[] {"memory", "file", "mapped"}) {
+            bench(name);
+        }
+
+        System.out.println("\n========== Storage Engine Benchmark Complete ==========");
+    }
+
+    private static StorageEngine engine(String name) {
+        String saveDir = "./bench/engine-" + name;
+        switch (name) {
+            case "memory":
+                return new InMemoryStorageEngine();
+            case "file":
+                return new FileStorageEngine(saveDir, FsyncPolicy.BATCHED, GamesLeagueStore.DEFAULT_BATCH_SIZE,
+                        GamesLeagueStore.DEFAULT_FLUSH_INTERVAL_MILLIS);
+            default:
+                return new MappedStorageEngine(saveDir, FsyncPolicy.BATCHED, GamesLeagueStore.DEFAULT_BATCH_SIZE,
+                        GamesLeagueStore.DEFAULT_FLUSH_INTERVAL_MILLIS);
+        }
+    }
+
+    private static void bench(String name) {
+        deleteDir(new File("./bench/engine-" + name));
+
+        long start = System.nanoTime();
+        GamesLeagueStore store = new GamesLeagueStore(engine(name));
+        int[] playerIds = new int[PLAYERS];
+        for (int i = 0; i < PLAYERS; i++) {
+            Player player = new Player(store.nextPlayerId(), "bench" + i + "@example.com", "Bench" + i, "Bench Player " + i, "");
+            store.addPlayer(player);
+            playerIds[i] = player.getId();
+        }
+        for (int i = 0; i < LEAGUES; i++) {
+            League league = new League(store.nextLeagueId(), playerIds[i % PLAYERS], "Bench League " + i, GameType.DICEROLL);
+            for (int m = 0; m < MEMBERS; m++) {
+                league.addPlayerToLeague(playerIds[(i + m) % PLAYERS]);
+            }
+            for (int day = 0; day < DAYS; day++) {
+                int[] scores = new int[MEMBERS];
+                for (int m = 0; m < MEMBERS; m++) {
+                    scores[m] = (day * 7 + m * 13) % 30;
+                    league.addGameReport(playerIds[(i + m) % PLAYERS], 20000 + day, "rolled " + scores[m]);
+                }
+                league.addDayScores(20000 + day, scores);
+            }
+            store.addLeague(league);
+        }
+        store.checkpoint();
+        double populateMs = (System.nanoTime() - start) / 1e6;
+
+        start = System.nanoTime();
+        for (int i = 0; i < UPDATES; i++) {
+            League league = store.getLeagues().get(i % LEAGUES);
+            league.setLeagueName("Renamed " + i);
+            store.updateLeague(league);
+        }
+        double updatesPerSecond = UPDATES / ((System.nanoTime() - start) / 1e9);
+
+        start = System.nanoTime();
+        store.close();
+        double closeMs = (System.nanoTime() - start) / 1e6;
+
+        start = System.nanoTime();
+        GamesLeagueStore reopened = new GamesLeagueStore(engine(name));
+        double reopenMs = (System.nanoTime() - start) / 1e6;
+        start = System.nanoTime();
+        for (League league : reopened.getLeagues()) {
+            league.getDayScores();
+            league.getGameReports();
+        }
+        double touchMs = (System.nanoTime() - start) / 1e6;
+        reopened.close();
+
+        System.out.println(String.format("%-10s %12.1f %12.0f %12.1f %12.1f %12.1f", name, populateMs,
+                updatesPerSecond, closeMs, reopenMs, touchMs));
+    }
+
+    private static void deleteDir(File dir) {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        dir.delete();
+    }
+}
@@ -0,0 +1,73 @@
+package TestSystem;
+
+import gamesleague.*;
+import java.io.File;
+
+/**
+ * Measures update throughput for each fsync policy of the write-behind store.
+ * Each run works in its own directory under ./bench so real save data is untouched.
+ */
+public class BenchPersistenceApp {
+
+    private static final int PLAYERS = 200;
+    private static final int UPDATES = 5000;
+
+    public static void main(String[] args) {
+        System.out.println("========== Starting Persistence Benchmark ==========\n");
+        new File("./src/gamesleague/save").mkdirs();
+
+        System.out.println(String.format("%-14s %12s %12s   %s", "policy", "updates/s", "close ms", "lost on power failure"));
+        for (FsyncPolicy policy : FsyncPolicy.values()) {
+            benchPolicy(policy);
+        }
+
+        System.out.println("\n========== Persistence Benchmark Complete ==========");
+    }
+
+    private static void benchPolicy(FsyncPolicy policy) {
+        String saveDir = "./bench/" + policy.name().toLowerCase();
+        deleteDir(new File(saveDir));
+
+        GamesLeague gl = new GamesLeague(saveDir, policy, GamesLeagueStore.DEFAULT_BATCH_SIZE,
+                GamesLeagueStore.DEFAULT_FLUSH_INTERVAL_MILLIS);
+        int[] ids = new int[PLAYERS];
+        for (int i = 0; i < PLAYERS; i++) {
+            ids[i] = gl.createPlayer("bench" + i + "@example.com", "Bench" + i, "Bench Player " + i, "");
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < UPDATES; i++) {
+            gl.updatePlayerDisplayName(ids[i % PLAYERS], "Name" + i);
+        }
+        long updateNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        gl.close();
+        long closeNanos = System.nanoTime() - start;
+
+        String lost;
+        switch (policy) {
+            case EVERY_COMMIT:
+                lost = "nothing";
+                break;
+            case BATCHED:
+                lost = "one open group (" + GamesLeagueStore.DEFAULT_BATCH_SIZE + " changes / "
+                        + GamesLeagueStore.DEFAULT_FLUSH_INTERVAL_MILLIS + " ms)";
+                break;
+            default:
+                lost = "anything not yet written back by the OS";
+        }
+        System.out.println(String.format("%-14s %12.0f %12.1f   %s", policy,
+                UPDATES / (updateNanos / 1e9), closeNanos / 1e6, lost));
+    }
+
+    private static void deleteDir(File dir) {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        dir.delete();
+    }
+}
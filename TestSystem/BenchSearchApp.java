@@ -0,0 +1,90 @@
+package TestSystem;
+
+import gamesleague.*;
+import java.util.Random;
+
+/**
+ * Times PlayerSearchIndex over a million generated players: building the index, then
+ * prefix and fuzzy top-10 queries. Works on the index alone, so nothing is saved and no
+ * ids are allocated.
+ */
+public class BenchSearchApp {
+
+    private static final int PLAYERS = 1000000;
+    private static final int QUERIES = 2000;
+    private static final int LIMIT = 10;
+
+    private static final String[] FIRST = {"alice", "bob", "carol", "dave", "erin", "frank", "grace", "heidi",
+            "ivan", "judy", "mallory", "niaj", "olivia", "peggy", "rupert", "sybil", "trent", "victor", "walter",
+            "xavier", "yvonne", "zara", "mohammed", "wei", "priya", "sofia", "lucas", "amara", "kenji", "ines"};
+    private static final String[] SYLLABLES = {"ka", "lo", "mi", "ne", "ru", "sa", "to", "vi", "da", "fe",
+            "go", "hu", "ji", "po", "ze", "qu", "bri", "ston", "ley", "son", "man", "berg", "wick", "ford"};
+
+    public static void main(String[] args) {
+        System.out.println("========== Starting Player Search Benchmark ==========\n");
+        Random random = new Random(1);
+        String[] surnames = new String[20000];
+        for (int i = 0; i < surnames.length; i++) {
+            surnames[i] = word(random, 2 + random.nextInt(2));
+        }
+
+        PlayerSearchIndex index = new PlayerSearchIndex();
+        String[] names = new String[PLAYERS];
+        long start = System.nanoTime();
+        for (int id = 0; id < PLAYERS; id++) {
+            names[id] = FIRST[random.nextInt(FIRST.length)] + " " + surnames[random.nextInt(surnames.length)];
+            String displayName = word(random, 2) + random.nextInt(1000);
+            index.update(id, displayName, names[id]);
+        }
+        System.out.println(String.format("indexed %d players in %.0f ms", PLAYERS, (System.nanoTime() - start) / 1e6));
+
+        String[] prefixes = new String[QUERIES];
+        String[] typos = new String[QUERIES];
+        for (int q = 0; q < QUERIES; q++) {
+            String surname = names[random.nextInt(PLAYERS)].split(" ")[1];
+            prefixes[q] = surname.substring(0, Math.min(surname.length(), 3 + random.nextInt(2)));
+            typos[q] = typo(random, surname);
+        }
+        time("prefix", index, prefixes, true);
+        time("fuzzy", index, typos, false);
+
+        System.out.println("\n========== Player Search Benchmark Complete ==========");
+    }
+
+    private static void time(String label, PlayerSearchIndex index, String[] queries, boolean prefix) {
+        // one pass to warm up, one timed
+        for (int pass = 0; pass < 2; pass++) {
+            long start = System.nanoTime();
+            long found = 0;
+            for (String query : queries) {
+                found += (prefix ? index.prefixSearch(query, LIMIT) : index.fuzzySearch(query, LIMIT)).length;
+            }
+            if (pass == 1) {
+                System.out.println(String.format("%-8s %6.3f ms/query, %.1f results/query", label,
+                        (System.nanoTime() - start) / 1e6 / queries.length, (double) found / queries.length));
+            }
+        }
+    }
+
+    private static String word(Random random, int syllables) {
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < syllables; i++) {
+            word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+        }
+        return word.toString();
+    }
+
+    // swaps two neighbouring letters, or replaces one
+    private static String typo(Random random, String word) {
+        char[] letters = word.toCharArray();
+        int i = random.nextInt(letters.length - 1);
+        if (random.nextBoolean()) {
+            char c = letters[i];
+            letters[i] = letters[i + 1];
+            letters[i + 1] = c;
+        } else {
+            letters[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(letters);
+    }
+}
@@ -0,0 +1,574 @@
+package TestSystem;
+
+import gamesleague.*;
+import java.io.File;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Checks that GamesLeague methods called from many threads at once lose no changes,
+ * keep the indexes in step with the leagues and never deadlock, including while the
+ * store's periodic checkpoints run and while callers share group commits.
+ * Creating players and leagues allocates ids, so run it from a scratch directory;
+ * journalled data goes to ./bench/concurrency-test.
+ */
+public class TestConcurrencyApp {
+
+    private static final String SAVE_DIR = "./bench/concurrency-test";
+    private static final int THREADS = 8;
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("========== Starting Concurrency Tests ==========\n");
+        new File("./src/gamesleague/save").mkdirs();
+        deleteDir(new File(SAVE_DIR));
+
+        testParallelReports();
+        testDuplicateEmails();
+        testInvitesAndDeactivation();
+        testCloneAndDeactivation();
+        testLockFreeReads();
+        testLeagueActors();
+        testAsyncClose();
+        testConditionalUpdates();
+        testCheckpointsUnderLoad();
+        testGroupCommit();
+        testReadsDuringRemoval();
+
+        deleteDir(new File(SAVE_DIR));
+        System.out.println("\n========== Concurrency Tests Complete ==========");
+    }
+
+    private static void testParallelReports() throws Exception {
+        System.out.println("\n--- Running Parallel Report Tests ---");
+
+        GamesLeague system = new GamesLeague(new InMemoryStorageEngine());
+        int[] leagues = newLeagues(system, "report", 16);
+        int start = (int) LocalDate.now().toEpochDay() - 10;
+
+        // every thread writes its own days in every league, so no report overwrites another
+        int perThread = 200;
+        boolean finished = runThreads(t -> {
+            for (int i = 0; i < perThread; i++) {
+                int leagueId = leagues[i % leagues.length];
+                int playerId = system.getLeagueOwners(leagueId)[0];
+                system.registerGameReport(start + t * perThread + i, leagueId, playerId, "t" + t + "-" + i);
+            }
+        });
+        check("report threads finish", finished);
+
+        boolean allKept = true;
+        for (int t = 0; t < THREADS; t++) {
+            for (int i = 0; i < perThread; i++) {
+                int leagueId = leagues[i % leagues.length];
+                int playerId = system.getLeagueOwners(leagueId)[0];
+                allKept &= ("t" + t + "-" + i).equals(system.getGameReport(start + t * perThread + i, leagueId, playerId));
+            }
+        }
+        check("every report from every thread is kept", allKept);
+    }
+
+    private static void testDuplicateEmails() throws Exception {
+        System.out.println("\n--- Running Duplicate Email Tests ---");
+
+        GamesLeague system = new GamesLeague(new InMemoryStorageEngine());
+        AtomicInteger created = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        boolean finished = runThreads(t -> {
+            try {
+                system.createPlayer("race@example.com", "Racer" + t, "Racing Player", "");
+                created.incrementAndGet();
+            } catch (RuntimeException e) {
+                // IllegalEmailException, which is not visible outside the package
+                rejected.incrementAndGet();
+            }
+        });
+        check("registration threads finish", finished);
+        check("one player registers a contested email", created.get() == 1 && rejected.get() == THREADS - 1);
+        check("the email is registered once", system.getPlayerIds().length == 1 && system.getPlayerId("RACE@example.com") != -1);
+    }
+
+    private static void testInvitesAndDeactivation() throws Exception {
+        System.out.println("\n--- Running Invite and Deactivation Tests ---");
+
+        GamesLeague system = new GamesLeague(new InMemoryStorageEngine());
+        int[] leagues = newLeagues(system, "invite", 6);
+
+        // each thread's players join every league from the end, in the opposite order to the
+        // next thread's, then leave through deactivation while other threads still join
+        int perThread = 20;
+        int[][] joined = new int[THREADS][perThread];
+        boolean finished = runThreads(t -> {
+            for (int i = 0; i < perThread; i++) {
+                String email = "joiner" + t + "-" + i + "@example.com";
+                int playerId = system.createPlayer(email, "J" + t + "-" + i, "Joining Player", "");
+                joined[t][i] = playerId;
+                for (int k = 0; k < leagues.length; k++) {
+                    int leagueId = leagues[t % 2 == 0 ? k : leagues.length - 1 - k];
+                    system.invitePlayerToLeague(leagueId, email);
+                    system.acceptInviteToLeague(leagueId, playerId);
+                }
+                if (i % 2 == 1) {
+                    system.deactivatePlayer(playerId);
+                }
+            }
+        });
+        check("invite and deactivation threads finish", finished);
+
+        boolean membersKept = true;
+        for (int leagueId : leagues) {
+            membersKept &= system.getLeaguePlayers(leagueId).length == 1 + THREADS * perThread;
+        }
+        check("every accepted invite is kept", membersKept);
+
+        boolean indexesAgree = true;
+        boolean deactivated = true;
+        for (int t = 0; t < THREADS; t++) {
+            for (int i = 0; i < perThread; i++) {
+                indexesAgree &= system.getPlayerLeagues(joined[t][i]).length == leagues.length;
+                indexesAgree &= system.getPlayerInvites(joined[t][i]).length == 0;
+                deactivated &= system.isDeactivatedPlayer(joined[t][i]) == (i % 2 == 1);
+            }
+        }
+        check("membership index agrees with the leagues", indexesAgree);
+        check("only the deactivated players are deactivated", deactivated);
+    }
+
+    private static void testCloneAndDeactivation() throws Exception {
+        System.out.println("\n--- Running Clone and Deactivation Tests ---");
+
+        GamesLeague system = new GamesLeague(new InMemoryStorageEngine());
+        int league = newLeagues(system, "cloned", 1)[0];
+        int owner = system.getLeagueOwners(league)[0];
+        int leaver = system.createPlayer("leaver@example.com", "Leaver", "Leaving Owner", "");
+        system.invitePlayerToLeague(league, "leaver@example.com");
+        system.acceptInviteToLeague(league, leaver);
+        system.addOwner(league, leaver);
+
+        // one thread deactivates the second owner while the others clone the league
+        int perThread = 20;
+        int[][] clones = new int[THREADS][perThread];
+        boolean finished = runThreads(t -> {
+            for (int i = 0; i < perThread; i++) {
+                if (t == 0) {
+                    if (i == perThread / 2) {
+                        system.deactivatePlayer(leaver);
+                    }
+                    continue;
+                }
+                clones[t][i] = system.cloneLeague(league, "clone" + t + "-" + i);
+            }
+        });
+        check("clone and deactivation threads finish", finished);
+
+        // a clone made before the deactivation keeps both owners, one made after only the active one
+        boolean ownersValid = true;
+        for (int t = 1; t < THREADS; t++) {
+            for (int i = 0; i < perThread; i++) {
+                int[] owners = system.getLeagueOwners(clones[t][i]);
+                ownersValid &= Arrays.equals(owners, new int[] {owner})
+                        || Arrays.equals(owners, new int[] {owner, leaver});
+            }
+        }
+        check("every clone is owned by the active owner", ownersValid);
+        int later = system.cloneLeague(league, "clone-later");
+        check("a clone made after the deactivation leaves the owner out",
+                Arrays.equals(system.getLeagueOwners(later), new int[] {owner}));
+    }
+
+    private static void testLockFreeReads() throws Exception {
+        System.out.println("\n--- Running Lock-Free Read Tests ---");
+
+        GamesLeague system = new GamesLeague(new InMemoryStorageEngine());
+        int leagueId = newLeagues(system, "view", 1)[0];
+        int owner = system.getLeagueOwners(leagueId)[0];
+        int today = (int) LocalDate.now().toEpochDay();
+
+        // one thread admits players while the others read the league; every read must show
+        // whole admissions, in order, and never fewer players than the read before
+        int admitted = 400;
+        AtomicInteger broken = new AtomicInteger();
+        boolean finished = runThreads(t -> {
+            if (t == 0) {
+                for (int i = 0; i < admitted; i++) {
+                    String email = "reader" + i + "@example.com";
+                    int playerId = system.createPlayer(email, "R" + i, "Read Player", "");
+                    system.invitePlayerToLeague(leagueId, email);
+                    system.acceptInviteToLeague(leagueId, playerId);
+                }
+                return;
+            }
+            int seen = 0;
+            while (seen < admitted + 1) {
+                int[] players = system.getLeaguePlayers(leagueId);
+                int[] invites = system.getLeaguePlayerInvites(leagueId);
+                boolean distinct = Arrays.stream(players).distinct().count() == players.length;
+                if (players[0] != owner || players.length < seen || !distinct || invites.length > 1) {
+                    broken.incrementAndGet();
+                }
+                seen = players.length;
+            }
+        });
+        check("reads run alongside writes", finished);
+        check("reads only see whole changes", broken.get() == 0);
+
+        // what readers get back is theirs to change, or cannot be changed
+        system.getLeaguePlayers(leagueId)[0] = -1;
+        check("returned players are copies", system.getLeaguePlayers(leagueId)[0] == owner);
+        League league = new League(0, owner, "Copies", GameType.DICEROLL);
+        int[] scores = {5};
+        league.addDayScores(today, scores);
+        scores[0] = 99;
+        check("stored scores are copies", league.getDayScores().get(today)[0] == 5);
+        boolean readOnly = true;
+        try {
+            league.getLeaguePlayerIds().add(owner + 1);
+            readOnly = false;
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        try {
+            league.getDayScores().remove(today);
+            readOnly = false;
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        check("league collections are read-only", readOnly && league.getLeaguePlayerIds().isEmpty());
+    }
+
+    private static void testLeagueActors() throws Exception {
+        System.out.println("\n--- Running League Actor Tests ---");
+
+        GamesLeague system = new GamesLeague(new InMemoryStorageEngine());
+        int[] leagues = newLeagues(system, "actor", 2);
+        int start = (int) LocalDate.now().toEpochDay() - 10;
+
+        // every thread queues its own days in both leagues, so no report overwrites another
+        int perThread = 300;
+        List<List<CompletableFuture<Void>>> queued = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            queued.add(new ArrayList<>());
+        }
+        boolean finished = runThreads(t -> {
+            for (int i = 0; i < perThread; i++) {
+                int leagueId = leagues[i % leagues.length];
+                int playerId = system.getLeagueOwners(leagueId)[0];
+                queued.get(t).add(system.submitGameReport(start + t * perThread + i, leagueId, playerId, "a" + t + "-" + i));
+            }
+        });
+        boolean allDone = true;
+        for (List<CompletableFuture<Void>> futures : queued) {
+            for (CompletableFuture<Void> future : futures) {
+                allDone &= complete(future) == null;
+            }
+        }
+        check("queued reports complete", finished && allDone);
+
+        boolean allKept = true;
+        for (int t = 0; t < THREADS; t++) {
+            for (int i = 0; i < perThread; i++) {
+                int leagueId = leagues[i % leagues.length];
+                int playerId = system.getLeagueOwners(leagueId)[0];
+                allKept &= ("a" + t + "-" + i).equals(system.getGameReport(start + t * perThread + i, leagueId, playerId));
+            }
+        }
+        check("every queued report is registered", allKept);
+
+        // queued changes fail as the synchronous methods would, without failing the rest
+        int owner = system.getLeagueOwners(leagues[0])[0];
+        CompletableFuture<Void> stranger = system.submitGameReport(start, leagues[0], owner + 1000, "stranger");
+        CompletableFuture<Void> member = system.submitGameReport(start, leagues[0], owner, "member");
+        CompletableFuture<Void> noLeague = system.submitGameReport(start, -1, owner, "nowhere");
+        check("a report from a non-member fails on its own", complete(stranger) != null && complete(member) == null
+                && "member".equals(system.getGameReport(start, leagues[0], owner)));
+        check("a report to a missing league fails", complete(noLeague) != null);
+
+        Throwable queuedScores = complete(system.submitDayScores(start, leagues[0], new int[] {3}));
+        Throwable syncScores = null;
+        try {
+            system.registerDayScores(start, leagues[0], new int[] {3});
+        } catch (RuntimeException e) {
+            syncScores = e;
+        }
+        check("queued scores are checked as registerDayScores checks them",
+                queuedScores == null ? syncScores == null
+                        : syncScores != null && queuedScores.getClass() == syncScores.getClass());
+
+        // a mailbox is dropped just after its last change completes
+        long deadline = System.currentTimeMillis() + 1000;
+        while (system.getQueuedLeagueCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        check("drained leagues keep no mailbox", system.getQueuedLeagueCount() == 0);
+
+        // close registers whatever is still queued
+        CompletableFuture<Void> last = system.submitGameReport(start + 1, leagues[1], system.getLeagueOwners(leagues[1])[0], "last");
+        system.close();
+        check("close registers queued reports", last.isDone() && !last.isCompletedExceptionally());
+    }
+
+    private static void testConditionalUpdates() throws Exception {
+        System.out.println("\n--- Running Conditional Update Tests ---");
+
+        GamesLeague system = new GamesLeague(new InMemoryStorageEngine());
+        int leagueId = newLeagues(system, "version", 1)[0];
+        int owner = system.getLeagueOwners(leagueId)[0];
+
+        long seen = system.getLeagueVersion(leagueId);
+        check("a conditional rename at the current version applies",
+                system.updateLeagueName(leagueId, "renamed", seen) && system.getLeagueName(leagueId).equals("renamed"));
+        check("a change moves the league to a later version", system.getLeagueVersion(leagueId) > seen);
+        check("a conditional rename at an old version is refused",
+                !system.updateLeagueName(leagueId, "stale", seen) && system.getLeagueName(leagueId).equals("renamed"));
+        long unchanged = system.getLeagueVersion(leagueId);
+        system.getLeaguePlayers(leagueId);
+        system.getLeagueStatus(leagueId);
+        check("reads leave the version alone", system.getLeagueVersion(leagueId) == unchanged);
+
+        long playerSeen = system.getPlayerVersion(owner);
+        check("a conditional display name update applies",
+                system.updatePlayerDisplayName(owner, "Newer", playerSeen) && system.getPlayerDisplayName(owner).equals("Newer"));
+        check("an old player version is refused",
+                !system.updatePlayerDisplayName(owner, "Stale", playerSeen) && system.getPlayerDisplayName(owner).equals("Newer"));
+        check("an invalid name is rejected before the version is compared",
+                rejected(() -> system.updateLeagueName(leagueId, "   ", seen))
+                && rejected(() -> system.updatePlayerDisplayName(owner, "", playerSeen)));
+
+        // every thread counts up in the league's name, retrying whenever another got in first;
+        // reading the version before the name means a stale name always fails its update
+        int perThread = 50;
+        system.updateLeagueName(leagueId, "n0", system.getLeagueVersion(leagueId));
+        boolean finished = runThreads(t -> {
+            for (int i = 0; i < perThread; i++) {
+                while (true) {
+                    long version = system.getLeagueVersion(leagueId);
+                    int count = Integer.parseInt(system.getLeagueName(leagueId).substring(1));
+                    if (system.updateLeagueName(leagueId, "n" + (count + 1), version)) {
+                        break;
+                    }
+                }
+            }
+        });
+        check("conditional update threads finish", finished);
+        check("no conditional update is lost", system.getLeagueName(leagueId).equals("n" + THREADS * perThread));
+    }
+
+    private static void testAsyncClose() throws Exception {
+        System.out.println("\n--- Running Async Close Tests ---");
+
+        GamesLeague system = new GamesLeague(new InMemoryStorageEngine());
+        int owner = system.createPlayer("async@example.com", "Async", "Async Owner", "");
+        int leagueId = system.createLeague(owner, "Async League", GameType.DICEROLL);
+
+        // one write at a time, so most are still queued for a permit when close is called
+        AsyncGamesLeague async = new AsyncGamesLeague(system, 1);
+        List<CompletableFuture<Void>> writes = new ArrayList<>();
+        int day = (int) LocalDate.now().toEpochDay();
+        system.setLeagueStartDate(leagueId, day - 300);
+        system.setLeagueEndDate(leagueId, day + 10);
+        for (int i = 0; i < 200; i++) {
+            writes.add(async.updateLeagueName(leagueId, "Async League " + i));
+            // reports go to the league's single writer rather than through the write queue
+            writes.add(async.registerGameReport(day - i, leagueId, owner, "report " + i));
+        }
+        async.close();
+        boolean allDone = true;
+        for (CompletableFuture<Void> write : writes) {
+            allDone &= write.isDone() && complete(write) == null;
+        }
+        check("close runs the writes queued before it", allDone
+                && system.getLeagueName(leagueId).equals("Async League 199")
+                && "report 199".equals(system.getGameReport(day - 199, leagueId, owner)));
+
+        Throwable read = complete(async.getLeagueName(leagueId));
+        Throwable write = complete(async.updateLeagueName(leagueId, "Too Late"));
+        Throwable status = complete(async.getLeagueStatus(leagueId));
+        Throwable report = complete(async.registerGameReport(day, leagueId, owner, "too late"));
+        Throwable scores = complete(async.registerDayScores(day, leagueId, new int[] {1}));
+        check("reads and writes are both rejected once closed", read instanceof RejectedExecutionException
+                && write instanceof RejectedExecutionException && status instanceof RejectedExecutionException
+                && system.getLeagueName(leagueId).equals("Async League 199"));
+        check("queued reports and scores are rejected once closed", report instanceof RejectedExecutionException
+                && scores instanceof RejectedExecutionException && !"too late".equals(system.getGameReport(day, leagueId, owner)));
+        system.close();
+    }
+
+    // true if the action threw
+    private static boolean rejected(Runnable action) {
+        try {
+            action.run();
+            return false;
+        } catch (RuntimeException e) {
+            return true;
+        }
+    }
+
+    // waits for the future; null if it completed normally, else what it failed with
+    private static Throwable complete(CompletableFuture<?> future) {
+        try {
+            future.join();
+            return null;
+        } catch (CompletionException e) {
+            return e.getCause();
+        }
+    }
+
+    private static void testCheckpointsUnderLoad() throws Exception {
+        System.out.println("\n--- Running Checkpoint Under Load Tests ---");
+
+        // every change is its own journal record, so the threads' changes fill several
+        // checkpoint intervals and checkpoints run between their writes
+        GamesLeague system = new GamesLeague(SAVE_DIR, FsyncPolicy.NONE, 1, 200);
+        int[] leagues = newLeagues(system, "checkpoint", 8);
+        int start = (int) LocalDate.now().toEpochDay() - 10;
+
+        int perThread = JournalledStorageEngine.CHECKPOINT_INTERVAL / 2;
+        boolean finished = runThreads(t -> {
+            for (int i = 0; i < perThread; i++) {
+                int leagueId = leagues[(t + i) % leagues.length];
+                int playerId = system.getLeagueOwners(leagueId)[0];
+                system.registerGameReport(start + t * perThread + i, leagueId, playerId, "c" + t + "-" + i);
+            }
+        });
+        check("threads finish while checkpoints run", finished);
+        system.close();
+        check("checkpoints were written", new File(SAVE_DIR, "MANIFEST").exists());
+
+        GamesLeague reopened = new GamesLeague(SAVE_DIR, FsyncPolicy.NONE, 1, 200);
+        boolean allKept = true;
+        for (int t = 0; t < THREADS; t++) {
+            for (int i = 0; i < perThread; i++) {
+                int leagueId = leagues[(t + i) % leagues.length];
+                int playerId = reopened.getLeagueOwners(leagueId)[0];
+                allKept &= ("c" + t + "-" + i).equals(reopened.getGameReport(start + t * perThread + i, leagueId, playerId));
+            }
+        }
+        check("every report survives checkpoints and reopening", allKept);
+        check("reopened leagues agree", Arrays.equals(reopened.getLeagueIds(), system.getLeagueIds()));
+        reopened.close();
+    }
+
+    private static void testGroupCommit() throws Exception {
+        System.out.println("\n--- Running Group Commit Tests ---");
+
+        // every call waits for its record to be fsynced, mostly by a commit another thread leads
+        GamesLeague system = new GamesLeague(SAVE_DIR, FsyncPolicy.EVERY_COMMIT, 64, 200);
+        int[] leagues = newLeagues(system, "group", THREADS);
+        int start = (int) LocalDate.now().toEpochDay() - 10;
+        int perThread = 50;
+        boolean finished = runThreads(t -> {
+            for (int i = 0; i < perThread; i++) {
+                int playerId = system.getLeagueOwners(leagues[t])[0];
+                system.registerGameReport(start + i, leagues[t], playerId, "g" + t + "-" + i);
+            }
+        });
+        check("threads finish while sharing commits", finished);
+        system.close();
+
+        GamesLeague reopened = new GamesLeague(SAVE_DIR, FsyncPolicy.EVERY_COMMIT, 64, 200);
+        boolean allKept = true;
+        for (int t = 0; t < THREADS; t++) {
+            int playerId = reopened.getLeagueOwners(leagues[t])[0];
+            for (int i = 0; i < perThread; i++) {
+                allKept &= ("g" + t + "-" + i).equals(reopened.getGameReport(start + i, leagues[t], playerId));
+            }
+        }
+        check("every committed report survives reopening", allKept);
+        reopened.close();
+    }
+
+    private static void testReadsDuringRemoval() throws Exception {
+        System.out.println("\n--- Running Reads During Removal Tests ---");
+
+        GamesLeague system = new GamesLeague(SAVE_DIR, FsyncPolicy.NONE, 64, 200);
+        int[] leagues = newLeagues(system, "removed", 64);
+        int yesterday = (int) LocalDate.now().toEpochDay() - 1;
+        AtomicInteger nullPointers = new AtomicInteger();
+        boolean finished = runThreads(t -> {
+            if (t == 0) {
+                for (int leagueId : leagues) {
+                    system.removeLeague(leagueId);
+                }
+                return;
+            }
+            for (int round = 0; round < 20; round++) {
+                for (int leagueId : leagues) {
+                    try {
+                        system.getLeagueStatus(leagueId);
+                        system.getDayScores(leagueId, yesterday);
+                    } catch (NullPointerException e) {
+                        nullPointers.incrementAndGet();
+                    } catch (RuntimeException e) {
+                        // the league is gone, reported as an invalid id
+                    }
+                }
+            }
+        });
+        check("reads of leagues being removed finish", finished);
+        check("a removed league is reported, never dereferenced", nullPointers.get() == 0);
+        system.close();
+    }
+
+    // leagues with one owner each, running from ten days ago for a long while
+    private static int[] newLeagues(GamesLeague system, String prefix, int count) {
+        int today = (int) LocalDate.now().toEpochDay();
+        int[] leagues = new int[count];
+        for (int i = 0; i < count; i++) {
+            int owner = system.createPlayer(prefix + i + "@example.com", "Owner" + i, "League Owner " + i, "");
+            leagues[i] = system.createLeague(owner, prefix + "-" + i, GameType.WORDMASTER);
+            system.setLeagueStartDate(leagues[i], today - 10);
+            system.setLeagueEndDate(leagues[i], today + 100000);
+        }
+        return leagues;
+    }
+
+    private interface Work {
+        void run(int thread) throws Exception;
+    }
+
+    // runs the work on every thread at once; false if any thread failed or they did not
+    // all finish within a minute, e.g. because of a deadlock
+    private static boolean runThreads(Work work) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        AtomicInteger failures = new AtomicInteger();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            pool.execute(() -> {
+                try {
+                    work.run(thread);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    failures.incrementAndGet();
+                }
+            });
+        }
+        pool.shutdown();
+        boolean finished = pool.awaitTermination(1, TimeUnit.MINUTES);
+        if (!finished) {
+            pool.shutdownNow();
+        }
+        return finished && failures.get() == 0;
+    }
+
+    private static void check(String label, boolean passed) {
+        System.out.println((passed ? "PASS: " : "FAIL: ") + label);
+    }
+
+    private static void deleteDir(File dir) {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        dir.delete();
+    }
+}
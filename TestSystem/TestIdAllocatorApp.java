@@ -0,0 +1,134 @@
+package TestSystem;
+
+import gamesleague.*;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Checks that IdAllocator never hands out an id twice, across threads and across
+ * a restart without a clean shutdown, refuses an unreadable reservation, keeps each
+ * store's ids with its own save folder, and times bulk allocation.
+ * Works in ./bench/ids so real save data is untouched.
+ */
+public class TestIdAllocatorApp {
+
+    private static final String ID_FILE = "./bench/ids/nextId.ser";
+    private static final int THREADS = 8;
+    private static final int IDS_PER_THREAD = 50000;
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("========== Starting Id Allocator Tests ==========\n");
+        new File(ID_FILE).getParentFile().mkdirs();
+        new File(ID_FILE).delete();
+
+        testRestart();
+        testUnreadable();
+        testPerSaveDir();
+        testConcurrent();
+
+        System.out.println("\n========== Id Allocator Tests Complete ==========");
+    }
+
+    private static void testRestart() {
+        System.out.println("\n--- Running Restart Tests ---");
+
+        IdAllocator first = new IdAllocator(ID_FILE);
+        Set<Integer> handedOut = new HashSet<>();
+        for (int i = 0; i < 1500; i++) {
+            handedOut.add(first.nextId());
+        }
+        check("ids handed out in order", handedOut.contains(0) && handedOut.contains(1499));
+
+        // a new allocator on the same file stands in for a restart after a crash
+        IdAllocator restarted = new IdAllocator(ID_FILE);
+        int resumed = restarted.nextId();
+        check("restart resumes after the reserved block (" + resumed + ")",
+                resumed == 2 * IdAllocator.BLOCK_SIZE && !handedOut.contains(resumed));
+    }
+
+    private static void testUnreadable() throws Exception {
+        System.out.println("\n--- Running Unreadable Reservation Tests ---");
+
+        String path = "./bench/ids/corrupt.ser";
+        try (FileOutputStream out = new FileOutputStream(path)) {
+            out.write(new byte[] {1, 2, 3, 4});
+        }
+        boolean refused = false;
+        try {
+            new IdAllocator(path);
+        } catch (RuntimeException e) {
+            refused = true;
+        }
+        check("an unreadable reservation is refused rather than restarted at 0", refused);
+
+        // the truncate make target empties the files to start the ids again
+        new FileOutputStream(path).close();
+        check("an empty reservation starts at 0", new IdAllocator(path).nextId() == 0);
+        new File(path).delete();
+    }
+
+    private static void testPerSaveDir() {
+        System.out.println("\n--- Running Per Save Folder Tests ---");
+
+        String[] dirs = {"./bench/ids/store-a", "./bench/ids/store-b"};
+        int[] firstIds = new int[dirs.length];
+        for (int i = 0; i < dirs.length; i++) {
+            deleteDir(new File(dirs[i]));
+            GamesLeague system = new GamesLeague(dirs[i], FsyncPolicy.NONE, 64, 200);
+            firstIds[i] = system.createPlayer("first" + i + "@example.com", "First" + i, "First Player", "");
+            system.close();
+        }
+        check("each save folder has its own id sequence", firstIds[0] == 0 && firstIds[1] == 0
+                && new File(dirs[0], "nextId.ser").exists() && new File(dirs[1], "nextId.ser").exists());
+
+        GamesLeague reopened = new GamesLeague(dirs[0], FsyncPolicy.NONE, 64, 200);
+        int next = reopened.createPlayer("second@example.com", "Second", "Second Player", "");
+        reopened.close();
+        check("a reopened save folder carries on its own sequence", next > firstIds[0]);
+        for (String dir : dirs) {
+            deleteDir(new File(dir));
+        }
+    }
+
+    private static void testConcurrent() throws Exception {
+        System.out.println("\n--- Running Concurrent Tests ---");
+
+        IdAllocator allocator = new IdAllocator(ID_FILE);
+        Set<Integer> ids = ConcurrentHashMap.newKeySet();
+        Thread[] threads = new Thread[THREADS];
+        long start = System.nanoTime();
+        for (int t = 0; t < THREADS; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < IDS_PER_THREAD; i++) {
+                    ids.add(allocator.nextId());
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long nanos = System.nanoTime() - start;
+
+        check("no id handed out twice", ids.size() == THREADS * IDS_PER_THREAD);
+        System.out.println(String.format("%d ids in %.1f ms (%.0f ids/s)", ids.size(), nanos / 1e6,
+                ids.size() / (nanos / 1e9)));
+    }
+
+    private static void deleteDir(File dir) {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    private static void check(String label, boolean passed) {
+        System.out.println((passed ? "PASS: " : "FAIL: ") + label);
+    }
+}
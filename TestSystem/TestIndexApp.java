@@ -0,0 +1,416 @@
+package TestSystem;
+
+import gamesleague.*;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Checks the lookup indexes kept by GamesLeagueStore against the behaviour of the
+ * GamesLeague methods that use them.
+ * Runs on an InMemoryStorageEngine so no save data is written; creating players and
+ * leagues still allocates ids, so run it from a scratch directory.
+ */
+public class TestIndexApp {
+
+    public static void main(String[] args) {
+        System.out.println("========== Starting Index Tests ==========\n");
+
+        testIntMap();
+        testIntSet();
+        testIdLookup();
+        testEmailIndex();
+        testEmailFilter();
+        testLeagueNameIndex();
+        testMembershipIndex();
+        testOwnerIndex();
+        testInviteIndex();
+        testPlayerSearch();
+        testLeagueQueries();
+        testRemoveLeague();
+
+        System.out.println("\n========== Index Tests Complete ==========");
+    }
+
+    private static void testIntMap() {
+        System.out.println("\n--- Running IntMap Tests ---");
+
+        // random puts and removes checked against a HashMap, with clustered and spread keys
+        IntMap<Integer> map = new IntMap<>();
+        HashMap<Integer, Integer> expected = new HashMap<>();
+        Random random = new Random(42);
+        boolean agrees = true;
+        for (int i = 0; i < 200000; i++) {
+            int key = random.nextBoolean() ? random.nextInt(5000) : random.nextInt() * 1000;
+            if (random.nextInt(3) == 0) {
+                agrees &= Objects.equals(map.remove(key), expected.remove(key));
+            } else {
+                agrees &= Objects.equals(map.put(key, i), expected.put(key, i));
+            }
+        }
+        for (int key : expected.keySet()) {
+            agrees &= expected.get(key).equals(map.get(key));
+        }
+        check("agrees with HashMap after random puts and removes", agrees && map.size() == expected.size());
+        check("missing key gives null", map.get(-7) == null && !map.containsKey(-7));
+    }
+
+    private static void testIntSet() {
+        System.out.println("\n--- Running IntSet Tests ---");
+
+        // random adds and removes checked against a LinkedHashSet, including its order
+        IntSet set = new IntSet();
+        LinkedHashSet<Integer> expected = new LinkedHashSet<>();
+        Random random = new Random(7);
+        boolean agrees = true;
+        for (int i = 0; i < 200000; i++) {
+            int value = random.nextInt(3000) - 1000;
+            if (random.nextInt(3) == 0) {
+                agrees &= set.remove(value) == expected.remove(value);
+            } else {
+                agrees &= set.add(value) == expected.add(value);
+            }
+        }
+        int[] inOrder = expected.stream().mapToInt(Integer::intValue).toArray();
+        check("agrees with LinkedHashSet, in insertion order", agrees && Arrays.equals(set.toIntArray(), inOrder));
+        check("prints like a list", new IntSet(Arrays.asList(3, 1, 2)).toString().equals("[3, 1, 2]"));
+
+        // inviting and admitting players one by one stays linear in a large league
+        GamesLeague system = new GamesLeague(new InMemoryStorageEngine());
+        int owner = system.createPlayer("big@example.com", "Big", "Big League Owner", "");
+        League league = new League(0, owner, "Big League", GameType.DICEROLL);
+        long start = System.nanoTime();
+        for (int playerId = 0; playerId < 100000; playerId++) {
+            league.addPlayerInvite(playerId);
+        }
+        for (int playerId = 0; playerId < 100000; playerId++) {
+            league.removePlayerInvite(playerId);
+            league.addPlayerToLeague(playerId);
+        }
+        System.out.println(String.format("100000 players invited and admitted in %.1f ms", (System.nanoTime() - start) / 1e6));
+        check("admitted players keep their order", league.getLeaguePlayerIds().size() == 100000
+                && league.getLeaguePlayerIds().toIntArray()[99999] == 99999 && league.getPlayerInvites().isEmpty());
+    }
+
+    private static void testIdLookup() {
+        System.out.println("\n--- Running Id Lookup Tests ---");
+
+        // ids come from reserved blocks, so a fresh system's ids are not list positions
+        GamesLeague system = new GamesLeague(new InMemoryStorageEngine());
+        int owner = system.createPlayer("lookup@example.com", "Lookup", "Lookup Owner", "");
+        int first = system.createLeague(owner, "Lookup League A", GameType.DICEROLL);
+        int second = system.createLeague(owner, "Lookup League B", GameType.DICEROLL);
+
+        check("league ids resolve by id", system.getLeagueName(second).equals("Lookup League B")
+                && system.getLeagueName(first).equals("Lookup League A"));
+        check("member found by league id", system.leagueContainsPlayerId(second, owner));
+        check("unknown league id is not found", !system.leagueContainsId(second + 1000)
+                && !system.leagueContainsPlayerId(second + 1000, owner));
+        try {
+            system.getLeagueName(second + 1000);
+            check("unknown league id rejected", false);
+        } catch (RuntimeException e) {
+            check("unknown league id rejected", true);
+        }
+    }
+
+    private static void testEmailIndex() {
+        System.out.println("\n--- Running Email Index Tests ---");
+
+        GamesLeague system = new GamesLeague(new InMemoryStorageEngine());
+        int alice = system.createPlayer("Alice@Example.com", "Alice", "Alice Smith", "");
+        int owner = system.createPlayer("owner@example.com", "Owner", "League Owner", "");
+
+        check("lookup ignores case", system.getPlayerId("alice@example.COM") == alice);
+        check("unknown email gives -1", system.getPlayerId("nobody@example.com") == -1);
+        try {
+            system.createPlayer("ALICE@example.com", "Alice2", "Alice Again", "");
+            check("duplicate email in another case rejected", false);
+        } catch (RuntimeException e) {
+            check("duplicate email in another case rejected", true);
+        }
+
+        int league = system.createLeague(owner, "Email Index League", GameType.DICEROLL);
+        system.invitePlayerToLeague(league, "ALICE@EXAMPLE.COM");
+        check("invite by email in another case reaches the player",
+                system.getLeaguePlayerInvites(league).length == 1 && system.getLeagueEmailInvites(league).length == 0);
+        system.removeInviteFromLeague(league, "alice@example.com");
+        check("invite removed by email in another case", system.getLeaguePlayerInvites(league).length == 0);
+
+        system.invitePlayerToLeague(league, "Pending@Example.com");
+        system.invitePlayerToLeague(league, "pending@example.com");
+        check("pending email invited once", system.getLeagueEmailInvites(league).length == 1);
+
+        system.deactivatePlayer(alice);
+        check("deactivated player is recognised", system.isDeactivatedPlayer(alice));
+        check("deactivated email leaves the index", system.getPlayerId("alice@example.com") == -1);
+        int reused = system.createPlayer("alice@example.com", "Alice", "Alice Smith", "");
+        check("deactivated email can be registered again", system.getPlayerId("alice@example.com") == reused);
+        try {
+            system.deactivatePlayer(owner);
+            check("sole owner cannot be deactivated", false);
+        } catch (IllegalOperationException e) {
+            check("sole owner cannot be deactivated", true);
+        }
+    }
+
+    private static void testEmailFilter() {
+        System.out.println("\n--- Running Email Filter Tests ---");
+
+        BloomFilter filter = new BloomFilter(10000, 0.01);
+        boolean allFound = true;
+        for (int i = 0; i < 10000; i++) {
+            filter.add("member" + i + "@example.com");
+        }
+        for (int i = 0; i < 10000; i++) {
+            allFound &= filter.mightContain("member" + i + "@example.com");
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 100000; i++) {
+            if (filter.mightContain("stranger" + i + "@example.com")) {
+                falsePositives++;
+            }
+        }
+        check("added strings always found", allFound);
+        check("false positives near the target rate", falsePositives < 2000 && filter.expectedFalsePositiveRate() < 0.02);
+
+        // enough players to outgrow the first filter
+        GamesLeague system = new GamesLeague(new InMemoryStorageEngine());
+        int[] ids = new int[3000];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = system.createPlayer("filtered" + i + "@example.com", "Filtered" + i, "Filtered Player " + i, "");
+        }
+        boolean found = true;
+        for (int i = 0; i < ids.length; i++) {
+            found &= system.getPlayerId("Filtered" + i + "@Example.com") == ids[i];
+        }
+        check("registered emails found after the filter grew", found);
+        boolean unknown = true;
+        for (int i = 0; i < 10000; i++) {
+            unknown &= system.getPlayerId("unregistered" + i + "@example.com") == -1;
+        }
+        check("unregistered emails answered", unknown && system.getEmailFilterFalsePositiveRate() < 0.05);
+        system.deactivatePlayer(ids[0]);
+        check("deactivated email not found", system.getPlayerId("filtered0@example.com") == -1);
+    }
+
+    private static void testLeagueNameIndex() {
+        System.out.println("\n--- Running League Name Index Tests ---");
+
+        GamesLeague system = new GamesLeague(new InMemoryStorageEngine());
+        int owner = system.createPlayer("names@example.com", "Names", "Name Owner", "");
+        int member = system.createPlayer("member@example.com", "Member", "Name Member", "");
+        int league = system.createLeague(owner, "Name League", GameType.DICEROLL);
+
+        check("name in another case rejected", rejected(() -> system.createLeague(owner, "NAME league", GameType.DICEROLL)));
+        system.updateLeagueName(league, "Renamed League");
+        int reused = system.createLeague(owner, "name league", GameType.DICEROLL);
+        check("rename releases the old name", system.getLeagueName(reused).equals("name league"));
+        check("rename to a taken name rejected", rejected(() -> system.updateLeagueName(league, "NAME LEAGUE")));
+        check("rejected rename keeps the name", system.getLeagueName(league).equals("Renamed League"));
+
+        system.invitePlayerToLeague(league, "member@example.com");
+        system.acceptInviteToLeague(league, member);
+        int clone = system.cloneLeague(league, "Cloned League");
+        check("clone keeps the owners and invites the players", system.getLeagueOwners(clone).length == 1
+                && system.getLeaguePlayerInvites(clone).length == 1 && system.getLeaguePlayerInvites(clone)[0] == member);
+        check("clone to a taken name rejected", rejected(() -> system.cloneLeague(league, "renamed league")));
+
+        // threads racing to create the same name: exactly one wins
+        AtomicInteger winners = new AtomicInteger();
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                if (!rejected(() -> system.createLeague(owner, "Raced League", GameType.DICEROLL))) {
+                    winners.incrementAndGet();
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        check("one of the racing creators wins the name", winners.get() == 1);
+    }
+
+    private static void testMembershipIndex() {
+        System.out.println("\n--- Running Membership Index Tests ---");
+
+        GamesLeague system = new GamesLeague(new InMemoryStorageEngine());
+        int owner = system.createPlayer("members@example.com", "Members", "Member Owner", "");
+        int player = system.createPlayer("joiner@example.com", "Joiner", "League Joiner", "");
+        int today = (int) LocalDate.now().toEpochDay();
+        int running = system.createLeague(owner, "Running League", GameType.DICEROLL);
+        int pending = system.createLeague(owner, "Pending League", GameType.DICEROLL);
+        int finished = system.createLeague(owner, "Finished League", GameType.DICEROLL);
+        system.setLeagueStartDate(running, today - 1);
+        system.setLeagueStartDate(pending, today + 5);
+        system.setLeagueStartDate(finished, today - 10);
+        system.setLeagueEndDate(finished, today - 2);
+
+        check("owner is in the running league only", Arrays.equals(system.getPlayerLeagues(owner), new int[] {running}));
+        check("player in no league", system.getPlayerLeagues(player).length == 0);
+        system.invitePlayerToLeague(running, "joiner@example.com");
+        system.acceptInviteToLeague(running, player);
+        check("accepted invite adds the league", Arrays.equals(system.getPlayerLeagues(player), new int[] {running}));
+        check("unknown player rejected", rejected(() -> system.getPlayerLeagues(-5)));
+    }
+
+    private static void testOwnerIndex() {
+        System.out.println("\n--- Running Owner Index Tests ---");
+
+        GamesLeague system = new GamesLeague(new InMemoryStorageEngine());
+        int owner = system.createPlayer("owners@example.com", "Owners", "First Owner", "");
+        int coOwner = system.createPlayer("coowner@example.com", "CoOwner", "Second Owner", "");
+        int shared = system.createLeague(owner, "Shared League", GameType.DICEROLL);
+        int solo = system.createLeague(coOwner, "Solo League", GameType.DICEROLL);
+        system.invitePlayerToLeague(shared, "coowner@example.com");
+        system.acceptInviteToLeague(shared, coOwner);
+        system.addOwner(shared, coOwner);
+
+        check("owned leagues listed", Arrays.equals(system.getPlayerOwnedLeagues(coOwner), new int[] {solo, shared}));
+        check("sole owner of a league cannot be deactivated", rejected(() -> system.deactivatePlayer(coOwner)));
+        system.removeOwner(shared, owner);
+        check("removed owner loses the league", system.getPlayerOwnedLeagues(owner).length == 0);
+        int clone = system.cloneLeague(shared, "Shared Clone");
+        check("clone owners own the clone", Arrays.equals(system.getPlayerOwnedLeagues(coOwner), new int[] {solo, shared, clone}));
+        check("player owning nothing can be deactivated", !rejected(() -> system.deactivatePlayer(owner)));
+    }
+
+    private static void testInviteIndex() {
+        System.out.println("\n--- Running Invite Index Tests ---");
+
+        GamesLeague system = new GamesLeague(new InMemoryStorageEngine());
+        int owner = system.createPlayer("inviter@example.com", "Inviter", "League Inviter", "");
+        int first = system.createLeague(owner, "Invite League A", GameType.DICEROLL);
+        int second = system.createLeague(owner, "Invite League B", GameType.DICEROLL);
+        int registered = system.createPlayer("invitee@example.com", "Invitee", "Registered Invitee", "");
+        system.invitePlayerToLeague(first, "invitee@example.com");
+        system.invitePlayerToLeague(second, "Newcomer@Example.com");
+        system.invitePlayerToLeague(first, "newcomer@example.com");
+
+        check("player invites listed", Arrays.equals(system.getPlayerInvites(registered), new int[] {first}));
+        int newcomer = system.createPlayer("NEWCOMER@example.com", "Newcomer", "Late Newcomer", "");
+        check("pending email invites converted on sign up", Arrays.equals(system.getPlayerInvites(newcomer), new int[] {second, first})
+                && system.getLeagueEmailInvites(first).length == 0 && system.getLeagueEmailInvites(second).length == 0);
+        system.acceptInviteToLeague(second, newcomer);
+        system.removeInviteFromLeague(first, "newcomer@example.com");
+        check("accepted and removed invites leave the index", system.getPlayerInvites(newcomer).length == 0);
+    }
+
+    private static void testPlayerSearch() {
+        System.out.println("\n--- Running Player Search Tests ---");
+
+        GamesLeague system = new GamesLeague(new InMemoryStorageEngine());
+        int alice = system.createPlayer("asmith@example.com", "Ali", "Alice Smith", "");
+        int alicia = system.createPlayer("akeys@example.com", "Keys", "Alicia Keys", "");
+        int bob = system.createPlayer("bob@example.com", "Bobby", "Robert Smyth", "");
+
+        check("prefix matches a word", Arrays.equals(system.searchPlayersByPrefix("ali", 10), new int[] {alice, alicia}));
+        check("every prefix word must match", Arrays.equals(system.searchPlayersByPrefix("Ali SM", 10), new int[] {alice}));
+        check("limit respected", system.searchPlayersByPrefix("ali", 1).length == 1);
+        check("fuzzy finds near words, closest first", Arrays.equals(system.searchPlayers("alice smith", 10), new int[] {alice, bob}));
+        check("fuzzy finds a swapped letter", Arrays.equals(system.searchPlayers("smtih", 10), new int[] {alice}));
+        check("fuzzy finds a prefix", Arrays.equals(system.searchPlayers("alic", 10), new int[] {alice, alicia}));
+
+        system.updatePlayerDisplayName(bob, "Bobcat");
+        check("renamed display name found", Arrays.equals(system.searchPlayersByPrefix("bobc", 10), new int[] {bob}));
+        system.deactivatePlayer(alice);
+        check("deactivated player not found", Arrays.equals(system.searchPlayersByPrefix("ali", 10), new int[] {alicia})
+                && system.searchPlayers("anonymousplayer" + alice, 10).length == 0);
+    }
+
+    private static void testLeagueQueries() {
+        System.out.println("\n--- Running League Query Tests ---");
+
+        GamesLeague system = new GamesLeague(new InMemoryStorageEngine());
+        int owner = system.createPlayer("scheduler@example.com", "Scheduler", "League Scheduler", "");
+        int today = (int) LocalDate.now().toEpochDay();
+        int unscheduled = system.createLeague(owner, "Unscheduled", GameType.WORDMASTER);
+        int upcoming = system.createLeague(owner, "Upcoming", GameType.DICEROLL);
+        int wordRunning = system.createLeague(owner, "Word Running", GameType.WORDMASTER);
+        int diceRunning = system.createLeague(owner, "Dice Running", GameType.DICEROLL);
+        int finished = system.createLeague(owner, "Finished", GameType.WORDMASTER);
+        system.setLeagueStartDate(upcoming, today + 3);
+        system.setLeagueStartDate(wordRunning, today - 5);
+        system.setLeagueEndDate(wordRunning, today + 2);
+        system.setLeagueStartDate(diceRunning, today - 1);
+        system.setLeagueStartDate(finished, today - 20);
+        system.setLeagueEndDate(finished, today - 10);
+
+        check("in progress leagues of a game type", Arrays.equals(system.getLeagueIds(GameType.WORDMASTER, Status.IN_PROGRESS), new int[] {wordRunning}));
+        check("pending and closed leagues", Arrays.equals(system.getLeagueIds(null, Status.PENDING), new int[] {unscheduled, upcoming})
+                && Arrays.equals(system.getLeagueIds(null, Status.CLOSED), new int[] {finished}));
+        check("leagues of a game type", Arrays.equals(system.getLeagueIds(GameType.DICEROLL, null), new int[] {upcoming, diceRunning}));
+        boolean agrees = true;
+        for (Status status : Status.values()) {
+            for (int leagueId : system.getLeagueIds(null, status)) {
+                agrees &= system.getLeagueStatus(leagueId) == status;
+            }
+        }
+        check("status lists agree with getLeagueStatus", agrees);
+        check("leagues ending this week", Arrays.equals(system.getLeagueIdsEndingBetween(today, today + 6), new int[] {wordRunning}));
+        check("leagues running over a range", Arrays.equals(system.getLeagueIdsRunningBetween(today, today + 6), new int[] {upcoming, wordRunning, diceRunning})
+                && Arrays.equals(system.getLeagueIdsRunningBetween(today - 12, today - 8), new int[] {finished}));
+        system.setLeagueStartDate(upcoming, today - 2);
+        system.setLeagueEndDate(diceRunning, today + 1);
+        check("changed dates move leagues", Arrays.equals(system.getLeagueIds(GameType.DICEROLL, Status.IN_PROGRESS), new int[] {upcoming, diceRunning})
+                && Arrays.equals(system.getLeagueIdsEndingBetween(today, today + 6), new int[] {wordRunning, diceRunning})
+                && Arrays.equals(system.getLeagueIdsStartingBetween(today - 2, today), new int[] {upcoming, diceRunning}));
+        check("reversed day range rejected", rejected(() -> system.getLeagueIdsEndingBetween(today, today - 1)));
+    }
+
+    private static void testRemoveLeague() {
+        System.out.println("\n--- Running Remove League Tests ---");
+
+        GamesLeague system = new GamesLeague(new InMemoryStorageEngine());
+        int owner = system.createPlayer("remover@example.com", "Remover", "League Remover", "");
+        int member = system.createPlayer("removed@example.com", "Removed", "Removed Member", "");
+        int today = (int) LocalDate.now().toEpochDay();
+        int kept = system.createLeague(owner, "Kept League", GameType.DICEROLL);
+        int removed = system.createLeague(owner, "Removed League", GameType.DICEROLL);
+        system.setLeagueStartDate(removed, today - 1);
+        system.setLeagueEndDate(removed, today + 3);
+        system.invitePlayerToLeague(removed, "removed@example.com");
+        system.acceptInviteToLeague(removed, member);
+        system.addOwner(removed, member);
+        system.invitePlayerToLeague(removed, "Invited@Example.com");
+        system.removeLeague(removed);
+
+        check("removed league gone", Arrays.equals(system.getLeagueIds(), new int[] {kept})
+                && rejected(() -> system.getLeagueName(removed)));
+        check("members and owners lose the league", system.getPlayerLeagues(member).length == 0
+                && system.getPlayerOwnedLeagues(member).length == 0
+                && Arrays.equals(system.getPlayerOwnedLeagues(owner), new int[] {kept}));
+        check("game type and schedule forget the league", Arrays.equals(system.getLeagueIds(GameType.DICEROLL, null), new int[] {kept})
+                && system.getLeagueIdsRunningBetween(today, today + 6).length == 0);
+        int invited = system.createPlayer("invited@example.com", "Invited", "Invited Player", "");
+        check("pending email invites dropped", system.getPlayerInvites(invited).length == 0);
+        int renewed = system.createLeague(owner, "removed league", GameType.WORDMASTER);
+        check("name free again, id not reused", renewed != removed);
+        check("removing again rejected", rejected(() -> system.removeLeague(removed)));
+        check("sole owner of a removed league can be deactivated", !rejected(() -> system.deactivatePlayer(member)));
+    }
+
+    // true if the action threw
+    private static boolean rejected(Runnable action) {
+        try {
+            action.run();
+            return false;
+        } catch (RuntimeException e) {
+            return true;
+        }
+    }
+
+    private static void check(String label, boolean passed) {
+        System.out.println((passed ? "PASS: " : "FAIL: ") + label);
+    }
+}
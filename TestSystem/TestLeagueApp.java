@@ -84,7 +84,8 @@ public class TestLeagueApp {
         System.out.println("\n--- Running Retrieve League Tests ---");
 
         try {
-            List<League> leagues = League.getLeagues();
+            leagueSystem.flush();
+            List<League> leagues = new GamesLeagueStore().getLeagues();
             System.out.println("Stored Leagues:");
             for (League l : leagues) {
                 System.out.println("League ID: " + l.getId() + ", Name: " + l.getLeagueName() +
@@ -87,7 +87,8 @@ public class TestPlayerApp {
         System.out.println("\n--- Running Retrieve Player Tests ---");
 
         try {
-            List<Player> players = Player.getPlayers();
+            leagueSystem.flush();
+            List<Player> players = new GamesLeagueStore().getPlayers();
             System.out.println("Stored Players:");
             for (Player p : players) {
                 System.out.println("Player ID: " + p.getId() + ", Email: " + p.getEmail() +
@@ -0,0 +1,380 @@
+package TestSystem;
+
+import gamesleague.*;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Arrays;
+
+/**
+ * Checks that saveGamesLeagueData / loadGamesLeagueData round trip through the
+ * snapshot format, that store checkpoints are restored with lazily decoded leagues,
+ * that later checkpoints only write a delta of what changed, that merging a delta
+ * only rewrites the shards it touches, that idle league sections can be released
+ * and read back, that removed leagues stay removed through deltas and merges, that
+ * player and league versions are saved with them, that a change to a league only
+ * journals what changed, that a journal write that fails is reported to the caller and
+ * that a torn journal record is cut off and counted.
+ * Works in ./bench/snapshot-test so real save data is untouched.
+ */
+public class TestSnapshotApp {
+
+    private static final String SAVE_DIR = "./bench/snapshot-test";
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("========== Starting Snapshot Tests ==========\n");
+        new File("./src/gamesleague/save").mkdirs();
+        deleteDir(new File(SAVE_DIR));
+        deleteDir(new File(SAVE_DIR + "-loaded"));
+        deleteDir(new File(SAVE_DIR + "-source"));
+        deleteDir(new File(SAVE_DIR + "-clean"));
+        deleteDir(new File(SAVE_DIR + "-failing"));
+        deleteDir(new File(SAVE_DIR + "-changes"));
+
+        testCheckpointRestore();
+        testDeltaCheckpoint();
+        testReclaimSections();
+        testRemoveLeague();
+        testVersionsSaved();
+        testJournalledChanges();
+        testFailedCommit();
+        testSaveAndLoad();
+        testLoadThenCreate();
+
+        System.out.println("\n========== Snapshot Tests Complete ==========");
+    }
+
+    private static void testCheckpointRestore() {
+        System.out.println("\n--- Running Checkpoint Restore Tests ---");
+
+        GamesLeagueStore store = new GamesLeagueStore(SAVE_DIR, FsyncPolicy.BATCHED, 64, 200);
+        Player owner = new Player(store.nextPlayerId(), "owner@example.com", "Owner", "League Owner", "");
+        store.addPlayer(owner);
+        League league = new League(store.nextLeagueId(), owner.getId(), "Snapshot League", GameType.DICEROLL);
+        league.addPlayerToLeague(owner.getId());
+        league.addDayScores(20000, new int[] {7});
+        league.addGameReport(owner.getId(), 20000, "rolled 7");
+        store.addLeague(league);
+        store.checkpoint();
+        store.close();
+
+        GamesLeagueStore restored = new GamesLeagueStore(SAVE_DIR, FsyncPolicy.BATCHED, 64, 200);
+        League copy = restored.getLeague(league.getId());
+        check("league header restored", copy != null && copy.getLeagueName().equals("Snapshot League"));
+        check("day scores decoded on first use", copy != null && Arrays.equals(copy.getDayScores().get(20000), new int[] {7}));
+        check("game reports decoded on first use", copy != null && "rolled 7".equals(copy.getGameReports().get(owner.getId()).get(20000)));
+        check("player restored", restored.getPlayer(owner.getId()) != null
+                && restored.getPlayer(owner.getId()).getEmail().equals("owner@example.com"));
+        restored.close();
+    }
+
+    private static void testDeltaCheckpoint() throws Exception {
+        System.out.println("\n--- Running Delta Checkpoint Tests ---");
+
+        GamesLeagueStore store = new GamesLeagueStore(SAVE_DIR, FsyncPolicy.BATCHED, 64, 200);
+        League league = store.getLeagues().get(0);
+        int changedShard = SnapshotShards.shardOf(league.getId());
+        long[] before = shardTimes();
+
+        Thread.sleep(20);
+        league.setLeagueName("Renamed League");
+        store.updateLeague(league);
+        store.checkpoint();
+        check("checkpoint rewrote no shards", Arrays.equals(shardTimes(), before));
+        check("checkpoint wrote one delta", SnapshotShards.deltaCount(SAVE_DIR) == 1);
+        check("unchanged day scores left out of the delta", new File(SAVE_DIR, SnapshotShards.deltaFile(0)).length()
+                < new File(SAVE_DIR, SnapshotShards.shardFile(changedShard)).length());
+        store.close();
+
+        MappedStorageEngine engine = new MappedStorageEngine(SAVE_DIR, FsyncPolicy.BATCHED, 64, 200);
+        GamesLeagueStore restored = new GamesLeagueStore(engine);
+        League copy = restored.getLeague(league.getId());
+        check("delta applied over base", copy.getLeagueName().equals("Renamed League"));
+        check("day scores inherited from base", Arrays.equals(copy.getDayScores().get(20000), new int[] {7}));
+
+        engine.mergeDeltas();
+        long[] after = shardTimes();
+        boolean onlyChangedShard = true;
+        for (int shard = 0; shard < SnapshotShards.SHARD_COUNT; shard++) {
+            boolean rewritten = after[shard] != before[shard];
+            if (rewritten != (shard == changedShard)) {
+                onlyChangedShard = false;
+            }
+        }
+        check("merge rewrote only shard " + changedShard, onlyChangedShard);
+        check("merge emptied the delta chain", SnapshotShards.deltaCount(SAVE_DIR) == 0);
+        League merged = SnapshotShards.readShard(SAVE_DIR, changedShard).get(0);
+        check("merged shard readable on its own", merged.getLeagueName().equals("Renamed League")
+                && Arrays.equals(merged.getDayScores().get(20000), new int[] {7}));
+        restored.close();
+    }
+
+    private static void testReclaimSections() throws Exception {
+        System.out.println("\n--- Running Reclaim Sections Tests ---");
+
+        MappedStorageEngine engine = new MappedStorageEngine(SAVE_DIR, FsyncPolicy.BATCHED, 64, 200);
+        GamesLeagueStore store = new GamesLeagueStore(engine);
+        League league = store.getLeagues().get(0);
+        league.getDayScores();
+        Thread.sleep(5);
+        check("idle clean sections released", engine.reclaimIdleSections(0) == 1);
+        check("released sections read back", Arrays.equals(league.getDayScores().get(20000), new int[] {7}));
+
+        league.addDayScores(20001, new int[] {4});
+        store.updateLeague(league);
+        Thread.sleep(5);
+        check("unsaved sections kept", engine.reclaimIdleSections(0) == 0);
+
+        store.checkpoint();
+        check("sections released once checkpointed", engine.reclaimIdleSections(0) == 1);
+        check("checkpointed sections read back", Arrays.equals(league.getDayScores().get(20001), new int[] {4})
+                && Arrays.equals(league.getDayScores().get(20000), new int[] {7}));
+        store.close();
+
+        // scores read through the league's view take no lock, but still count as a use
+        MappedStorageEngine viewEngine = new MappedStorageEngine(SAVE_DIR, FsyncPolicy.BATCHED, 64, 200);
+        GamesLeague system = new GamesLeague(viewEngine);
+        system.setLeagueStartDate(league.getId(), 19990);
+        system.setLeagueEndDate(league.getId(), 20010);
+        system.getDayScores(league.getId(), 20000);
+        viewEngine.checkpoint();
+        Thread.sleep(50);
+        system.getDayScores(league.getId(), 20000);
+        check("sections read through the view kept", viewEngine.reclaimIdleSections(25) == 0);
+        system.close();
+    }
+
+    private static void testRemoveLeague() throws Exception {
+        System.out.println("\n--- Running Remove League Tests ---");
+
+        GamesLeague system = new GamesLeague(SAVE_DIR, FsyncPolicy.BATCHED, 64, 200);
+        int owner = system.createPlayer("leaver@example.com", "Leaver", "League Leaver", "");
+        int removed = system.createLeague(owner, "Removed League", GameType.DICEROLL);
+        int kept = system.createLeague(owner, "Kept League", GameType.DICEROLL);
+        system.removeLeague(removed);
+        system.close();
+
+        // the removal is only in the journal, over a checkpoint still holding the league
+        GamesLeague replayed = new GamesLeague(SAVE_DIR, FsyncPolicy.BATCHED, 64, 200);
+        check("removal replayed from the journal", rejected(() -> replayed.getLeagueName(removed))
+                && replayed.getLeagueName(kept).equals("Kept League")
+                && Arrays.stream(replayed.getPlayerLeagues(owner)).noneMatch(id -> id == removed));
+        replayed.saveGamesLeagueData(SAVE_DIR + "/removed.snap");
+        replayed.close();
+
+        MappedStorageEngine engine = new MappedStorageEngine(SAVE_DIR, FsyncPolicy.BATCHED, 64, 200);
+        GamesLeagueStore store = new GamesLeagueStore(engine);
+        int deltas = SnapshotShards.deltaCount(SAVE_DIR);
+        long[] before = shardTimes();
+        Thread.sleep(20);
+        store.checkpoint();
+        check("removal checkpointed as a delta", SnapshotShards.deltaCount(SAVE_DIR) == deltas + 1
+                && Arrays.equals(shardTimes(), before));
+        Snapshot checkpoint = SnapshotShards.read(SAVE_DIR);
+        check("checkpoint leaves the league out", checkpoint.getLeagues().stream().noneMatch(l -> l.getId() == removed)
+                && checkpoint.getLeagues().stream().anyMatch(l -> l.getId() == kept));
+        engine.mergeDeltas();
+        check("merge drops the removed league from its shard",
+                SnapshotShards.readShard(SAVE_DIR, SnapshotShards.shardOf(removed)).stream().noneMatch(l -> l.getId() == removed)
+                && SnapshotShards.read(SAVE_DIR).getLeagues().stream().anyMatch(l -> l.getId() == kept));
+        store.close();
+        check("saved snapshot leaves the league out",
+                Snapshot.read(SAVE_DIR + "/removed.snap").getLeagues().stream().noneMatch(l -> l.getId() == removed));
+    }
+
+    private static void testVersionsSaved() throws Exception {
+        System.out.println("\n--- Running Saved Version Tests ---");
+
+        GamesLeague system = new GamesLeague(SAVE_DIR, FsyncPolicy.BATCHED, 64, 200);
+        int owner = system.createPlayer("versioned@example.com", "Versioned", "Versioned Owner", "");
+        int league = system.createLeague(owner, "Versioned League", GameType.DICEROLL);
+        for (int i = 0; i < 3; i++) {
+            system.updateLeagueName(league, "Versioned " + i);
+            system.updatePlayerDisplayName(owner, "Versioned" + i);
+        }
+        long leagueVersion = system.getLeagueVersion(league);
+        long playerVersion = system.getPlayerVersion(owner);
+        system.close();
+
+        // a version seen before a restart must not come round again for a different state
+        GamesLeague replayed = new GamesLeague(SAVE_DIR, FsyncPolicy.BATCHED, 64, 200);
+        check("versions replayed from the journal", replayed.getLeagueVersion(league) == leagueVersion
+                && replayed.getPlayerVersion(owner) == playerVersion);
+        replayed.saveGamesLeagueData(SAVE_DIR + "/versions.snap");
+        replayed.close();
+
+        GamesLeagueStore store = new GamesLeagueStore(SAVE_DIR, FsyncPolicy.BATCHED, 64, 200);
+        store.checkpoint();
+        store.close();
+        GamesLeague restored = new GamesLeague(SAVE_DIR, FsyncPolicy.BATCHED, 64, 200);
+        check("versions restored from a checkpoint", restored.getLeagueVersion(league) == leagueVersion
+                && restored.getPlayerVersion(owner) == playerVersion);
+        check("a version from before the restart still applies",
+                restored.updateLeagueName(league, "Versioned Again", leagueVersion));
+        restored.loadGamesLeagueData(SAVE_DIR + "/versions.snap");
+        check("versions loaded from a saved snapshot", restored.getLeagueVersion(league) == leagueVersion
+                && restored.getPlayerVersion(owner) == playerVersion);
+        restored.close();
+    }
+
+    private static void testJournalledChanges() {
+        System.out.println("\n--- Running Journalled Changes Tests ---");
+
+        String dir = SAVE_DIR + "-changes";
+        File journal = new File(dir + "/Journal.ser");
+        GamesLeague system = new GamesLeague(dir, FsyncPolicy.NONE, 1, 200);
+        int owner = system.createPlayer("history@example.com", "History", "History Owner", "");
+        int league = system.createLeague(owner, "History League", GameType.WORDMASTER);
+        int today = (int) java.time.LocalDate.now().toEpochDay();
+        system.setLeagueStartDate(league, today - 400);
+        system.setLeagueEndDate(league, today + 10);
+        for (int day = today - 300; day < today; day++) {
+            system.registerGameReport(day, league, owner, "a long report of the game played on day " + day);
+        }
+        long before = journal.length();
+        system.registerGameReport(today, league, owner, "today");
+        check("a change journals only what changed", journal.length() - before < 100);
+
+        before = journal.length();
+        system.updateLeagueName(league, "Renamed History");
+        check("a rename leaves the history out", journal.length() - before < 100);
+        system.close();
+
+        GamesLeague reopened = new GamesLeague(dir, FsyncPolicy.NONE, 1, 200);
+        check("journalled changes replayed", reopened.getLeagueName(league).equals("Renamed History")
+                && "today".equals(reopened.getGameReport(today, league, owner))
+                && reopened.getGameReport(today - 300, league, owner).endsWith("day " + (today - 300))
+                && reopened.getLeagueVersion(league) == system.getLeagueVersion(league));
+        reopened.close();
+    }
+
+    private static void testFailedCommit() throws Exception {
+        System.out.println("\n--- Running Failed Commit Tests ---");
+
+        // a directory in place of the journal makes every append fail
+        String dir = SAVE_DIR + "-failing";
+        GamesLeague system = new GamesLeague(dir, FsyncPolicy.EVERY_COMMIT, 64, 200);
+        File journal = new File(dir + "/Journal.ser");
+        journal.mkdirs();
+        check("failed commit reported to the caller",
+                rejected(() -> system.createPlayer("unsaved@example.com", "Unsaved", "Unsaved Player", "")));
+        check("failed flush reported to the caller", rejected(system::flush));
+
+        journal.delete();
+        int owner = system.getPlayerIds()[0];
+        check("failed records written by the next flush", !rejected(system::flush));
+        system.close();
+
+        GamesLeague reopened = new GamesLeague(dir, FsyncPolicy.EVERY_COMMIT, 64, 200);
+        check("retried records replayed", reopened.getPlayerIds().length == 1
+                && reopened.getPlayerDisplayName(owner).equals("Unsaved"));
+        reopened.close();
+
+        // a record torn by a crash is cut off and counted, the ones before it still replay
+        try (FileOutputStream out = new FileOutputStream(dir + "/Journal.ser", true)) {
+            out.write(new byte[] {2, 0, 0});
+        }
+        MappedStorageEngine engine = new MappedStorageEngine(dir, FsyncPolicy.EVERY_COMMIT, 64, 200);
+        GamesLeagueStore store = new GamesLeagueStore(engine);
+        check("torn tail counted", engine.getDroppedJournalBytes() == 3 && store.getPlayer(owner) != null);
+        store.close();
+    }
+
+    // true if the action threw
+    private static boolean rejected(Runnable action) {
+        try {
+            action.run();
+            return false;
+        } catch (RuntimeException e) {
+            return true;
+        }
+    }
+
+    private static long[] shardTimes() {
+        long[] times = new long[SnapshotShards.SHARD_COUNT];
+        for (int shard = 0; shard < times.length; shard++) {
+            times[shard] = new File(SAVE_DIR, SnapshotShards.shardFile(shard)).lastModified();
+        }
+        return times;
+    }
+
+    private static void testSaveAndLoad() throws Exception {
+        System.out.println("\n--- Running Save / Load Tests ---");
+
+        GamesLeague gl = new GamesLeague(SAVE_DIR, FsyncPolicy.BATCHED, 64, 200);
+        int p1 = gl.createPlayer("saver@example.com", "Saver", "Snapshot Saver", "");
+        int l1 = gl.createLeague(p1, "Saved League", GameType.WORDMASTER);
+        gl.invitePlayerToLeague(l1, "pending@example.com");
+        String file = SAVE_DIR + "/saved.snap";
+        gl.saveGamesLeagueData(file);
+        gl.close();
+
+        GamesLeague loaded = new GamesLeague(SAVE_DIR + "-loaded", FsyncPolicy.BATCHED, 64, 200);
+        loaded.loadGamesLeagueData(file);
+        check("loaded league name", loaded.getLeagueName(l1).equals("Saved League"));
+        check("loaded league players", Arrays.equals(loaded.getLeaguePlayers(l1), new int[] {p1}));
+        check("loaded email invites", Arrays.equals(loaded.getLeagueEmailInvites(l1), new String[] {"pending@example.com"}));
+        check("loaded player email", loaded.getPlayerEmail(p1).equals("saver@example.com"));
+        loaded.close();
+
+        // the load was checkpointed, so a fresh instance on the same folder sees it too
+        GamesLeague reopened = new GamesLeague(SAVE_DIR + "-loaded", FsyncPolicy.BATCHED, 64, 200);
+        check("load persisted to save folder", reopened.getLeagueName(l1).equals("Saved League"));
+        reopened.close();
+
+        try {
+            loaded.loadGamesLeagueData(SAVE_DIR + "/missing.snap");
+            System.out.println("FAIL: loading a missing file should throw IOException");
+        } catch (java.io.IOException e) {
+            System.out.println("PASS: loading a missing file throws IOException");
+        }
+    }
+
+    private static void testLoadThenCreate() throws Exception {
+        System.out.println("\n--- Running Load Then Create Tests ---");
+
+        // both folders start their ids at 0, so the loaded ids are ones the clean folder
+        // would hand out next
+        GamesLeague source = new GamesLeague(SAVE_DIR + "-source", FsyncPolicy.BATCHED, 64, 200);
+        int[] players = new int[3];
+        for (int i = 0; i < players.length; i++) {
+            players[i] = source.createPlayer("source" + i + "@example.com", "Source" + i, "Source Player", "");
+        }
+        int league = source.createLeague(players[0], "Source League", GameType.WORDMASTER);
+        String file = SAVE_DIR + "-source/source.snap";
+        source.saveGamesLeagueData(file);
+        source.close();
+
+        GamesLeague clean = new GamesLeague(SAVE_DIR + "-clean", FsyncPolicy.BATCHED, 64, 200);
+        clean.loadGamesLeagueData(file);
+        int created = clean.createPlayer("created@example.com", "Created", "Created Player", "");
+        int createdLeague = clean.createLeague(created, "Created League", GameType.WORDMASTER);
+        boolean kept = true;
+        for (int i = 0; i < players.length; i++) {
+            kept &= created != players[i] && clean.getPlayerEmail(players[i]).equals("source" + i + "@example.com");
+        }
+        check("a player created after a load gets a new id", kept && clean.getPlayerIds().length == players.length + 1);
+        check("a league created after a load gets a new id",
+                createdLeague != league && clean.getLeagueName(league).equals("Source League"));
+        clean.close();
+
+        // the raised floor was reserved on disk, so it holds after reopening
+        GamesLeague reopened = new GamesLeague(SAVE_DIR + "-clean", FsyncPolicy.BATCHED, 64, 200);
+        int next = reopened.createPlayer("next@example.com", "Next", "Next Player", "");
+        check("the floor holds after reopening", next != created && Arrays.stream(players).noneMatch(id -> id == next));
+        reopened.close();
+    }
+
+    private static void check(String label, boolean passed) {
+        System.out.println((passed ? "PASS: " : "FAIL: ") + label);
+    }
+
+    private static void deleteDir(File dir) {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        dir.delete();
+    }
+}
@@ -0,0 +1,456 @@
+package gamesleague;
+
+import java.time.LocalDate;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Asynchronous front end to a {@link GamesLeagueInterface}, such as a {@link GamesLeague}.
+ * <p>
+ * Every method of the interface has a counterpart here with the same name and arguments
+ * that runs it as its own task and returns a {@link CompletableFuture} of its result. The
+ * future completes exceptionally with whatever the method throws.
+ * <p>
+ * Tasks run on a virtual thread each where the Java runtime has them (Java 21 on), and on
+ * a cached pool of daemon threads otherwise. Reads run as soon as they are submitted.
+ * Writes, i.e. every method that changes players, leagues or saved data, are let through
+ * a few at a time; the rest wait in a queue without holding a thread. Writes to one
+ * league run one at a time under its lock anyway, so more of them at once only adds
+ * threads waiting for locks and for the storage engine. getLeagueStatus and
+ * getLeagueCloseDate count as writes, since they may record the day a league closed.
+ * <p>
+ * Once {@link #close} is called every method returns a future failed with a
+ * {@link RejectedExecutionException}; writes queued before then still run.
+ * <p>
+ * Game reports and day scores for a {@link GamesLeague} instead go to the league's single
+ * writer (see {@link GamesLeague#submitGameReport}), which registers them in batches.
+ */
+public class AsyncGamesLeague implements AutoCloseable {
+
+    public static final int DEFAULT_WRITE_CONCURRENCY = Runtime.getRuntime().availableProcessors();
+
+    private final GamesLeagueInterface league;
+    private final ExecutorService executor;
+    // writes running; the writes waiting for a permit are queued in submission order
+    private final Semaphore writePermits;
+    private final Queue<Runnable> waitingWrites = new ConcurrentLinkedQueue<>();
+    // guards closed and unfinishedWrites, so no write is queued once close has started
+    private final Object closeLock = new Object();
+    private volatile boolean closed;
+    private int unfinishedWrites;
+
+    public AsyncGamesLeague(GamesLeagueInterface league) {
+        this(league, DEFAULT_WRITE_CONCURRENCY);
+    }
+
+    /**
+     * @param league The system the methods are run against.
+     * @param writeConcurrency Most writes that run at once.
+     */
+    public AsyncGamesLeague(GamesLeagueInterface league, int writeConcurrency) {
+        if (writeConcurrency < 1) {
+            throw new IllegalArgumentException("Write concurrency must be at least 1");
+        }
+        this.league = league;
+        this.writePermits = new Semaphore(writeConcurrency);
+        this.executor = TaskExecutors.newTaskExecutor("async-games-league");
+    }
+
+    // true if tasks run on virtual threads rather than the fallback pool
+    public boolean usesVirtualThreads() {
+        return !(executor instanceof ThreadPoolExecutor);
+    }
+
+    /**
+     * Stops taking tasks and waits for those already submitted to finish, including the
+     * writes still queued for a permit. The wrapped system is left open.
+     */
+    public void close() {
+        synchronized (closeLock) {
+            closed = true;
+            while (unfinishedWrites > 0) {
+                try {
+                    closeLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        executor.shutdown();
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+                // keep waiting for the submitted tasks
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // a method call that may throw anything the interface declares
+    private interface Call<T> {
+        T call() throws Exception;
+    }
+
+    private interface VoidCall {
+        void call() throws Exception;
+    }
+
+    private <T> CompletableFuture<T> read(Call<T> call) {
+        if (closed) {
+            return rejected();
+        }
+        CompletableFuture<T> result = new CompletableFuture<>();
+        try {
+            executor.execute(() -> run(call, result));
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    private <T> CompletableFuture<T> write(Call<T> call) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        synchronized (closeLock) {
+            if (closed) {
+                return rejected();
+            }
+            unfinishedWrites++;
+            waitingWrites.add(() -> {
+                try {
+                    run(call, result);
+                } finally {
+                    writePermits.release();
+                    startWrites();
+                    writeFinished();
+                }
+            });
+        }
+        startWrites();
+        return result;
+    }
+
+    // hands a change to a GamesLeague's single writer for the league; it counts as a write
+    // until its future completes, so close waits for it
+    private CompletableFuture<Void> submit(Supplier<CompletableFuture<Void>> submission) {
+        synchronized (closeLock) {
+            if (closed) {
+                return rejected();
+            }
+            unfinishedWrites++;
+        }
+        CompletableFuture<Void> queued;
+        try {
+            queued = submission.get();
+        } catch (RuntimeException e) {
+            writeFinished();
+            throw e;
+        }
+        return queued.whenComplete((result, failure) -> writeFinished());
+    }
+
+    private static <T> CompletableFuture<T> rejected() {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        result.completeExceptionally(new RejectedExecutionException("AsyncGamesLeague is closed"));
+        return result;
+    }
+
+    // wakes close once the last write has finished
+    private void writeFinished() {
+        synchronized (closeLock) {
+            if (--unfinishedWrites == 0) {
+                closeLock.notifyAll();
+            }
+        }
+    }
+
+    private CompletableFuture<Void> write(VoidCall call) {
+        return write(() -> {
+            call.call();
+            return null;
+        });
+    }
+
+    // starts queued writes while there are permits; a write queued after this finds the
+    // queue empty takes a permit itself, and one finishing after it releases its permit
+    // and calls this again, so no write is left waiting with a permit free
+    private void startWrites() {
+        while (!waitingWrites.isEmpty() && writePermits.tryAcquire()) {
+            Runnable write = waitingWrites.poll();
+            if (write == null) {
+                writePermits.release();
+                continue;
+            }
+            try {
+                executor.execute(write);
+            } catch (RejectedExecutionException e) {
+                // the executor only shuts down once every write has finished, but the write
+                // still runs, on this thread, so its future completes either way
+                write.run();
+            }
+        }
+    }
+
+    private static <T> void run(Call<T> call, CompletableFuture<T> result) {
+        try {
+            result.complete(call.call());
+        } catch (Throwable e) {
+            result.completeExceptionally(e);
+        }
+    }
+
+    // Players
+
+    public CompletableFuture<int[]> getPlayerIds() {
+        return read(() -> league.getPlayerIds());
+    }
+
+    public CompletableFuture<Integer> createPlayer(String email, String displayName, String name, String phone) {
+        return write(() -> league.createPlayer(email, displayName, name, phone));
+    }
+
+    public CompletableFuture<Void> deactivatePlayer(int playerId) {
+        return write(() -> league.deactivatePlayer(playerId));
+    }
+
+    public CompletableFuture<Boolean> isDeactivatedPlayer(int playerId) {
+        return read(() -> league.isDeactivatedPlayer(playerId));
+    }
+
+    public CompletableFuture<Void> updatePlayerDisplayName(int playerId, String displayName) {
+        return write(() -> league.updatePlayerDisplayName(playerId, displayName));
+    }
+
+    public CompletableFuture<Integer> getPlayerId(String email) {
+        return read(() -> league.getPlayerId(email));
+    }
+
+    public CompletableFuture<String> getPlayerDisplayName(int playerId) {
+        return read(() -> league.getPlayerDisplayName(playerId));
+    }
+
+    public CompletableFuture<String> getPlayerEmail(int playerId) {
+        return read(() -> league.getPlayerEmail(playerId));
+    }
+
+    public CompletableFuture<int[]> getPlayerLeagues(int playerId) {
+        return read(() -> league.getPlayerLeagues(playerId));
+    }
+
+    public CompletableFuture<int[]> getPlayerOwnedLeagues(int playerId) {
+        return read(() -> league.getPlayerOwnedLeagues(playerId));
+    }
+
+    public CompletableFuture<int[]> getPlayerInvites(int playerId) {
+        return read(() -> league.getPlayerInvites(playerId));
+    }
+
+    public CompletableFuture<Integer> getPlayerRoundsPlayed(int playerId) {
+        return read(() -> league.getPlayerRoundsPlayed(playerId));
+    }
+
+    public CompletableFuture<Double> getPlayerRoundsPercentage(int playerId) {
+        return read(() -> league.getPlayerRoundsPercentage(playerId));
+    }
+
+    public CompletableFuture<LocalDate> getPlayerJoinDate(int playerId) {
+        return read(() -> league.getPlayerJoinDate(playerId));
+    }
+
+    // Leagues
+
+    public CompletableFuture<int[]> getLeagueIds() {
+        return read(() -> league.getLeagueIds());
+    }
+
+    public CompletableFuture<Integer> createLeague(int owner, String name, GameType gameType) {
+        return write(() -> league.createLeague(owner, name, gameType));
+    }
+
+    public CompletableFuture<Void> removeLeague(int leagueId) {
+        return write(() -> league.removeLeague(leagueId));
+    }
+
+    public CompletableFuture<String> getLeagueName(int leagueId) {
+        return read(() -> league.getLeagueName(leagueId));
+    }
+
+    public CompletableFuture<Void> updateLeagueName(int leagueId, String newName) {
+        return write(() -> league.updateLeagueName(leagueId, newName));
+    }
+
+    public CompletableFuture<Void> invitePlayerToLeague(int leagueId, String email) {
+        return write(() -> league.invitePlayerToLeague(leagueId, email));
+    }
+
+    public CompletableFuture<Void> acceptInviteToLeague(int leagueId, int playerId) {
+        return write(() -> league.acceptInviteToLeague(leagueId, playerId));
+    }
+
+    public CompletableFuture<Void> removeInviteFromLeague(int leagueId, String email) {
+        return write(() -> league.removeInviteFromLeague(leagueId, email));
+    }
+
+    public CompletableFuture<String[]> getLeagueEmailInvites(int leagueId) {
+        return read(() -> league.getLeagueEmailInvites(leagueId));
+    }
+
+    public CompletableFuture<int[]> getLeaguePlayerInvites(int leagueId) {
+        return read(() -> league.getLeaguePlayerInvites(leagueId));
+    }
+
+    public CompletableFuture<int[]> getLeaguePlayers(int leagueId) {
+        return read(() -> league.getLeaguePlayers(leagueId));
+    }
+
+    public CompletableFuture<int[]> getLeagueOwners(int leagueId) {
+        return read(() -> league.getLeagueOwners(leagueId));
+    }
+
+    public CompletableFuture<Status> getLeagueStatus(int leagueId) {
+        return write(() -> league.getLeagueStatus(leagueId));
+    }
+
+    public CompletableFuture<Void> setLeagueStartDate(int leagueId, int day) {
+        return write(() -> league.setLeagueStartDate(leagueId, day));
+    }
+
+    public CompletableFuture<Void> setLeagueEndDate(int leagueId, int day) {
+        return write(() -> league.setLeagueEndDate(leagueId, day));
+    }
+
+    public CompletableFuture<Integer> getLeagueStartDate(int leagueId) {
+        return read(() -> league.getLeagueStartDate(leagueId));
+    }
+
+    public CompletableFuture<Integer> getLeagueCloseDate(int leagueId) {
+        return write(() -> league.getLeagueCloseDate(leagueId));
+    }
+
+    public CompletableFuture<Void> resetLeague(int leagueId) {
+        return write(() -> league.resetLeague(leagueId));
+    }
+
+    public CompletableFuture<Integer> cloneLeague(int leagueId, String newName) {
+        return write(() -> league.cloneLeague(leagueId, newName));
+    }
+
+    public CompletableFuture<Boolean> isLeaguePlayerActive(int leagueId, int playerId) {
+        return read(() -> league.isLeaguePlayerActive(leagueId, playerId));
+    }
+
+    public CompletableFuture<Void> setLeaguePlayerInactive(int leagueId, int playerId) {
+        return write(() -> league.setLeaguePlayerInactive(leagueId, playerId));
+    }
+
+    public CompletableFuture<Void> setLeaguePlayerActive(int leagueId, int playerId) {
+        return write(() -> league.setLeaguePlayerActive(leagueId, playerId));
+    }
+
+    public CompletableFuture<Void> addOwner(int leagueId, int playerId) {
+        return write(() -> league.addOwner(leagueId, playerId));
+    }
+
+    public CompletableFuture<Void> removeOwner(int leagueId, int playerId) {
+        return write(() -> league.removeOwner(leagueId, playerId));
+    }
+
+    // Results
+
+    public CompletableFuture<Void> registerGameReport(int day, int leagueId, int playerId, String gameReport) {
+        if (league instanceof GamesLeague) {
+            return submit(() -> ((GamesLeague) league).submitGameReport(day, leagueId, playerId, gameReport));
+        }
+        return write(() -> league.registerGameReport(day, leagueId, playerId, gameReport));
+    }
+
+    public CompletableFuture<String> getGameReport(int day, int leagueId, int playerId) {
+        return read(() -> league.getGameReport(day, leagueId, playerId));
+    }
+
+    public CompletableFuture<Void> registerDayScores(int day, int leagueId, int[] scores) {
+        if (league instanceof GamesLeague) {
+            return submit(() -> ((GamesLeague) league).submitDayScores(day, leagueId, scores));
+        }
+        return write(() -> league.registerDayScores(day, leagueId, scores));
+    }
+
+    public CompletableFuture<Void> voidDayPoints(int day, int leagueId) {
+        return write(() -> league.voidDayPoints(day, leagueId));
+    }
+
+    public CompletableFuture<Status> getDayStatus(int leagueId, int day) {
+        return read(() -> league.getDayStatus(leagueId, day));
+    }
+
+    public CompletableFuture<int[]> getDayScores(int leagueId, int day) {
+        return read(() -> league.getDayScores(leagueId, day));
+    }
+
+    public CompletableFuture<int[]> getDayPoints(int leagueId, int day) {
+        return read(() -> league.getDayPoints(leagueId, day));
+    }
+
+    public CompletableFuture<int[]> getDayRanking(int leagueId, int day) {
+        return read(() -> league.getDayRanking(leagueId, day));
+    }
+
+    public CompletableFuture<Status> getWeekStatus(int leagueId, int day) {
+        return read(() -> league.getWeekStatus(leagueId, day));
+    }
+
+    public CompletableFuture<int[]> getWeekPoints(int leagueId, int day) {
+        return read(() -> league.getWeekPoints(leagueId, day));
+    }
+
+    public CompletableFuture<int[]> getWeekRanking(int leagueId, int day) {
+        return read(() -> league.getWeekRanking(leagueId, day));
+    }
+
+    public CompletableFuture<Status> getMonthStatus(int leagueId, int day) {
+        return read(() -> league.getMonthStatus(leagueId, day));
+    }
+
+    public CompletableFuture<int[]> getMonthPoints(int leagueId, int day) {
+        return read(() -> league.getMonthPoints(leagueId, day));
+    }
+
+    public CompletableFuture<int[]> getMonthRanking(int leagueId, int day) {
+        return read(() -> league.getMonthRanking(leagueId, day));
+    }
+
+    public CompletableFuture<Status> getYearStatus(int leagueId, int day) {
+        return read(() -> league.getYearStatus(leagueId, day));
+    }
+
+    public CompletableFuture<int[]> getYearPoints(int leagueId, int day) {
+        return read(() -> league.getYearPoints(leagueId, day));
+    }
+
+    public CompletableFuture<int[]> getYearRanking(int leagueId, int day) {
+        return read(() -> league.getYearRanking(leagueId, day));
+    }
+
+    public CompletableFuture<Void> eraseGamesLeagueData() {
+        return write(() -> league.eraseGamesLeagueData());
+    }
+
+    // completes exceptionally with the IOException if the data cannot be written
+    public CompletableFuture<Void> saveGamesLeagueData(String filename) {
+        return write(() -> league.saveGamesLeagueData(filename));
+    }
+
+    // completes exceptionally with the IOException or ClassNotFoundException if the data
+    // cannot be read
+    public CompletableFuture<Void> loadGamesLeagueData(String filename) {
+        return write(() -> league.loadGamesLeagueData(filename));
+    }
+
+}
@@ -0,0 +1,92 @@
+package gamesleague;
+
+import java.io.Serializable;
+
+/**
+ * Bloom filter over strings: a set that may answer "maybe" for a string never added,
+ * but never "no" for one that was.
+ * <p>
+ * The filter is sized for an expected number of strings and a target false-positive
+ * rate, and sets {@code k} bits per string, chosen by double hashing of a 64-bit FNV-1a
+ * hash. Strings cannot be removed; a filter holding stale strings is simply rebuilt.
+ * Not thread-safe.
+ */
+public class BloomFilter implements Serializable {
+
+    private static final int MIN_BITS = 64;
+    private static final int MAX_HASHES = 16;
+
+    private final long[] words;
+    private final int mask;
+    private final int hashes;
+    private final int capacity;
+    private int count;
+
+    public BloomFilter(int expectedSize, double falsePositiveRate) {
+        capacity = Math.max(1, expectedSize);
+        // optimal bits m = -n ln p / (ln 2)^2, rounded up to a power of two for masking
+        double bits = -capacity * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+        int size = MIN_BITS;
+        while (size < bits && size < (1 << 30)) {
+            size <<= 1;
+        }
+        words = new long[size / 64];
+        mask = size - 1;
+        // optimal hashes k = m / n ln 2, for the bits actually allocated
+        hashes = Math.max(1, Math.min(MAX_HASHES, (int) Math.round((double) size / capacity * Math.log(2))));
+    }
+
+    public void add(String value) {
+        long hash = hash(value);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        for (int i = 0; i < hashes; i++) {
+            int bit = (h1 + i * h2) & mask;
+            words[bit >>> 6] |= 1L << bit;
+        }
+        count++;
+    }
+
+    // false only if the value was never added
+    public boolean mightContain(String value) {
+        long hash = hash(value);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        for (int i = 0; i < hashes; i++) {
+            int bit = (h1 + i * h2) & mask;
+            if ((words[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // the number of adds, counting repeats
+    public int size() {
+        return this.count;
+    }
+
+    // the number of strings the filter was sized for
+    public int capacity() {
+        return this.capacity;
+    }
+
+    // the false-positive rate expected for the strings added so far, (1 - e^(-kn/m))^k
+    public double expectedFalsePositiveRate() {
+        return Math.pow(1 - Math.exp(-(double) hashes * count / (mask + 1.0)), hashes);
+    }
+
+    private static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        // FNV spreads its low bits poorly on short keys, so finish with a mix
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+}
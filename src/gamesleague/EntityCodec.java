@@ -0,0 +1,240 @@
+package gamesleague;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+
+/**
+ * Compact, versioned binary encoding of players and leagues.
+ * <p>
+ * Unlike default Java serialization no class descriptors or boxed values are written:
+ * ids are unsigned varints, epoch days and scores are zig-zag varints, id lists are
+ * a count followed by a run of varints and strings are a varint length followed by
+ * their UTF-8 bytes. Every encoded entity starts with the codec version byte.
+ * <p>
+ * Version 2 adds each player's and league's version (see {@link League#getVersion}) at the
+ * end of the player and of the league header; entities written by version 1 are still
+ * read, at version 0.
+ * <p>
+ * A league can also be encoded as just the changes since it was last encoded
+ * ({@link #encodeLeagueChanges}), which the journal records instead of the whole league.
+ * <p>
+ * Nullable values (strings, dates, enums) are written shifted up by one so that 0
+ * can stand for null.
+ */
+public final class EntityCodec {
+
+    public static final byte VERSION = 2;
+    // the first version whose players and leagues hold their versions
+    static final byte VERSIONED_ENTITIES = 2;
+
+    private EntityCodec() {
+    }
+
+    public static byte[] encodePlayer(Player player) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+            player.write(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static Player decodePlayer(byte[] bytes) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        return Player.read(in, readVersion(in));
+    }
+
+    public static byte[] encodeLeague(League league) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+            league.write(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static League decodeLeague(byte[] bytes) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        return League.read(in, readVersion(in));
+    }
+
+    // the changes since the league was last journalled (see League#writeChanges)
+    public static byte[] encodeLeagueChanges(League league) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+            league.writeChanges(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    // returns true if the changes were applied, false if the league already holds a later state
+    public static boolean applyLeagueChanges(League league, byte[] bytes) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        return league.applyChanges(in, readVersion(in));
+    }
+
+    private static int readVersion(DataInput in) throws IOException {
+        byte version = in.readByte();
+        if (version < 1 || version > VERSION) {
+            throw new IOException("Unsupported entity codec version " + version);
+        }
+        return version;
+    }
+
+    // unsigned LEB128: 7 bits per byte, high bit set while more bytes follow
+    static void writeVarInt(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    static int readVarInt(DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = in.readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varlong");
+    }
+
+    // zig-zag keeps small negative numbers small: 0, -1, 1, -2 ... become 0, 1, 2, 3 ...
+    static void writeSignedVarInt(DataOutput out, int value) throws IOException {
+        writeVarInt(out, (value << 1) ^ (value >> 31));
+    }
+
+    static int readSignedVarInt(DataInput in) throws IOException {
+        int raw = readVarInt(in);
+        return (raw >>> 1) ^ -(raw & 1);
+    }
+
+    static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, utf8.length + 1);
+        out.write(utf8);
+    }
+
+    static String readString(DataInput in) throws IOException {
+        int length = readVarInt(in);
+        if (length == 0) {
+            return null;
+        }
+        byte[] utf8 = new byte[length - 1];
+        in.readFully(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    static void writeDay(DataOutput out, LocalDate date) throws IOException {
+        if (date == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+        int day = (int) date.toEpochDay();
+        writeVarInt(out, ((day << 1) ^ (day >> 31)) + 1);
+    }
+
+    static LocalDate readDay(DataInput in) throws IOException {
+        int raw = readVarInt(in);
+        if (raw == 0) {
+            return null;
+        }
+        raw -= 1;
+        return LocalDate.ofEpochDay((raw >>> 1) ^ -(raw & 1));
+    }
+
+    static void writeEnum(DataOutput out, Enum<?> value) throws IOException {
+        writeVarInt(out, value == null ? 0 : value.ordinal() + 1);
+    }
+
+    static <E extends Enum<E>> E readEnum(DataInput in, E[] values) throws IOException {
+        int ordinal = readVarInt(in);
+        return ordinal == 0 ? null : values[ordinal - 1];
+    }
+
+    // same layout as a list of ids, in the set's insertion order
+    static void writeIdSet(DataOutput out, IntSet ids) throws IOException {
+        writeVarInt(out, ids.size());
+        for (int id : ids.toIntArray()) {
+            writeVarInt(out, id);
+        }
+    }
+
+    static IntSet readIdSet(DataInput in) throws IOException {
+        int count = readVarInt(in);
+        IntSet ids = new IntSet(count);
+        for (int i = 0; i < count; i++) {
+            ids.add(readVarInt(in));
+        }
+        return ids;
+    }
+
+    static void writeStringList(DataOutput out, Collection<String> values) throws IOException {
+        writeVarInt(out, values.size());
+        for (String value : values) {
+            writeString(out, value);
+        }
+    }
+
+    static ArrayList<String> readStringList(DataInput in) throws IOException {
+        int count = readVarInt(in);
+        ArrayList<String> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            values.add(readString(in));
+        }
+        return values;
+    }
+
+    static void writeScores(DataOutput out, int[] scores) throws IOException {
+        writeVarInt(out, scores.length);
+        for (int score : scores) {
+            writeSignedVarInt(out, score);
+        }
+    }
+
+    static int[] readScores(DataInput in) throws IOException {
+        int[] scores = new int[readVarInt(in)];
+        for (int i = 0; i < scores.length; i++) {
+            scores[i] = readSignedVarInt(in);
+        }
+        return scores;
+    }
+
+}
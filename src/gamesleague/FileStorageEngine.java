@@ -0,0 +1,56 @@
+package gamesleague;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Storage engine keeping the save folder layout the system started with: every player
+ * in Players.ser and every league in Leagues.ser, written with default Java serialization,
+ * plus the journal of changes since those files were last written.
+ * <p>
+ * A checkpoint rewrites both files in full, and loading decodes every league completely,
+ * so this engine is the simplest to inspect but its cost grows with the whole system.
+ */
+public class FileStorageEngine extends JournalledStorageEngine {
+
+    public static final String PLAYERS_FILE = "Players.ser";
+    public static final String LEAGUES_FILE = "Leagues.ser";
+
+    public FileStorageEngine(String saveDir, FsyncPolicy fsyncPolicy, int batchSize, long flushIntervalMillis) {
+        super(saveDir, fsyncPolicy, batchSize, flushIntervalMillis);
+    }
+
+    protected void loadCheckpoint() {
+        ArrayList<Player> players = readList(saveDir + "/" + PLAYERS_FILE);
+        ArrayList<League> leagues = readList(saveDir + "/" + LEAGUES_FILE);
+        store.setContents(players, leagues);
+    }
+
+    protected void writeCheckpoint() throws IOException {
+        writeList(saveDir + "/" + PLAYERS_FILE, store.getPlayers());
+        writeList(saveDir + "/" + LEAGUES_FILE, store.getLeagues());
+    }
+
+    // reads a serialised list, an empty or missing file holds an empty list
+    @SuppressWarnings("unchecked")
+    static <T> ArrayList<T> readList(String path) {
+        try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(path)))) {
+            return (ArrayList<T>) in.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            return new ArrayList<>();
+        }
+    }
+
+    // written to a temporary file and moved into place, so a crash never leaves half a list
+    static void writeList(String path, List<?> values) throws IOException {
+        Path target = Paths.get(path).toAbsolutePath();
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(temp.toFile())))) {
+            out.writeObject(new ArrayList<>(values));
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+}
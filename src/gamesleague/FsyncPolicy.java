@@ -0,0 +1,17 @@
+package gamesleague;
+
+/**
+ * When the journal is forced to disk.
+ * <p>
+ * EVERY_COMMIT - every change is committed and fsynced before the call returns;
+ *                nothing is lost on a crash but each change pays for a disk flush.
+ * BATCHED      - changes are coalesced and written in group commits with one fsync
+ *                per group; a crash loses at most the changes of one open group.
+ * NONE         - group commits are handed to the operating system without an fsync;
+ *                survives the process dying but not the machine losing power.
+ */
+public enum FsyncPolicy {
+    EVERY_COMMIT,
+    BATCHED,
+    NONE;
+}
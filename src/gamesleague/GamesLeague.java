@@ -8,6 +8,11 @@ import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 /**
  * GamesLeague Class Template
@@ -20,8 +25,60 @@ import java.util.HashMap;
  *
  */
 
+// each "try (StripedLocks.Held held = ...)" only scopes a lock, so the resource is never
+// referenced inside the block
+@SuppressWarnings("try")
 public class GamesLeague implements GamesLeagueInterface {
 
+    // players and leagues are loaded once and then served from memory
+    private GamesLeagueStore store;
+    // methods lock the leagues and players they change (see StripedLocks); league reads use
+    // the league's last published LeagueView, and lookups answered by the store's indexes
+    // alone need no locks either
+    private final StripedLocks locks = new StripedLocks(StripedLocks.DEFAULT_STRIPES, this::checkpointIfDue);
+    // single writers for the leagues changed through submitGameReport and submitDayScores
+    private final LeagueActors actors = new LeagueActors(this::writeBatch);
+
+    public GamesLeague() {
+        this.store = new GamesLeagueStore();
+        store.deferCheckpoints();
+    }
+
+    /**
+     * Creates a GamesLeague whose changes are persisted write-behind with the given policy.
+     *
+     * @param saveDir Directory holding the save files and journal.
+     * @param fsyncPolicy When group commits are forced to disk.
+     * @param batchSize Number of changed players/leagues that triggers a group commit.
+     * @param flushIntervalMillis Longest time a change waits before its group commit.
+     */
+    public GamesLeague(String saveDir, FsyncPolicy fsyncPolicy, int batchSize, long flushIntervalMillis) {
+        this.store = new GamesLeagueStore(saveDir, fsyncPolicy, batchSize, flushIntervalMillis);
+        store.deferCheckpoints();
+    }
+
+    /**
+     * Creates a GamesLeague persisted by the given storage engine, e.g. an
+     * {@link InMemoryStorageEngine} for tests or a {@link FileStorageEngine}.
+     *
+     * @param engine Engine that loads the players and leagues and persists changes to them.
+     */
+    public GamesLeague(StorageEngine engine) {
+        this.store = new GamesLeagueStore(engine);
+        store.deferCheckpoints();
+    }
+
+    // runs a checkpoint the engine asked for, once no operation is using the store
+    private void checkpointIfDue() {
+        if (!store.isCheckpointDue()) {
+            return;
+        }
+        try (StripedLocks.Held held = locks.exclusive()) {
+            if (store.isCheckpointDue()) {
+                store.checkpoint();
+            }
+        }
+    }
 
     // Players
 
@@ -31,13 +88,7 @@ public class GamesLeague implements GamesLeagueInterface {
      * @return An array of player IDs in the system or an empty array if none exists.
      */
     public int[] getPlayerIds(){
-        ArrayList<Player> players = Player.getPlayers();
-        int[] playerIDs = new int[players.size()];
-
-        for (int i = 0; i < players.size(); i++) {
-            playerIDs[i] = players.get(i).getId();
-        }
-        return playerIDs;
+        return store.getPlayerIds();
     }
 
     /**
@@ -65,11 +116,9 @@ public class GamesLeague implements GamesLeagueInterface {
             throw new InvalidEmailException("The email entered is invalid. Please try again");
         }
 
-        ArrayList<Player> players = Player.getPlayers();
-        for (Player p : players) {
-            if(p.getEmail().equalsIgnoreCase(email)){
-                throw new IllegalEmailException("The email entered is already in use. Please try again.");
-            }
+        // emails are unique regardless of case
+        if (store.getPlayerIdByEmail(email) != -1) {
+            throw new IllegalEmailException("The email entered is already in use. Please try again.");
         }
 
         if (displayName.isEmpty() || displayName.length() < 1 || displayName.length() > 20) {
@@ -80,9 +129,23 @@ public class GamesLeague implements GamesLeagueInterface {
             throw new InvalidNameException("The name entered is invalid. Please try again");
         }
 
-        // once all validation checks are passed, create new player object
-        Player player = new Player(email, displayName, name, phone);
-        player.addPlayerToList();
+        // once all validation checks are passed, create new player object; the email is
+        // checked again as it is added, in case another player registered it meanwhile
+        Player player = new Player(store.nextPlayerId(), email, displayName, name, phone);
+        if (!store.addPlayerIfEmailFree(player)) {
+            throw new IllegalEmailException("The email entered is already in use. Please try again.");
+        }
+
+        // invites sent to the email before it was registered now belong to the player
+        for (int leagueId : store.getEmailInvitedLeagueIds(email)) {
+            try (StripedLocks.Held held = locks.league(leagueId)) {
+                League league = store.getLeague(leagueId);
+                if (league.removeEmailInvite(email)) {
+                    league.addPlayerInvite(player.getId());
+                    store.updateLeague(league);
+                }
+            }
+        }
         return player.getId();
     }
 
@@ -111,9 +174,52 @@ public class GamesLeague implements GamesLeagueInterface {
     public void deactivatePlayer(int playerId)
         throws IDInvalidException, IllegalOperationException {
 
-        return; // placeholder so class compiles
+        Player player = store.getPlayer(playerId);
+        if (player == null) {
+            throw new IDInvalidException("ID does not match to any player in the system");
+        }
+
+        // every league the player is in or owns is locked with the player; the leagues are
+        // read before locking, so they are read again and the locks retaken if they changed
+        while (true) {
+            Set<Integer> leagueIds = playerLeagueIds(playerId);
+            int[] locked = leagueIds.stream().mapToInt(Integer::intValue).toArray();
+            try (StripedLocks.Held held = locks.lock(locked, new int[] {playerId})) {
+                if (!leagueIds.equals(playerLeagueIds(playerId))) {
+                    continue;
+                }
+
+                // a league must never be left without an owner
+                for (int leagueId : store.getOwnedLeagueIds(playerId)) {
+                    if (store.getOwnerCount(leagueId) == 1) {
+                        throw new IllegalOperationException("The player is the sole owner of league " + leagueId + ".");
+                    }
+                }
+
+                player.setName("anonymousplayer" + playerId);
+                player.setDisplayName("anonymousplayer" + playerId);
+                player.setEmail("");
+                player.setPhone("");
+                // updating the store also drops the player's email from its index
+                store.updatePlayer(player);
+
+                for (int leagueId : store.getMemberLeagueIds(playerId)) {
+                    League l = store.getLeague(leagueId);
+                    l.clearGameReports(playerId);
+                    store.updateLeague(l);
+                }
+                return;
+            }
+        }
     };
 
+    // the leagues the player is a member or an owner of
+    private Set<Integer> playerLeagueIds(int playerId) {
+        Set<Integer> leagueIds = store.getMemberLeagueIds(playerId);
+        leagueIds.addAll(store.getOwnedLeagueIds(playerId));
+        return leagueIds;
+    }
+
 
     /**
      * Check if a player has been deactivated.
@@ -126,7 +232,14 @@ public class GamesLeague implements GamesLeagueInterface {
     public boolean isDeactivatedPlayer(int playerId)
         throws IDInvalidException{
 
-            return false; // placeholder so class compiles
+            try (StripedLocks.Held held = locks.player(playerId)) {
+                Player player = store.getPlayer(playerId);
+                if (player == null) {
+                    throw new IDInvalidException("ID does not match to any player in the system");
+                }
+                // only deactivation leaves a player without an email
+                return player.getEmail().isEmpty();
+            }
         };
 
 
@@ -142,21 +255,71 @@ public class GamesLeague implements GamesLeagueInterface {
     public void updatePlayerDisplayName(int playerId, String displayName)
         throws  IDInvalidException, InvalidNameException {
 
-        displayName = displayName.trim();
-        if (displayName.isEmpty() || displayName == null|| displayName.length() < 1 || displayName.length() > 20) {
-            throw new InvalidNameException("The display name entered is invalid, please try again");
+        try (StripedLocks.Held held = locks.player(playerId)) {
+            displayName = validDisplayName(displayName);
+
+            Player p = store.getPlayer(playerId);
+            if (p == null) {
+                throw new IDInvalidException("ID does not match to any player in the system");
+            }
+            p.setDisplayName(displayName);
+            store.updatePlayer(p);
         }
+    }
 
-        ArrayList<Player> players = Player.getPlayers();
-        for (Player p : players) {
-            if(p.getId() == playerId) {
-                p.setDisplayName(displayName);
-                Player.serialisePlayers(players);
-                return;
+    /**
+     * Updates the player's display name, provided the player has not changed since the
+     * caller saw it at the given version.
+     *
+     * @param playerId The ID of the player to be updated.
+     * @param displayName The new display name of the player.
+     * @param expectedVersion The player's version as last seen, see getPlayerVersion.
+     * @return True if the name was updated, false if the player is no longer at that version.
+     * @throws IDInvalidException If the ID does not match to any player in the system.
+     * @throws InvalidNameException If the name is null, starts/ends with whitespace,
+     *                              is less than 1 characters or more than 20 characters.
+     */
+    public boolean updatePlayerDisplayName(int playerId, String displayName, long expectedVersion)
+        throws IDInvalidException, InvalidNameException {
+
+        // an invalid name fails whatever the version
+        displayName = validDisplayName(displayName);
+        // a conflict is found without waiting for the lock, as the version never goes back
+        Player player = store.getPlayer(playerId);
+        if (player != null && player.getVersion() != expectedVersion) {
+            return false;
+        }
+        try (StripedLocks.Held held = locks.player(playerId)) {
+            if (player != null && player.getVersion() != expectedVersion) {
+                return false;
             }
+            updatePlayerDisplayName(playerId, displayName);
+            return true;
         }
+    }
 
-        throw new IDInvalidException("ID does not match to any player in the system");
+    // the trimmed display name, if it is 1 to 20 characters long
+    private static String validDisplayName(String displayName) {
+        displayName = displayName == null ? "" : displayName.trim();
+        if (displayName.isEmpty() || displayName.length() > 20) {
+            throw new InvalidNameException("The display name entered is invalid, please try again");
+        }
+        return displayName;
+    }
+
+    /**
+     * Get the version of a player, which goes up with every change to the player.
+     *
+     * @param playerId The ID of the player being queried.
+     * @return The player's version, to pass to a conditional update.
+     * @throws IDInvalidException If the ID does not match to any player in the system.
+     */
+    public long getPlayerVersion(int playerId) throws IDInvalidException {
+        Player player = store.getPlayer(playerId);
+        if (player == null) {
+            throw new IDInvalidException("ID does not match to any player in the system");
+        }
+        return player.getVersion();
     }
 
     /**
@@ -166,14 +329,48 @@ public class GamesLeague implements GamesLeagueInterface {
      * @return The ID of the player in the system or -1 if the player does not exist.
      */
     public int getPlayerId(String email){
-        ArrayList<Player> players = Player.getPlayers();
-        for (Player p : players){
-            if(p.getEmail().equals(email)) {
-                return p.getId();
-            }
-        }
+        // matched regardless of case, as in createPlayer
+        return store.getPlayerIdByEmail(email);
+    }
 
-        return -1;
+    /**
+     * Get the false-positive rate of the filter that answers lookups of unregistered
+     * emails (in getPlayerId, createPlayer and invites) without reaching the email index.
+     *
+     * @return The share of lookups of unregistered emails so far that the filter let
+     *         through to the index, between 0 and 1, or 0 if there were none.
+     */
+    public double getEmailFilterFalsePositiveRate() {
+        return store.getEmailFilterFalsePositiveRate();
+    }
+
+    /**
+     * Find players by the start of the words in their display name or name.
+     * Every word of the prefix must start a word of the player's names, ignoring case,
+     * e.g. "ali sm" finds "Alice Smith". Deactivated players are not found.
+     *
+     * @param prefix The start of the words to search for.
+     * @param limit The maximum number of players to return.
+     * @return Up to limit player IDs, those with a word equal to the prefix first,
+     *         or an empty array if none match.
+     */
+    public int[] searchPlayersByPrefix(String prefix, int limit) {
+        return store.searchPlayersByPrefix(prefix, limit);
+    }
+
+    /**
+     * Find players whose display name or name resembles the query, allowing for typing errors.
+     * Each word of the query is matched against the words of the player's names, ignoring
+     * case: an equal word scores highest, then a word it starts, then a word with the same
+     * first letter within one edit (two for query words of six or more letters).
+     * Deactivated players are not found.
+     *
+     * @param query The words to search for.
+     * @param limit The maximum number of players to return.
+     * @return Up to limit player IDs, best match first, or an empty array if none match.
+     */
+    public int[] searchPlayers(String query, int limit) {
+        return store.searchPlayers(query, limit);
     }
 
 
@@ -186,14 +383,13 @@ public class GamesLeague implements GamesLeagueInterface {
      *
      */
     public String getPlayerDisplayName(int playerId) throws IDInvalidException{
-        ArrayList<Player> players = Player.getPlayers();
-        for (Player p : players) {
-            if(p.getId() == playerId) {
-                return p.getDisplayName();
-
+        try (StripedLocks.Held held = locks.player(playerId)) {
+            Player p = store.getPlayer(playerId);
+            if (p == null) {
+                throw new IDInvalidException("ID does not match any player in the system");
             }
+            return p.getDisplayName();
         }
-        throw new IDInvalidException("ID does not match any player in the system");
     }
 
 
@@ -207,13 +403,13 @@ public class GamesLeague implements GamesLeagueInterface {
      */
     public String getPlayerEmail(int playerId) throws IllegalEmailException{
 
-        ArrayList<Player> players = Player.getPlayers();
-        for (Player p : players) {
-            if(p.getId() == playerId) {
-                return p.getEmail();
+        try (StripedLocks.Held held = locks.player(playerId)) {
+            Player p = store.getPlayer(playerId);
+            if (p == null) {
+                throw new IllegalEmailException("ID does not match to any email in the system");
             }
+            return p.getEmail();
         }
-        throw new IllegalEmailException("ID does not match to any email in the system");
     }
 
 
@@ -226,7 +422,19 @@ public class GamesLeague implements GamesLeagueInterface {
      */
     public int[] getPlayerLeagues(int playerId) throws IDInvalidException{
 
-        return new int[0]; // placeholder so class compiles
+        if (store.getPlayer(playerId) == null) {
+            throw new IDInvalidException("ID does not match to any player in the system");
+        }
+
+        // only the player's own leagues are looked at, through the membership index
+        LocalDate today = LocalDate.now();
+        ArrayList<Integer> inProgress = new ArrayList<>();
+        for (int leagueId : store.getMemberLeagueIds(playerId)) {
+            if (isInProgress(view(leagueId), today)) {
+                inProgress.add(leagueId);
+            }
+        }
+        return inProgress.stream().mapToInt(Integer::intValue).toArray();
     };
 
 
@@ -239,7 +447,10 @@ public class GamesLeague implements GamesLeagueInterface {
      */
     public int[] getPlayerOwnedLeagues(int playerId) throws IDInvalidException{
 
-        return new int[0]; // placeholder so class compiles
+        if (store.getPlayer(playerId) == null) {
+            throw new IDInvalidException("ID does not match to any player in the system");
+        }
+        return store.getOwnedLeagueIds(playerId).stream().mapToInt(Integer::intValue).toArray();
     };
 
     /**
@@ -251,7 +462,17 @@ public class GamesLeague implements GamesLeagueInterface {
      */
     public int[] getPlayerInvites(int playerId) throws IDInvalidException{
 
-        return new int[0]; // placeholder so class compiles
+        try (StripedLocks.Held held = locks.player(playerId)) {
+            Player player = store.getPlayer(playerId);
+            if (player == null) {
+                throw new IDInvalidException("ID does not match to any player in the system");
+            }
+
+            // email invites are converted on sign up, but saved data may predate that
+            LinkedHashSet<Integer> invites = new LinkedHashSet<>(store.getInvitedLeagueIds(playerId));
+            invites.addAll(store.getEmailInvitedLeagueIds(player.getEmail()));
+            return invites.stream().mapToInt(Integer::intValue).toArray();
+        }
     };
 
 
@@ -292,13 +513,13 @@ public class GamesLeague implements GamesLeagueInterface {
      */
     public LocalDate getPlayerJoinDate(int playerId) throws IDInvalidException{
 
-        ArrayList<Player> players = Player.getPlayers();
-        for (Player p : players) {
-            if(p.getId() == playerId) {
-                return p.getJoinDate();
+        try (StripedLocks.Held held = locks.player(playerId)) {
+            Player p = store.getPlayer(playerId);
+            if (p == null) {
+                throw new IDInvalidException("ID does not match to any player in the system");
             }
+            return p.getJoinDate();
         }
-        throw new IDInvalidException("ID does not match to any player in the system");
     };
 
     // Leagues
@@ -309,14 +530,76 @@ public class GamesLeague implements GamesLeagueInterface {
      * @return An array of leagues IDs in the system or an empty array if none exists.
      */
     public int[] getLeagueIds(){
-        ArrayList<League> leagues = League.getLeagues();
-        int[] leagueIds = new int[leagues.size()];
+        return store.getLeagueIds();
+    };
 
-        for (int i = 0; i < leagues.size(); i++) {
-            leagueIds[i] = leagues.get(i).getId();
+    /**
+     * Get the leagues for a game type with a given status today, e.g. all IN_PROGRESS
+     * WORDMASTER leagues. The status is decided as by getLeagueStatus.
+     *
+     * @param gameType The game type to match, or null for any game type.
+     * @param status The status to match, or null for any status.
+     * @return An array of league IDs in ascending order or an empty array if none match.
+     */
+    public int[] getLeagueIds(GameType gameType, Status status) {
+        int[] leagueIds = status == null ? getLeagueIds() : store.getLeagueIdsByStatus(status, LocalDate.now());
+        if (gameType == null) {
+            return status == null ? Arrays.stream(leagueIds).sorted().toArray() : leagueIds;
         }
-        return leagueIds;
-    };
+        // filter the status matches by game type, or list the game type's leagues
+        Set<Integer> ofGameType = store.getLeagueIdsByGameType(gameType);
+        if (status == null) {
+            return ofGameType.stream().mapToInt(Integer::intValue).sorted().toArray();
+        }
+        return Arrays.stream(leagueIds).filter(ofGameType::contains).toArray();
+    }
+
+    /**
+     * Get the leagues running on at least one day of a range, e.g. this week. A league
+     * runs from its start date to its end date, or on from its start date if it has no
+     * end date yet.
+     *
+     * @param firstDay The first day of the range as epoch day.
+     * @param lastDay The last day of the range as epoch day.
+     * @return An array of league IDs in ascending order or an empty array if none match.
+     * @throws InvalidDateException If lastDay is before firstDay.
+     */
+    public int[] getLeagueIdsRunningBetween(int firstDay, int lastDay) throws InvalidDateException {
+        checkDayRange(firstDay, lastDay);
+        return store.getLeagueIdsRunningBetween(LocalDate.ofEpochDay(firstDay), LocalDate.ofEpochDay(lastDay));
+    }
+
+    /**
+     * Get the leagues starting on a day of a range.
+     *
+     * @param firstDay The first day of the range as epoch day.
+     * @param lastDay The last day of the range as epoch day.
+     * @return An array of league IDs in ascending order or an empty array if none match.
+     * @throws InvalidDateException If lastDay is before firstDay.
+     */
+    public int[] getLeagueIdsStartingBetween(int firstDay, int lastDay) throws InvalidDateException {
+        checkDayRange(firstDay, lastDay);
+        return store.getLeagueIdsStartingBetween(LocalDate.ofEpochDay(firstDay), LocalDate.ofEpochDay(lastDay));
+    }
+
+    /**
+     * Get the leagues ending on a day of a range, e.g. the leagues ending this week.
+     *
+     * @param firstDay The first day of the range as epoch day.
+     * @param lastDay The last day of the range as epoch day.
+     * @return An array of league IDs in ascending order or an empty array if none match.
+     * @throws InvalidDateException If lastDay is before firstDay.
+     */
+    public int[] getLeagueIdsEndingBetween(int firstDay, int lastDay) throws InvalidDateException {
+        checkDayRange(firstDay, lastDay);
+        return store.getLeagueIdsEndingBetween(LocalDate.ofEpochDay(firstDay), LocalDate.ofEpochDay(lastDay));
+    }
+
+    private static void checkDayRange(int firstDay, int lastDay) throws InvalidDateException {
+        if (lastDay < firstDay) {
+            throw new InvalidDateException("The last day of the range is before the first day");
+        }
+    }
 
     /**
      * Creates a league.
@@ -341,15 +624,7 @@ public class GamesLeague implements GamesLeagueInterface {
         name = name.trim();
 
         // check if ID is valid
-        int[] playerIds = getPlayerIds();
-        boolean validOwner = false;
-        for (int id : playerIds) {
-            if (id == owner) {
-                validOwner = true;
-                break;
-            }
-        }
-        if (!validOwner) {
+        if (store.getPlayer(owner) == null) {
             throw new IDInvalidException("ID does not match any player in the system.");
         }
 
@@ -358,32 +633,37 @@ public class GamesLeague implements GamesLeagueInterface {
             throw new InvalidNameException("The name entered is invalid, please try again");
         }
 
-        // check if name is already in use
-        ArrayList<League> leagues = League.getLeagues();
-        for (League l : leagues) {
-            if(l.getLeagueName().equalsIgnoreCase(name)){
-                throw new IllegalNameException("The name entered is already in use. Please try again.");
-            }
+        // claim the name for the new league, failing if it is already in use
+        League league = new League(store.nextLeagueId(), owner, name, gameType);
+        if (!store.reserveLeagueName(name, league.getId())) {
+            throw new IllegalNameException("The name entered is already in use. Please try again.");
         }
 
-        // once all validation checks are passed, create new league object
-        League league = new League(owner, name, gameType);
-        league.addPlayerToLeague(owner);
-        league.addLeagueToList();
+        // once all validation checks are passed, add the new league; the owner is locked so
+        // that a deactivation sees either none of the league or all of it
+        try (StripedLocks.Held held = locks.lock(new int[] {league.getId()}, new int[] {owner})) {
+            league.addPlayerToLeague(owner);
+            store.addLeague(league);
+        }
         return league.getId();
     }
 
     /**
      * Removes a league and all associated game data from the system.
      * <p>
-     * 
+     * Its name can be used by a new league afterwards; its ID is never handed out again.
      *
      * @param leagueId The ID of the league to be removed.
      * @throws IDInvalidException If the ID does not match to any league in the system.
      */
     public void removeLeague(int leagueId) throws IDInvalidException{
 
-        return; // placeholder so class compiles
+        // a deactivation locks every league of the player, so it sees all of the league or none of it
+        try (StripedLocks.Held held = locks.league(leagueId)) {
+            if (!store.removeLeague(leagueId)) {
+                throw new IDInvalidException("ID does not match any league in the system.");
+            }
+        }
     };
 
     /**
@@ -395,14 +675,11 @@ public class GamesLeague implements GamesLeagueInterface {
      * @throws IDInvalidException If the ID does not match to any league in the system.
      */
     public String getLeagueName(int leagueId) throws IDInvalidException{
-        ArrayList<League> leagues = League.getLeagues();
-        for (League l : leagues) {
-            if(l.getId() == leagueId) {
-                return l.getLeagueName();
-
-            }
+        LeagueView l = view(leagueId);
+        if (l == null) {
+            throw new IDInvalidException("ID does not match any player in the system");
         }
-        throw new IDInvalidException("ID does not match any player in the system");
+        return l.getLeagueName();
     };
 
     /**
@@ -421,31 +698,83 @@ public class GamesLeague implements GamesLeagueInterface {
                 InvalidNameException, 
                 IllegalNameException{
 
-        newName = newName.trim();
-        if (newName.isEmpty() || newName.length() < 1 || newName.length() > 20) {
-            throw new InvalidNameException("The name entered is invalid. Please try again.");
-        }
+        try (StripedLocks.Held held = locks.league(leagueId)) {
+            newName = validLeagueName(newName);
 
-        ArrayList<League> leagues = League.getLeagues();
-        boolean leagueFound = false;
+            League targetLeague = store.getLeague(leagueId);
+            if (targetLeague == null) {
+                throw new IDInvalidException("ID does not match any league in the system.");
+            }
 
-        for (League l : leagues) {
-            if (l.getLeagueName().equalsIgnoreCase(newName)) {
+            // the new name is claimed before the old one is released
+            if (!store.renameLeagueName(leagueId, newName)) {
                 throw new IllegalNameException("The name entered is already in use. Please try again.");
             }
-            if (l.getId() == leagueId) {
-                l.setLeagueName(newName);
-                leagueFound = true;
-            }
+
+            targetLeague.setLeagueName(newName);
+            store.updateLeague(targetLeague);
         }
+    };
 
-        if (!leagueFound) {
-            throw new IDInvalidException("ID does not match any league in the system.");
+
+    /**
+     * Update the name of a league, provided the league has not changed since the caller
+     * saw it at the given version.
+     *
+     * @param leagueId The ID of the league to be updated.
+     * @param newName The new name of the league.
+     * @param expectedVersion The league's version as last seen, see getLeagueVersion.
+     * @return True if the name was updated, false if the league is no longer at that version.
+     * @throws IDInvalidException If the ID does not match to any league in the system.
+     * @throws InvalidNameException If the name is null, starts/ends with whitespace,
+     *                              is less than 1 characters or more than 20 characters.
+     * @throws IllegalNameException if it duplicates an existing league name.
+     */
+    public boolean updateLeagueName(int leagueId, String newName, long expectedVersion)
+        throws IDInvalidException,
+                InvalidNameException,
+                IllegalNameException{
+
+        // an invalid name fails whatever the version
+        newName = validLeagueName(newName);
+        // a conflict is found from the view without waiting for the lock
+        LeagueView seen = view(leagueId);
+        if (seen != null && seen.getVersion() != expectedVersion) {
+            return false;
         }
+        try (StripedLocks.Held held = locks.league(leagueId)) {
+            League league = store.getLeague(leagueId);
+            if (league != null && league.getVersion() != expectedVersion) {
+                return false;
+            }
+            updateLeagueName(leagueId, newName);
+            return true;
+        }
+    }
 
-        League.serialiseLeagues(leagues);
-    };
+    // the trimmed league name, if it is 1 to 20 characters long
+    private static String validLeagueName(String name) {
+        name = name == null ? "" : name.trim();
+        if (name.isEmpty() || name.length() > 20) {
+            throw new InvalidNameException("The name entered is invalid. Please try again.");
+        }
+        return name;
+    }
 
+    /**
+     * Get the version of a league, which goes up with every change to the league.
+     *
+     * @param leagueId The ID of the league being queried.
+     * @return The league's version, to pass to a conditional update.
+     * @throws IDInvalidException If the ID does not match to any league in the system.
+     */
+    public long getLeagueVersion(int leagueId) throws IDInvalidException {
+        LeagueView league = view(leagueId);
+        if (league == null) {
+            throw new IDInvalidException("ID does not match any league in the system.");
+        }
+        return league.getVersion();
+    }
 
     /**
      * Invites a potential player (may not yet be site member) to a league.
@@ -459,60 +788,42 @@ public class GamesLeague implements GamesLeagueInterface {
     public void invitePlayerToLeague(int leagueId, String email)
             throws IDInvalidException, InvalidEmailException {
 
-        // validate email
-        if (email == null || email.isEmpty() || !email.contains("@")) {
-            throw new InvalidEmailException("The email entered is invalid. Please try again.");
-        }
-
-        // retrieve leagues
-        ArrayList<League> leagues = League.getLeagues();
-        League targetLeague = null;
-
-        // find the target league
-        for (int i = 0; i < leagues.size(); i++) {
-            if (leagues.get(i).getId() == leagueId) {
-                targetLeague = leagues.get(i);
-                break;
+        try (StripedLocks.Held held = locks.league(leagueId)) {
+            // validate email
+            if (email == null || email.isEmpty() || !email.contains("@")) {
+                throw new InvalidEmailException("The email entered is invalid. Please try again.");
             }
-        }
 
-        if (targetLeague == null) {
-            throw new IDInvalidException("ID does not match any league in the system.");
-        }
+            // find the target league
+            League targetLeague = store.getLeague(leagueId);
+            if (targetLeague == null) {
+                throw new IDInvalidException("ID does not match any league in the system.");
+            }
 
-        // retrieve players
-        ArrayList<Player> players = Player.getPlayers();
-        boolean isRegisteredPlayer = false;
-        int playerId = -1;
+            // check if the email belongs to an existing player
+            int playerId = store.getPlayerIdByEmail(email);
+            boolean isRegisteredPlayer = playerId != -1;
 
-        // check if the email belongs to an existing player
-        for (Player p : players) {
-            if (p.getEmail().equalsIgnoreCase(email)) {
-                isRegisteredPlayer = true;
-                playerId = p.getId();
-                break;
-            }
-        }
+            if (isRegisteredPlayer) {
+                // if the player is already in the league, prevent duplicate invites
+                if (targetLeague.hasPlayer(playerId)) {
+                    System.out.println("Player with email " + email + " is already in the league.");
+                    return;
+                }
 
-        if (isRegisteredPlayer) {
-            // if the player is already in the league, prevent duplicate invites
-            if (targetLeague.getLeaguePlayerIds().contains(playerId)) {
-                System.out.println("Player with email " + email + " is already in the league.");
-                return;
+                // if player is registered, add to player invites
+                if (!targetLeague.hasPlayerInvite(playerId)) {
+                    targetLeague.addPlayerInvite(playerId);
+                }
+            } else {
+                // if player is not registered add to email invites
+                if (!targetLeague.hasEmailInvite(email)) {
+                    targetLeague.addEmailInvite(email);
+                }
             }
 
-            // if player is registered, add to player invites
-            if (!targetLeague.getPlayerInvites().contains(playerId)) {
-                targetLeague.addPlayerInvite(playerId);
-            }
-        } else {
-            // if player is not registered add to email invites
-            if (!targetLeague.getEmailInvites().contains(email)) {
-                targetLeague.addEmailInvite(email);
-            }
+            store.updateLeague(targetLeague);
         }
-
-        League.serialiseLeagues(leagues);
     }
 
     /**
@@ -527,49 +838,70 @@ public class GamesLeague implements GamesLeagueInterface {
     public void acceptInviteToLeague(int leagueId, int playerId) 
         throws IDInvalidException, IllegalOperationException {
 
-        ArrayList<League> leagues = League.getLeagues();
-        ArrayList<Player> players = Player.getPlayers();
-        League targetLeague = null;
-        Player targetPlayer = null;
-
-        // find the league
-        for (League l : leagues) {
-            if (l.getId() == leagueId) {
-                targetLeague = l;
-                break;
+        checkThenChange(leagueId, playerId, true, league -> {
+            // find the player
+            Player targetPlayer = store.getPlayer(playerId);
+            if (targetPlayer == null) {
+                throw new IDInvalidException("ID does not match any player in the system.");
             }
-        }
-        if (targetLeague == null) {
-            throw new IDInvalidException("ID does not match any league in the system.");
-        }
 
-        // find the player
-        for (Player p : players) {
-            if (p.getId() == playerId) {
-                targetPlayer = p;
-                break;
+            // check if the player was invited
+            String email = targetPlayer.getEmail();
+            boolean invitedById = league.getPlayerInvites().contains(playerId);
+            String emailKey = GamesLeagueStore.normaliseEmail(email);
+            boolean invitedByEmail = emailKey != null && league.getEmailInviteKeys().contains(emailKey);
+
+            if (!invitedById && !invitedByEmail) {
+                throw new IllegalOperationException("This player does not have an active invitation.");
             }
-        }
-        if (targetPlayer == null) {
-            throw new IDInvalidException("ID does not match any player in the system.");
-        }
 
-        // check if the player was invited
-        boolean invitedById = targetLeague.getPlayerInvites().contains(playerId);
-        boolean invitedByEmail = targetLeague.getEmailInvites().contains(targetPlayer.getEmail());
+            return targetLeague -> {
+                // remove invitation
+                targetLeague.removePlayerInvite(playerId);
+                targetLeague.removeEmailInvite(email);
 
-        if (!invitedById && !invitedByEmail) {
-            throw new IllegalOperationException("This player does not have an active invitation.");
-        }
+                // add player to the league
+                targetLeague.addPlayerToLeague(playerId);
+            };
+        });
+    }
 
-        // remove invitation
-        targetLeague.getPlayerInvites().remove(Integer.valueOf(playerId));
-        targetLeague.getEmailInvites().remove(targetPlayer.getEmail());
+    // a change to a league, checked against a published state of the league
+    private interface LeagueChange {
+        // throws if the change cannot be made to the league as seen, else returns the change
+        Consumer<League> check(LeagueView seen);
+    }
 
-        // add player to the league
-        targetLeague.getLeaguePlayerIds().add(playerId);
-        League.serialiseLeagues(leagues);
+    /**
+     * Checks a change against the league's view before taking any lock, so a change bound
+     * to fail, e.g. accepting an invite that was never sent, fails without waiting for the
+     * locks; the view was the league's state at some point during the call. The change is
+     * then read, made and stored under the league's lock, and the player's if given, like
+     * any other write. If the league or the player changed since the check, it is checked
+     * again under the locks first.
+     */
+    private void checkThenChange(int leagueId, int playerId, boolean lockPlayer, LeagueChange change) {
+        LeagueView seen = view(leagueId);
+        if (seen == null) {
+            throw new IDInvalidException("ID does not match any league in the system.");
+        }
+        Player player = lockPlayer ? store.getPlayer(playerId) : null;
+        long playerVersion = player == null ? -1 : player.getVersion();
+        Consumer<League> apply = change.check(seen);
 
+        int[] lockedPlayers = lockPlayer ? new int[] {playerId} : new int[0];
+        try (StripedLocks.Held held = locks.lock(new int[] {leagueId}, lockedPlayers)) {
+            League league = store.getLeague(leagueId);
+            if (league == null) {
+                throw new IDInvalidException("ID does not match any league in the system.");
+            }
+            if (league.getVersion() != seen.getVersion() || (player != null && player.getVersion() != playerVersion)) {
+                // under the lock the view is the league's current state
+                apply = change.check(league.getView());
+            }
+            apply.accept(league);
+            store.updateLeague(league);
+        }
     }
 
 
@@ -585,58 +917,36 @@ public class GamesLeague implements GamesLeagueInterface {
     public void removeInviteFromLeague(int leagueId, String email)
             throws IDInvalidException, IllegalEmailException {
 
-        // get all leagues
-        ArrayList<League> leagues = League.getLeagues();
-        League targetLeague = null;
-
-        // validate email
-        if (email == null || email.isEmpty() || !email.contains("@")) {
-            throw new IllegalEmailException("The email entered is invalid.");
-        }
-
-        // find the target league
-        for (League l : leagues) {
-            if (l.getId() == leagueId) {
-                targetLeague = l;
-                break;
+        try (StripedLocks.Held held = locks.league(leagueId)) {
+            // validate email
+            if (email == null || email.isEmpty() || !email.contains("@")) {
+                throw new IllegalEmailException("The email entered is invalid.");
             }
-        }
 
-        // ff league does not exist, throw exception
-        if (targetLeague == null) {
-            throw new IDInvalidException("ID does not match any league in the system.");
-        }
+            // find the target league
+            League targetLeague = store.getLeague(leagueId);
 
-        // get the league invitation lists
-        ArrayList<String> emailInvites = targetLeague.getEmailInvites();
-        ArrayList<Integer> playerInvites = targetLeague.getPlayerInvites();
+            // ff league does not exist, throw exception
+            if (targetLeague == null) {
+                throw new IDInvalidException("ID does not match any league in the system.");
+            }
 
-        boolean removed = false;
+            // remove email from email invites list if it exists
+            boolean removed = targetLeague.removeEmailInvite(email);
 
-        // remove email from email invites list if it exists
-        if (emailInvites.contains(email)) {
-            emailInvites.remove(email);
-            removed = true;
-        }
+            // also check if the email belongs to a registered player and remove them from playerInvites
+            int playerId = store.getPlayerIdByEmail(email);
+            if (playerId != -1 && targetLeague.removePlayerInvite(playerId)) {
+                removed = true;
+            }
 
-        // also check if the email belongs to a registered player and remove them from playerInvites
-        ArrayList<Player> players = Player.getPlayers();
-        for (Player p : players) {
-            if (p.getEmail().equals(email)) {
-                if (playerInvites.contains(p.getId())) {
-                    playerInvites.remove(Integer.valueOf(p.getId()));
-                    removed = true;
-                }
-                break;
+            // if nothing was removed, the email was not found in either invite list
+            if (!removed) {
+                throw new IllegalEmailException("No active invitation found for this email.");
             }
-        }
 
-        // if nothing was removed, the email was not found in either invite list
-        if (!removed) {
-            throw new IllegalEmailException("No active invitation found for this email.");
+            store.updateLeague(targetLeague);
         }
-
-        League.serialiseLeagues(leagues);
     }
 
 
@@ -650,16 +960,14 @@ public class GamesLeague implements GamesLeagueInterface {
     public String[] getLeagueEmailInvites(int leagueId) throws IDInvalidException{
 
         // find the target league
-        ArrayList<League> leagues = League.getLeagues();
-        for (League l : leagues) {
-            if (l.getId() == leagueId) {
-                // return email invites as an array
-                return l.getEmailInvites().toArray(new String[0]);
-            }
+        LeagueView l = view(leagueId);
+        // if league is not found, throw an exception
+        if (l == null) {
+            throw new IDInvalidException("ID does not match any league in the system.");
         }
 
-        // if league is not found, throw an exception
-        throw new IDInvalidException("ID does not match any league in the system.");
+        // return email invites as an array
+        return l.getEmailInvites().toArray(new String[0]);
     };
 
 
@@ -673,16 +981,14 @@ public class GamesLeague implements GamesLeagueInterface {
     public int[] getLeaguePlayerInvites(int leagueId) throws IDInvalidException{
 
         // find the target league
-        ArrayList<League> leagues = League.getLeagues();
-        for (League l : leagues) {
-            if (l.getId() == leagueId) {
-                // return player invites as an array
-                return l.getPlayerInvites().stream().mapToInt(Integer::intValue).toArray();
-            }
+        LeagueView l = view(leagueId);
+        // ff league is not found, throw an exception
+        if (l == null) {
+            throw new IDInvalidException("ID does not match any league in the system.");
         }
 
-        // ff league is not found, throw an exception
-        throw new IDInvalidException("ID does not match any league in the system.");
+        // return player invites as an array
+        return l.getPlayerInvites().toIntArray();
     };
 
 
@@ -699,16 +1005,14 @@ public class GamesLeague implements GamesLeagueInterface {
     public int[] getLeaguePlayers(int leagueId) throws IDInvalidException{
 
         // find the target league
-        ArrayList<League> leagues = League.getLeagues();
-        for (League l : leagues) {
-            if (l.getId() == leagueId) {
-                // return league players as an array
-                return l.getLeaguePlayerIds().stream().mapToInt(Integer::intValue).toArray();
-            }
+        LeagueView l = view(leagueId);
+        // if league is not found, throw an exception
+        if (l == null) {
+            throw new IDInvalidException("ID does not match any league in the system.");
         }
 
-        // if league is not found, throw an exception
-        throw new IDInvalidException("ID does not match any league in the system.");
+        // return league players as an array
+        return l.getLeaguePlayerIds().toIntArray();
     };
 
 
@@ -722,16 +1026,14 @@ public class GamesLeague implements GamesLeagueInterface {
     public int[] getLeagueOwners(int leagueId) throws IDInvalidException{
 
         // find the target league
-        ArrayList<League> leagues = League.getLeagues();
-        for (League l : leagues) {
-            if (l.getId() == leagueId) {
-                // return league owners as an array
-                return l.getOwnerIds().stream().mapToInt(Integer::intValue).toArray();
-            }
+        LeagueView l = view(leagueId);
+        // if league is not found, throw an exception
+        if (l == null) {
+            throw new IDInvalidException("ID does not match any league in the system.");
         }
 
-        // if league is not found, throw an exception
-        throw new IDInvalidException("ID does not match any league in the system.");
+        // return league owners as an array
+        return l.getOwnerIds().toIntArray();
     };
 
     /**
@@ -761,25 +1063,33 @@ public class GamesLeague implements GamesLeagueInterface {
     public Status getLeagueStatus(int leagueId )
         throws IDInvalidException{
 
-        ArrayList<League> leagues = League.getLeagues();
-        for (League l : leagues) {
-            if (l.getId() == leagueId) {
-                LocalDate today = LocalDate.now();
-                LocalDate startDate = l.getStartDate();
-                LocalDate endDate = l.getEndDate();
-
-                if (startDate == null || startDate.isAfter(today)) {
-                    return Status.PENDING;
-                } else if (!startDate.isAfter(today) && (endDate == null || endDate.isAfter(today))) {
-                    return Status.IN_PROGRESS;
-                } else if (endDate != null && endDate.isBefore(today)) {
-                    if (l.getCloseDate() == null) {
-                        l.setCloseDate(endDate);
-                        League.serialiseLeagues(leagues);
+        LeagueView l = view(leagueId);
+        if (l == null) {
+            throw new IDInvalidException("ID does not match any league in the system.");
+        }
+
+        LocalDate today = LocalDate.now();
+        LocalDate startDate = l.getStartDate();
+        LocalDate endDate = l.getEndDate();
+
+        if (startDate == null || startDate.isAfter(today)) {
+            return Status.PENDING;
+        } else if (!startDate.isAfter(today) && (endDate == null || endDate.isAfter(today))) {
+            return Status.IN_PROGRESS;
+        } else if (endDate != null && endDate.isBefore(today)) {
+            if (l.getCloseDate() == null) {
+                // the league is read without locking, so whether it still needs closing is
+                // checked again under its lock
+                try (StripedLocks.Held held = locks.league(leagueId)) {
+                    // a league removed meanwhile has nothing left to close
+                    League league = store.getLeague(leagueId);
+                    if (league != null && league.getCloseDate() == null && endDate.equals(league.getEndDate())) {
+                        league.setCloseDate(endDate);
+                        store.updateLeague(league);
                     }
-                    return Status.CLOSED;
                 }
             }
+            return Status.CLOSED;
         }
 
         throw new IDInvalidException("ID does not match any league in the system.");
@@ -787,6 +1097,13 @@ public class GamesLeague implements GamesLeagueInterface {
     };
 
 
+    // the IN_PROGRESS case of getLeagueStatus, without its side effects
+    private static boolean isInProgress(LeagueView l, LocalDate today) {
+        LocalDate startDate = l.getStartDate();
+        LocalDate endDate = l.getEndDate();
+        return startDate != null && !startDate.isAfter(today) && (endDate == null || endDate.isAfter(today));
+    }
+
     /**
      * Start league
      *
@@ -798,24 +1115,16 @@ public class GamesLeague implements GamesLeagueInterface {
     public void setLeagueStartDate(int leagueId, int day)
             throws IDInvalidException, IllegalOperationException {
 
-        ArrayList<League> leagues = League.getLeagues();
-        boolean leagueFound = false;
-
-        for (League l : leagues) {
-            if (l.getId() == leagueId) {
-                LocalDate requestedStartDate = LocalDate.ofEpochDay(day);
-
-                l.setStartDate(requestedStartDate);
-                leagueFound = true;
-                break;
+        try (StripedLocks.Held held = locks.league(leagueId)) {
+            League targetLeague = store.getLeague(leagueId);
+            if (targetLeague == null) {
+                throw new IDInvalidException("ID does not match any league in the system.");
             }
-        }
 
-        if (!leagueFound) {
-            throw new IDInvalidException("ID does not match any league in the system.");
+            LocalDate requestedStartDate = LocalDate.ofEpochDay(day);
+            targetLeague.setStartDate(requestedStartDate);
+            store.updateLeague(targetLeague);
         }
-
-        League.serialiseLeagues(leagues);
     }
 
     /** 
@@ -829,21 +1138,20 @@ public class GamesLeague implements GamesLeagueInterface {
     public void setLeagueEndDate(int leagueId, int day) 
         throws IDInvalidException, IllegalOperationException{
 
-        ArrayList<League> leagues = League.getLeagues();
-        for (League l : leagues) {
-            if (l.getId() == leagueId) {
-                if (getLeagueStatus(leagueId) == Status.CLOSED) {
-                    throw new IllegalOperationException("This league has already been closed.");
-                }
-
-                LocalDate endDate = LocalDate.ofEpochDay(day);
-                l.setEndDate(endDate);
-                League.serialiseLeagues(leagues);
-                return;
+        try (StripedLocks.Held held = locks.league(leagueId)) {
+            League l = store.getLeague(leagueId);
+            if (l == null) {
+                throw new IDInvalidException("ID does not match any league in the system.");
             }
-        }
-        throw new IDInvalidException("ID does not match any league in the system.");
+            if (getLeagueStatus(leagueId) == Status.CLOSED) {
+                throw new IllegalOperationException("This league has already been closed.");
+            }
+
+            LocalDate endDate = LocalDate.ofEpochDay(day);
+            l.setEndDate(endDate);
+            store.updateLeague(l);
 
+        }
     };
 
 
@@ -855,17 +1163,15 @@ public class GamesLeague implements GamesLeagueInterface {
      * @throws IDInvalidException If the ID does not match to any league in the system.
      */
     public int getLeagueStartDate(int leagueId) throws IDInvalidException {
-        ArrayList<League> leagues = League.getLeagues();
-        for (League l : leagues) {
-            if (l.getId() == leagueId) {
-                LocalDate startDate = l.getStartDate();
-                if (startDate == null) {
-                    return -1; //
-                }
-                return (int) startDate.toEpochDay();
-            }
+        LeagueView l = view(leagueId);
+        if (l == null) {
+            throw new IDInvalidException("ID does not match any league in the system.");
         }
-        throw new IDInvalidException("ID does not match any league in the system.");
+        LocalDate startDate = l.getStartDate();
+        if (startDate == null) {
+            return -1; //
+        }
+        return (int) startDate.toEpochDay();
     }
 
 
@@ -879,16 +1185,15 @@ public class GamesLeague implements GamesLeagueInterface {
          */
     public int getLeagueCloseDate(int leagueId) throws IDInvalidException{
 
-        ArrayList<League> leagues = League.getLeagues();
-        for (League l : leagues) {
-            if (l.getId() == leagueId) {
-                if (getLeagueStatus(leagueId) != Status.CLOSED) {
-                    return -1;
-                }
-                return (int) l.getCloseDate().toEpochDay();
-            }
+        LeagueView l = view(leagueId);
+        if (l == null) {
+            throw new IDInvalidException("ID does not match any league in the system.");
         }
-        throw new IDInvalidException("ID does not match any league in the system.");
+        if (getLeagueStatus(leagueId) != Status.CLOSED) {
+            return -1;
+        }
+        // closing may have published a new view
+        return (int) view(leagueId).getCloseDate().toEpochDay();
     };
 
 
@@ -916,12 +1221,67 @@ public class GamesLeague implements GamesLeagueInterface {
      * @param newName The name of the new league.
      * @return The ID of the new league.
      * @throws IDInvalidException If the ID does not match to any league in the system.
+     * @throws InvalidNameException If the new name is empty or more than 20 characters once trimmed.
      * @throws IllegalNameException If the new name already exists in the platform.
+     * @throws IllegalOperationException If every owner of the league has been deactivated.
      */
     public int cloneLeague(int leagueId, String newName) 
-        throws IDInvalidException, IllegalNameException{
-        
-        return 0; // placeholder so class compiles
+        throws IDInvalidException, InvalidNameException, IllegalNameException{
+
+        int cloneId;
+        int[] owners;
+        int[] invited;
+        GameType gameType;
+        try (StripedLocks.Held held = locks.league(leagueId)) {
+            League original = store.getLeague(leagueId);
+            if (original == null) {
+                throw new IDInvalidException("ID does not match any league in the system.");
+            }
+
+            newName = newName.trim();
+            if (newName.isEmpty() || newName.length() > 20) {
+                throw new InvalidNameException("The name entered is invalid. Please try again.");
+            }
+
+            owners = original.getOwnerIds().toIntArray();
+            // everyone else in the original league is invited
+            invited = Arrays.stream(original.getLeaguePlayerIds().toIntArray())
+                    .filter(playerId -> !original.isOwner(playerId))
+                    .toArray();
+            gameType = original.getGameType();
+            cloneId = store.nextLeagueId();
+            if (!store.reserveLeagueName(newName, cloneId)) {
+                throw new IllegalNameException("The name entered is already in use. Please try again.");
+            }
+        }
+
+        // the clone's stripe may come before the original's, so it is only locked once the
+        // original's is released; the owners are locked with it, as in createLeague, so that
+        // a deactivation sees either none of the clone or all of it
+        try (StripedLocks.Held held = locks.lock(new int[] {cloneId}, owners)) {
+            // owners deactivated since the original was read do not own the clone
+            int[] active = Arrays.stream(owners)
+                    .filter(owner -> !store.getPlayer(owner).getEmail().isEmpty())
+                    .toArray();
+            if (active.length == 0) {
+                store.releaseLeagueName(newName, cloneId);
+                throw new IllegalOperationException("Every owner of league " + leagueId + " has been deactivated.");
+            }
+
+            // the first owner creates the clone, as in createLeague
+            League clone = new League(cloneId, active[0], newName, gameType);
+            for (int owner : active) {
+                clone.addPlayerToLeague(owner);
+                if (owner != active[0]) {
+                    clone.addOwner(owner);
+                }
+            }
+            for (int playerId : invited) {
+                clone.addPlayerInvite(playerId);
+            }
+            store.addLeague(clone);
+        }
+        return cloneId;
     };
 
 
@@ -983,40 +1343,18 @@ public class GamesLeague implements GamesLeagueInterface {
     public void addOwner(int leagueId, int playerId) 
         throws IDInvalidException, IllegalOperationException{
 
-        ArrayList<League> leagues = League.getLeagues();
-        ArrayList<Player> players = Player.getPlayers();
-        League targetLeague = null;
-        Player targetPlayer = null;
-
-        // find the league
-        for (League l : leagues) {
-            if (l.getId() == leagueId) {
-                targetLeague = l;
-                break;
+        checkThenChange(leagueId, playerId, false, league -> {
+            // find the player
+            if (store.getPlayer(playerId) == null) {
+                throw new IDInvalidException("ID does not match any player in the system.");
             }
-        }
-        if (targetLeague == null) {
-            throw new IDInvalidException("ID does not match any league in the system.");
-        }
 
-        // find the player
-        for (Player p : players) {
-            if (p.getId() == playerId) {
-                targetPlayer = p;
-                break;
+            // validate membership before adding owner
+            if (!league.getLeaguePlayerIds().contains(playerId)) {
+                throw new IllegalOperationException("Player must be a member of the league to be added as an owner.");
             }
-        }
-        if (targetPlayer == null) {
-            throw new IDInvalidException("ID does not match any player in the system.");
-        }
-
-        // validate membership before adding owner
-        if (!targetLeague.getLeaguePlayerIds().contains(playerId)) {
-            throw new IllegalOperationException("Player must be a member of the league to be added as an owner.");
-        }
-        targetLeague.addOwner(playerId);
-        League.serialiseLeagues(leagues);
-
+            return targetLeague -> targetLeague.addOwner(playerId);
+        });
     };
 
     /** 
@@ -1032,46 +1370,33 @@ public class GamesLeague implements GamesLeagueInterface {
     public void removeOwner(int leagueId, int playerId) 
         throws IDInvalidException, IllegalOperationException{
 
-        ArrayList<League> leagues = League.getLeagues();
-        ArrayList<Player> players = Player.getPlayers();
-        League targetLeague = null;
-        Player targetPlayer = null;
+        try (StripedLocks.Held held = locks.league(leagueId)) {
+            // find the league
+            League targetLeague = store.getLeague(leagueId);
+            if (targetLeague == null) {
+                throw new IDInvalidException("ID does not match any league in the system.");
+            }
 
-        // find the league
-        for (League l : leagues) {
-            if (l.getId() == leagueId) {
-                targetLeague = l;
-                break;
+            // find the player
+            Player targetPlayer = store.getPlayer(playerId);
+            if (targetPlayer == null) {
+                throw new IDInvalidException("ID does not match any player in the system.");
             }
-        }
-        if (targetLeague == null) {
-            throw new IDInvalidException("ID does not match any league in the system.");
-        }
 
-        // find the player
-        for (Player p : players) {
-            if (p.getId() == playerId) {
-                targetPlayer = p;
-                break;
+            // check if player is actually an owner
+            if (!targetLeague.isOwner(playerId)) {
+                throw new IllegalOperationException("Player is not an owner of the league.");
             }
-        }
-        if (targetPlayer == null) {
-            throw new IDInvalidException("ID does not match any player in the system.");
-        }
 
-        // check if player is actually an owner
-        if (!targetLeague.getOwnerIds().contains(playerId)) {
-            throw new IllegalOperationException("Player is not an owner of the league.");
-        }
+            // check if this is the last remaining owner
+            if (targetLeague.getOwnerCount() == 1) {
+                throw new IllegalOperationException("Cannot remove the last remaining owner of the league.");
+            }
 
-        // check if this is the last remaining owner
-        if (targetLeague.getOwnerIds().size() == 1) {
-            throw new IllegalOperationException("Cannot remove the last remaining owner of the league.");
+            // safe to remove
+            targetLeague.removeOwner(playerId);
+            store.updateLeague(targetLeague);
         }
-
-        // safe to remove
-        targetLeague.removeOwner(playerId);
-        League.serialiseLeagues(leagues);
     };
 
 
@@ -1079,29 +1404,55 @@ public class GamesLeague implements GamesLeagueInterface {
 
     // Helper method to check if the league contains a specific id; prevents duplicate code
     public boolean leagueContainsId(int leagueId) {
-        for (int id : getLeagueIds()) {
-            if (leagueId == id) { // if league id matches any id in the list of ids, it exists
-                return true;
+        return store.getLeague(leagueId) != null;
+    }
+
+    // the league as of its last completed change, read without locking, or null if there is none
+    private LeagueView view(int leagueId) {
+        League league = store.getLeague(leagueId);
+        return league == null ? null : league.getView();
+    }
+
+    // as view, with the day scores decoded; scores still in the checkpoint are decoded under
+    // the league's lock and published with a new view
+    private LeagueView viewWithDayScores(int leagueId) {
+        League league = store.getLeague(leagueId);
+        if (league == null) {
+            throw new IDInvalidException("No league with ID " + leagueId);
+        }
+        LeagueView view = league.getView();
+        if (view.hasDayScores()) {
+            league.viewSectionsUsed();
+            return view;
+        }
+        try (StripedLocks.Held held = locks.league(leagueId)) {
+            // the league may have been removed since it was looked up
+            league = store.getLeague(leagueId);
+            if (league == null) {
+                throw new IDInvalidException("No league with ID " + leagueId);
             }
+            league.getDayScores();
+            league.publish();
+            return league.getView();
         }
-        return false;
     }
 
     // Same as above method but for a specific player id in a specific league
     public boolean leagueContainsPlayerId(int leagueId, int playerId) {
-        League league = League.getLeagues().get(leagueId); // new league object in which the player id will be checked
-        for (int id : league.getLeaguePlayerIds()) { // if playerId matches any id in this league, it exists
-            if (playerId == id) {
-                return true;
-            }
+        LeagueView league = view(leagueId); // league state in which the player id will be checked
+        if (league == null) {
+            return false;
         }
-        return false;
+        return league.getLeaguePlayerIds().contains(playerId);
     }
 
     public boolean dayAlreadyClosed(int day, int leagueId) {
-        League league = League.getLeagues().get(leagueId);
-        for (int playerId : league.getPlayerStatus().keySet()) {
-            if (league.getPlayerStatus().get(playerId) != Status.CLOSED) {
+        return allClosed(view(leagueId).getPlayerStatus());
+    }
+
+    private static boolean allClosed(Map<Integer, Status> playerStatus) {
+        for (int playerId : playerStatus.keySet()) {
+            if (playerStatus.get(playerId) != Status.CLOSED) {
                 return false;
             }
         }
@@ -1109,32 +1460,38 @@ public class GamesLeague implements GamesLeagueInterface {
     }
 
     public boolean dayAlreadyVoided(int day, int leagueId) {
-        League league = League.getLeagues().get(leagueId);
-
-        HashMap<Integer, Integer> scoreMap = new HashMap<>();
-        for (int dayId : league.getDayScores().keySet()) {
-            int totalScore = 0;
-            for (int score : league.getDayScores().get(dayId)) {
-                totalScore += score;
+        try (StripedLocks.Held held = locks.league(leagueId)) {
+            League league = store.getLeague(leagueId);
+
+            HashMap<Integer, Integer> scoreMap = new HashMap<>();
+            for (int dayId : league.getDayScores().keySet()) {
+                int totalScore = 0;
+                for (int score : league.getDayScores().get(dayId)) {
+                    totalScore += score;
+                }
+                scoreMap.put(dayId, totalScore);
             }
-            scoreMap.put(dayId, totalScore);
-        }
 
-        int voidDay = -1;
-        for (int dayId : scoreMap.keySet()) {
-            if (scoreMap.get(dayId) == 0) {
-                voidDay = dayId;
+            int voidDay = -1;
+            for (int dayId : scoreMap.keySet()) {
+                if (scoreMap.get(dayId) == 0) {
+                    voidDay = dayId;
+                }
             }
-        }
 
-        if (voidDay != -1 && LocalDate.now().minusDays(2).toEpochDay() >= voidDay) {
-            return true;
+            if (voidDay != -1 && LocalDate.now().minusDays(2).toEpochDay() >= voidDay) {
+                return true;
+            }
+            return false;
         }
-        return false;
     }
 
     public boolean dayIsValid(int day, int leagueId) {
-        League league = League.getLeagues().get(leagueId);
+        LeagueView league = view(leagueId);
+        // callers check the league exists first, but it may have been removed since
+        if (league == null) {
+            throw new IDInvalidException("No league with ID " + leagueId);
+        }
         if (day < league.getStartDate().toEpochDay() || day > league.getEndDate().toEpochDay()) {
             return false;
         }
@@ -1157,13 +1514,37 @@ public class GamesLeague implements GamesLeagueInterface {
     public void registerGameReport(int day, int leagueId,  int playerId, String gameReport ) 
         throws IDInvalidException, IllegalOperationException{
 
-        if (!leagueContainsId(leagueId)) throw new IDInvalidException("No league with ID " + leagueId);
-        if (!leagueContainsPlayerId(leagueId, playerId)) throw new IDInvalidException("No player in league with ID " + playerId); 
+        try (StripedLocks.Held held = locks.league(leagueId)) {
+            if (!leagueContainsId(leagueId)) throw new IDInvalidException("No league with ID " + leagueId);
+
+            League league = store.getLeague(leagueId);
+            addGameReport(league, day, playerId, gameReport);
+            store.updateLeague(league);
+        }
+    }
+
+    /**
+     * Queues a game report for the league's single writer rather than registering it
+     * straight away. Reports and scores queued for one league are registered in the
+     * order they were queued, many at a time, and the league stays readable meanwhile.
+     *
+     * @param day The epoch day the game was played.
+     * @param leagueId The ID of the league being queried.
+     * @param playerId The ID of the player being queried.
+     * @param gameReport A report detailing the gameplay.
+     * @return A future completed once the report is registered, or completed exceptionally
+     *         with what registerGameReport would have thrown.
+     */
+    public CompletableFuture<Void> submitGameReport(int day, int leagueId, int playerId, String gameReport) {
+        return actors.submit(leagueId, league -> addGameReport(league, day, playerId, gameReport));
+    }
+
+    // the change registerGameReport makes, to a league the caller has locked
+    private void addGameReport(League league, int day, int playerId, String gameReport) {
+        if (!league.hasPlayer(playerId)) throw new IDInvalidException("No player in league with ID " + playerId);
 
-        League league = League.getLeagues().get(leagueId);
         league.setPlayerStatus(playerId, Status.IN_PROGRESS);
         league.addGameReport(playerId, day, gameReport);
-        League.serialiseLeagues(League.getLeagues());
     }
 
     /** 
@@ -1181,12 +1562,14 @@ public class GamesLeague implements GamesLeagueInterface {
     public String getGameReport(int day, int leagueId,  int playerId) 
         throws IDInvalidException, InvalidDateException{
 
-        if (!leagueContainsId(leagueId)) throw new IDInvalidException("No league with ID " + leagueId);
-        if (!leagueContainsPlayerId(leagueId, playerId)) throw new IDInvalidException("No player in league with ID " + playerId); 
-        if (!dayIsValid(day, leagueId)) throw new InvalidDateException("Day is not a valid day for the league");
+        try (StripedLocks.Held held = locks.league(leagueId)) {
+            if (!leagueContainsId(leagueId)) throw new IDInvalidException("No league with ID " + leagueId);
+            if (!leagueContainsPlayerId(leagueId, playerId)) throw new IDInvalidException("No player in league with ID " + playerId); 
+            if (!dayIsValid(day, leagueId)) throw new InvalidDateException("Day is not a valid day for the league");
 
-        League league = League.getLeagues().get(leagueId);
-        return league.getGameReports().get(playerId).get(day);
+            League league = store.getLeague(leagueId);
+            return league.getGameReport(playerId, day);
+        }
     };
 
     /**
@@ -1204,17 +1587,68 @@ public class GamesLeague implements GamesLeagueInterface {
     public void registerDayScores(int day, int leagueId, int[] scores) 
         throws IDInvalidException, IllegalArgumentException{
 
-        if (!leagueContainsId(leagueId)) throw new IDInvalidException("No league with ID " + leagueId);
-        if (dayAlreadyClosed(day, leagueId)) throw new IllegalArgumentException("Day has already been closed");
-        if (dayAlreadyVoided(day, leagueId)) throw new IllegalArgumentException("Current date is 2 days or more after being voided");
+        try (StripedLocks.Held held = locks.league(leagueId)) {
+            if (!leagueContainsId(leagueId)) throw new IDInvalidException("No league with ID " + leagueId);
+
+            League league = store.getLeague(leagueId);
+            addDayScores(league, day, scores);
+            store.updateLeague(league);
+        }
+    }
+
+    /**
+     * Queues day scores for the league's single writer rather than registering them
+     * straight away, as submitGameReport does for game reports.
+     *
+     * @param day The epoch day the game was played.
+     * @param leagueId The ID of the league being queried.
+     * @param scores The game scores with order to match the array returned by getLeaguePlayers().
+     * @return A future completed once the scores are registered, or completed exceptionally
+     *         with what registerDayScores would have thrown.
+     */
+    public CompletableFuture<Void> submitDayScores(int day, int leagueId, int[] scores) {
+        int[] queued = scores.clone();
+        return actors.submit(leagueId, league -> addDayScores(league, day, queued));
+    }
+
+    // the change registerDayScores makes, to a league the caller has locked; checked against
+    // the league itself, as its view does not show the earlier changes of a batch
+    private void addDayScores(League league, int day, int[] scores) {
+        if (allClosed(league.getPlayerStatus())) throw new IllegalArgumentException("Day has already been closed");
+        if (dayAlreadyVoided(day, league.getId())) throw new IllegalArgumentException("Current date is 2 days or more after being voided");
 
-        League league = League.getLeagues().get(leagueId);
         league.addDayScores(day, scores);
 
         for (int playerId : league.getPlayerStatus().keySet()) {
             league.setPlayerStatus(playerId, Status.CLOSED);
         }
-        League.serialiseLeagues(League.getLeagues());
+    }
+
+    /**
+     * Get the number of leagues with reports or scores queued through submitGameReport or
+     * submitDayScores that are not all registered yet.
+     *
+     * @return The number of leagues whose queued changes are waiting or being registered.
+     */
+    public int getQueuedLeagueCount() {
+        return actors.mailboxCount();
+    }
+
+    // applies a batch drained from a league's mailbox under one lock and stores it with one
+    // update, so the whole batch is one journal record and one published view; the league's
+    // stripe is still taken because the synchronous methods change the same leagues
+    private void writeBatch(int leagueId, LeagueActors.Batch batch) {
+        try (StripedLocks.Held held = locks.league(leagueId)) {
+            League league = store.getLeague(leagueId);
+            if (league == null) {
+                batch.fail(new IDInvalidException("No league with ID " + leagueId));
+                return;
+            }
+            if (batch.applyTo(league)) {
+                store.updateLeague(league);
+            }
+        }
+        batch.complete();
     }
 
 
@@ -1231,22 +1665,19 @@ public class GamesLeague implements GamesLeagueInterface {
     public void voidDayPoints(int day, int leagueId) 
         throws IDInvalidException, IllegalArgumentException{
 
-        if (!leagueContainsId(leagueId)) throw new IDInvalidException("No league with ID " + leagueId);
-        if (!dayIsValid(day, leagueId)) throw new InvalidDateException("Day is not a valid day for the league");
-        if (dayAlreadyVoided(day, leagueId)) throw new IllegalArgumentException("Current date is 2 days or more after being voided");
-        
-        League league = League.getLeagues().get(leagueId);
-        HashMap<Integer, int[]> dayScores = league.getDayScores();
+        try (StripedLocks.Held held = locks.league(leagueId)) {
+            if (!leagueContainsId(leagueId)) throw new IDInvalidException("No league with ID " + leagueId);
+            if (!dayIsValid(day, leagueId)) throw new InvalidDateException("Day is not a valid day for the league");
+            if (dayAlreadyVoided(day, leagueId)) throw new IllegalArgumentException("Current date is 2 days or more after being voided");
 
-        for (int dayId : dayScores.keySet()) {
-            if (dayId == day) {
-                for (int i=0; i<dayScores.get(day).length; i++) {
-                    dayScores.get(day)[i] = 0;
-                }
+            // stored scores are never changed in place, readers may still hold them
+            League league = store.getLeague(leagueId);
+            int[] scores = league.getDayScores().get(day);
+            if (scores != null) {
+                league.addDayScores(day, new int[scores.length]);
             }
+            store.updateLeague(league);
         }
-        league.setDayScores(dayScores);
-        league.serialiseLeagues(League.getLeagues());
     }
 
 
@@ -1270,7 +1701,7 @@ public class GamesLeague implements GamesLeagueInterface {
         if (!leagueContainsId(leagueId)) throw new IDInvalidException("No league with ID " + leagueId);
         if (!dayIsValid(day, leagueId)) throw new InvalidDateException("Day is not a valid day for the league");
 
-        League league = League.getLeagues().get(leagueId);
+        LeagueView league = view(leagueId);
 
         int pendingCount = 0;
         int closedCount = 0;
@@ -1315,9 +1746,7 @@ public class GamesLeague implements GamesLeagueInterface {
         if (!leagueContainsId(leagueId)) throw new IDInvalidException("No league with ID " + leagueId);
         if (!dayIsValid(day, leagueId)) throw new InvalidDateException("Day is not a valid day for the league");
 
-        League league = League.getLeagues().get(leagueId);
-
-        return league.getDayScores().get(day);
+        return viewWithDayScores(leagueId).getDayScores(day);
     }
 
 
@@ -1340,11 +1769,10 @@ public class GamesLeague implements GamesLeagueInterface {
         if (!leagueContainsId(leagueId)) throw new IDInvalidException("No league with ID " + leagueId);
         if (!dayIsValid(day, leagueId)) throw new InvalidDateException("Day is not a valid day for the league");
 
-        League league = League.getLeagues().get(leagueId);
-        int[] scores = league.getDayScores().get(day);
+        int[] scores = viewWithDayScores(leagueId).getDayScores(day);
         HashMap<Integer, Integer> indexedScores = new HashMap<>();
         int orderIdx = 0;
-        
+
         for (int i=0; i<scores.length; i++) {
             indexedScores.put(orderIdx, scores[i]);
             orderIdx++;
@@ -1556,6 +1984,26 @@ public class GamesLeague implements GamesLeagueInterface {
     };
 
 
+    /**
+     * Writes any changes still waiting for a group commit to the journal now.
+     */
+    public void flush() {
+        store.flush();
+    }
+
+
+    /**
+     * Registers the reports and scores still queued by submitGameReport and submitDayScores,
+     * writes any changes still waiting for a group commit and stops background flushing.
+     */
+    public void close() {
+        actors.close();
+        try (StripedLocks.Held held = locks.exclusive()) {
+            store.close();
+        }
+    }
+
+
     /**
      * Method empties this GamesLeague instance of its contents and resets all
      * internal counters.
@@ -1572,6 +2020,8 @@ public class GamesLeague implements GamesLeagueInterface {
      * <p>
      * The state of this GamesLeague instance must be unchanged if any
      * exceptions are thrown.
+     * <p>
+     * The file is written in the memory-mapped {@link Snapshot} format.
      *
      * @param filename Location of the file to be saved.
      * @throws IOException If there is a problem experienced when trying to save the 
@@ -1579,7 +2029,9 @@ public class GamesLeague implements GamesLeagueInterface {
      */
     public void saveGamesLeagueData(String filename) throws IOException{
 
-        return; // placeholder so class compiles
+        try (StripedLocks.Held held = locks.exclusive()) {
+            Snapshot.write(filename, store.getPlayers(), store.getLeagues());
+        }
     };
 
 
@@ -1594,7 +2046,11 @@ public class GamesLeague implements GamesLeagueInterface {
      */
     public void loadGamesLeagueData(String filename) throws IOException, ClassNotFoundException{
 
-        return; // placeholder so class compiles
+        try (StripedLocks.Held held = locks.exclusive()) {
+            // the file is mapped and league scores/reports are only decoded when first used
+            Snapshot snapshot = Snapshot.read(filename);
+            store.replaceContents(snapshot.getPlayers(), snapshot.getLeagues());
+        }
     };
 
 
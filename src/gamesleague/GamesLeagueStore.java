@@ -0,0 +1,617 @@
+package gamesleague;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * Resident in-memory store of all players and leagues owned by a GamesLeague instance.
+ * <p>
+ * The store is filled once by its {@link StorageEngine} when it is created and every
+ * lookup afterwards is served from memory. Every change is passed on to the engine,
+ * which decides how (and whether) it is persisted.
+ * <p>
+ * Players and leagues are kept only in {@link IntMap}s by id, so adding, replacing and
+ * removing one costs the same however many there are; lists of them are built in id order
+ * when asked for. Players are also indexed by email. Emails are compared case-insensitively and
+ * ignoring surrounding whitespace (see {@link #normaliseEmail}); a blank email, as left
+ * by deactivation, is not indexed. A {@link BloomFilter} of the indexed emails sits in
+ * front of the email index, so most lookups of unregistered emails are answered without
+ * touching it; the filter is rebuilt on load and whenever it fills up. The words of active players' display names and names
+ * are kept in a {@link PlayerSearchIndex} for prefix and fuzzy search.
+ * <p>
+ * League names are unique regardless of case. A name is claimed with
+ * {@link #reserveLeagueName} before it is used, which is atomic, so two callers
+ * creating or renaming leagues to the same name cannot both succeed.
+ * <p>
+ * Each player's league memberships, owned leagues and invites, and the invites waiting
+ * for unregistered emails, are kept in {@link LeagueIndex}es, refreshed from a league
+ * whenever it is added, updated or replayed, and cleared when it is removed. Leagues are also indexed by game type, and
+ * by start and end date in a {@link LeagueScheduleIndex}, which gives the leagues with a
+ * status on a day without reading every league.
+ * <p>
+ * The maps and indexes are guarded by a read-write lock, so lookups from many threads run
+ * together and index updates run alone. The lock only guards the store's own structures:
+ * keeping each player and league consistent is up to the caller (see {@link StripedLocks}).
+ * Lookups return copies rather than live views. Changes reach the engine after the lock is
+ * released, and once checkpoints are deferred the engine only asks for one, leaving the
+ * caller to run it when no operation is in progress (see {@link #checkpointNeeded}).
+ */
+public class GamesLeagueStore implements Serializable {
+
+    public static final String DEFAULT_SAVE_DIR = "./src/gamesleague/save";
+    public static final int DEFAULT_BATCH_SIZE = 64;
+    public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 200;
+    public static final double EMAIL_FILTER_FALSE_POSITIVE_RATE = 0.01;
+    private static final int MIN_EMAIL_FILTER_CAPACITY = 1024;
+    static final String PLAYER_IDS_FILE = "nextId.ser";
+    static final String LEAGUE_IDS_FILE = "nextLeagueId.ser";
+
+    // ids are never reused and only go up, so id order is the order entities were added
+    private IntMap<Player> playersById;
+    private IntMap<League> leaguesById;
+    // normalised email -> player id, and the key each player is currently indexed under
+    private HashMap<String, Integer> playerIdsByEmail;
+    private HashMap<Integer, String> indexedEmails;
+    // every email indexed since the filter was built, including some that have left the index
+    private BloomFilter emailFilter;
+    // lookups of unindexed emails: those the filter answered, and those it let through
+    private LongAdder emailFilterNegatives;
+    private LongAdder emailFilterFalsePositives;
+    private PlayerSearchIndex playerSearch;
+    // normalised league name -> league id, and the key each league is currently indexed under
+    private ConcurrentHashMap<String, Integer> leagueIdsByName;
+    private ConcurrentHashMap<Integer, String> indexedLeagueNames;
+    // player id -> ids of the leagues they are a member of
+    private LeagueIndex<Integer> leaguesByMember;
+    // player id -> ids of the leagues they own; its key counts are the leagues' owner counts
+    private LeagueIndex<Integer> leaguesByOwner;
+    // player id / normalised email -> ids of the leagues inviting them
+    private LeagueIndex<Integer> leaguesByPlayerInvite;
+    private LeagueIndex<String> leaguesByEmailInvite;
+    private LeagueIndex<GameType> leaguesByGameType;
+    private LeagueScheduleIndex leagueSchedule;
+
+    private transient StorageEngine engine;
+    // hand out the ids of new players and leagues; their reservations live with the engine
+    private transient IdAllocator playerIdAllocator;
+    private transient IdAllocator leagueIdAllocator;
+    private transient ReentrantReadWriteLock lock;
+    // set when checkpoints wait for the caller, and when one is waiting
+    private transient volatile boolean deferCheckpoints;
+    private transient volatile boolean checkpointDue;
+
+    public GamesLeagueStore() {
+        this(DEFAULT_SAVE_DIR, FsyncPolicy.BATCHED, DEFAULT_BATCH_SIZE, DEFAULT_FLUSH_INTERVAL_MILLIS);
+    }
+
+    // a store persisted by a MappedStorageEngine in the given folder
+    public GamesLeagueStore(String saveDir, FsyncPolicy fsyncPolicy, int batchSize, long flushIntervalMillis) {
+        this(new MappedStorageEngine(saveDir, fsyncPolicy, batchSize, flushIntervalMillis));
+    }
+
+    public GamesLeagueStore(StorageEngine engine) {
+        this.playersById = new IntMap<>();
+        this.leaguesById = new IntMap<>();
+        this.playerIdsByEmail = new HashMap<>();
+        this.indexedEmails = new HashMap<>();
+        this.emailFilter = newEmailFilter(0);
+        this.emailFilterNegatives = new LongAdder();
+        this.emailFilterFalsePositives = new LongAdder();
+        this.playerSearch = new PlayerSearchIndex();
+        this.leagueIdsByName = new ConcurrentHashMap<>();
+        this.indexedLeagueNames = new ConcurrentHashMap<>();
+        this.leaguesByMember = new LeagueIndex<>();
+        this.leaguesByOwner = new LeagueIndex<>();
+        this.leaguesByPlayerInvite = new LeagueIndex<>();
+        this.leaguesByEmailInvite = new LeagueIndex<>();
+        this.leaguesByGameType = new LeagueIndex<>();
+        this.leagueSchedule = new LeagueScheduleIndex();
+        this.engine = engine;
+        this.lock = new ReentrantReadWriteLock();
+        this.playerIdAllocator = engine.idAllocator(PLAYER_IDS_FILE);
+        this.leagueIdAllocator = engine.idAllocator(LEAGUE_IDS_FILE);
+        engine.load(this);
+    }
+
+    // a copy of the players, in the order they were added
+    public ArrayList<Player> getPlayers() {
+        return read(() -> inIdOrder(playersById, Player::getId));
+    }
+
+    // a copy of the leagues, in the order they were added
+    public ArrayList<League> getLeagues() {
+        return read(() -> inIdOrder(leaguesById, League::getId));
+    }
+
+    private static <T> ArrayList<T> inIdOrder(IntMap<T> byId, ToIntFunction<T> id) {
+        ArrayList<T> values = new ArrayList<>(byId.size());
+        byId.forEachValue(values::add);
+        values.sort(Comparator.comparingInt(id));
+        return values;
+    }
+
+    private static int[] idsInOrder(IntMap<?> byId) {
+        int[] ids = new int[byId.size()];
+        int[] next = new int[1];
+        byId.forEachKey(id -> ids[next[0]++] = id);
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    public StorageEngine getEngine() {
+        return this.engine;
+    }
+
+    // an id no player of this store has had, for a new player
+    public int nextPlayerId() {
+        return playerIdAllocator.nextId();
+    }
+
+    // an id no league of this store has had, for a new league
+    public int nextLeagueId() {
+        return leagueIdAllocator.nextId();
+    }
+
+    // the ids of all players, in the order they were added
+    public int[] getPlayerIds() {
+        return read(() -> idsInOrder(playersById));
+    }
+
+    // the ids of all leagues, in the order they were added
+    public int[] getLeagueIds() {
+        return read(() -> idsInOrder(leaguesById));
+    }
+
+    // returns the player with the given id or null if there is none
+    public Player getPlayer(int playerId) {
+        return read(() -> playersById.get(playerId));
+    }
+
+    // returns the id of the player with the given email, in any case, or -1 if there is none
+    public int getPlayerIdByEmail(String email) {
+        String key = normaliseEmail(email);
+        if (key == null) {
+            return -1;
+        }
+        return read(() -> {
+            if (!emailFilter.mightContain(key)) {
+                emailFilterNegatives.increment();
+                return -1;
+            }
+            Integer playerId = playerIdsByEmail.get(key);
+            if (playerId == null) {
+                emailFilterFalsePositives.increment();
+                return -1;
+            }
+            return playerId;
+        });
+    }
+
+    // the share of lookups of unregistered emails the email filter failed to answer, or 0
+    // before there were any
+    public double getEmailFilterFalsePositiveRate() {
+        long falsePositives = emailFilterFalsePositives.sum();
+        long lookups = emailFilterNegatives.sum() + falsePositives;
+        return lookups == 0 ? 0 : (double) falsePositives / lookups;
+    }
+
+    // the false-positive rate the email filter's size and contents predict
+    public double getEmailFilterExpectedFalsePositiveRate() {
+        return read(() -> emailFilter.expectedFalsePositiveRate());
+    }
+
+    // up to limit ids of players with name words starting with every word of the prefix
+    public int[] searchPlayersByPrefix(String prefix, int limit) {
+        return read(() -> playerSearch.prefixSearch(prefix, limit));
+    }
+
+    // up to limit ids of the players whose name words best match the query, allowing typos
+    public int[] searchPlayers(String query, int limit) {
+        return read(() -> playerSearch.fuzzySearch(query, limit));
+    }
+
+    // the form emails are indexed and compared in; null and blank emails become null
+    public static String normaliseEmail(String email) {
+        if (email == null || email.trim().isEmpty()) {
+            return null;
+        }
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    // returns the id of the league with the given name, in any case, or -1 if there is none
+    public int getLeagueIdByName(String name) {
+        String key = normaliseLeagueName(name);
+        Integer leagueId = key == null ? null : leagueIdsByName.get(key);
+        return leagueId == null ? -1 : leagueId;
+    }
+
+    /**
+     * Claims a league name for the league with the given id.
+     * Returns false if another league holds the name in any case; reserving a name the
+     * league already holds succeeds.
+     */
+    public boolean reserveLeagueName(String name, int leagueId) {
+        String key = normaliseLeagueName(name);
+        Integer holder = leagueIdsByName.putIfAbsent(key, leagueId);
+        if (holder != null && holder != leagueId) {
+            return false;
+        }
+        indexedLeagueNames.put(leagueId, key);
+        return true;
+    }
+
+    /**
+     * Moves a league from its current name to newName, claiming the new name before the
+     * old one is given up. Returns false, keeping the old name, if newName is taken.
+     */
+    public boolean renameLeagueName(int leagueId, String newName) {
+        String previous = indexedLeagueNames.get(leagueId);
+        if (!reserveLeagueName(newName, leagueId)) {
+            return false;
+        }
+        if (previous != null && !previous.equals(normaliseLeagueName(newName))) {
+            releaseLeagueName(previous, leagueId);
+        }
+        return true;
+    }
+
+    // gives up a name the league holds once it has been renamed or removed
+    public void releaseLeagueName(String name, int leagueId) {
+        String key = normaliseLeagueName(name);
+        if (key != null && leagueIdsByName.remove(key, leagueId)) {
+            indexedLeagueNames.remove(leagueId, key);
+        }
+    }
+
+    // the form league names are indexed and compared in
+    public static String normaliseLeagueName(String name) {
+        return name == null ? null : name.trim().toLowerCase(Locale.ROOT);
+    }
+
+    // the ids of the leagues the player is a member of
+    public Set<Integer> getMemberLeagueIds(int playerId) {
+        return read(() -> new LinkedHashSet<>(leaguesByMember.leaguesOf(playerId)));
+    }
+
+    // the ids of the leagues the player owns
+    public Set<Integer> getOwnedLeagueIds(int playerId) {
+        return read(() -> new LinkedHashSet<>(leaguesByOwner.leaguesOf(playerId)));
+    }
+
+    // the number of owners of the league
+    public int getOwnerCount(int leagueId) {
+        return read(() -> leaguesByOwner.keyCount(leagueId));
+    }
+
+    // the ids of the leagues with an invite for the player
+    public Set<Integer> getInvitedLeagueIds(int playerId) {
+        return read(() -> new LinkedHashSet<>(leaguesByPlayerInvite.leaguesOf(playerId)));
+    }
+
+    // the ids of the leagues with an invite for the email, in any case
+    public Set<Integer> getEmailInvitedLeagueIds(String email) {
+        return read(() -> new LinkedHashSet<>(leaguesByEmailInvite.leaguesOf(normaliseEmail(email))));
+    }
+
+    // the ids of the leagues for the game type
+    public Set<Integer> getLeagueIdsByGameType(GameType gameType) {
+        return read(() -> new LinkedHashSet<>(leaguesByGameType.leaguesOf(gameType)));
+    }
+
+    // the ids of the leagues with the status on the day, in ascending order
+    public int[] getLeagueIdsByStatus(Status status, LocalDate day) {
+        return read(() -> leagueSchedule.leaguesWithStatus(status, day));
+    }
+
+    // the ids of the leagues running, starting or ending from first to last, in ascending order
+    public int[] getLeagueIdsRunningBetween(LocalDate first, LocalDate last) {
+        return read(() -> leagueSchedule.leaguesRunningBetween(first, last));
+    }
+
+    public int[] getLeagueIdsStartingBetween(LocalDate first, LocalDate last) {
+        return read(() -> leagueSchedule.leaguesStartingBetween(first, last));
+    }
+
+    public int[] getLeagueIdsEndingBetween(LocalDate first, LocalDate last) {
+        return read(() -> leagueSchedule.leaguesEndingBetween(first, last));
+    }
+
+    // returns the league with the given id or null if there is none
+    public League getLeague(int leagueId) {
+        return read(() -> leaguesById.get(leagueId));
+    }
+
+    public void addPlayer(Player player) {
+        playerIdAllocator.reserveAbove(player.getId());
+        write(() -> {
+            playersById.put(player.getId(), player);
+            indexPlayer(player);
+        });
+        engine.playerChanged(player);
+    }
+
+    /**
+     * Adds the player unless another player already has the same email, in any case.
+     * The check and the add are one step, so of two players registering the same email
+     * at once only one is added. Returns whether the player was added.
+     */
+    public boolean addPlayerIfEmailFree(Player player) {
+        String email = normaliseEmail(player.getEmail());
+        lock.writeLock().lock();
+        try {
+            if (email != null && playerIdsByEmail.containsKey(email)) {
+                return false;
+            }
+            playerIdAllocator.reserveAbove(player.getId());
+            playersById.put(player.getId(), player);
+            indexPlayer(player);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        engine.playerChanged(player);
+        return true;
+    }
+
+    public void addLeague(League league) {
+        leagueIdAllocator.reserveAbove(league.getId());
+        write(() -> {
+            leaguesById.put(league.getId(), league);
+            reserveLeagueName(league.getLeagueName(), league.getId());
+            league.publish();
+            indexLeague(league.getView());
+        });
+        engine.leagueChanged(league);
+    }
+
+    /**
+     * Drops the league, its name and every index entry for it, and has the engine forget it.
+     * Returns false if there is no league with the id.
+     */
+    public boolean removeLeague(int leagueId) {
+        if (!dropLeague(leagueId)) {
+            return false;
+        }
+        engine.leagueRemoved(leagueId);
+        return true;
+    }
+
+    // moves a changed player to its next version and passes its state on to the engine
+    public void updatePlayer(Player player) {
+        player.nextVersion();
+        write(() -> indexPlayer(player));
+        engine.playerChanged(player);
+    }
+
+    // publishes the current state of a changed league to readers and passes it on to the engine
+    public void updateLeague(League league) {
+        // the indexed fields only change with the HEADER, MEMBERS and INVITES sections
+        int changed = league.publish();
+        if ((changed & (League.HEADER | League.MEMBERS | League.INVITES)) != 0) {
+            write(() -> indexLeague(league.getView()));
+        }
+        engine.leagueChanged(league);
+    }
+
+    public void flush() {
+        engine.flush();
+    }
+
+    // a checkpoint that fails stays due, so the next caller retries it
+    public void checkpoint() {
+        checkpointDue = false;
+        try {
+            engine.checkpoint();
+        } catch (RuntimeException e) {
+            checkpointDue = deferCheckpoints;
+            throw e;
+        }
+    }
+
+    /**
+     * From now on the engine's periodic checkpoints are only marked as due, to be run by
+     * the caller through {@link #checkpoint} once no operation is using the store. A
+     * checkpoint reads every changed player and league, which must not change meanwhile.
+     */
+    public void deferCheckpoints() {
+        deferCheckpoints = true;
+    }
+
+    // whether the engine asked for a checkpoint that has not run yet
+    public boolean isCheckpointDue() {
+        return checkpointDue;
+    }
+
+    // called by the engine when its journal should be folded into a checkpoint
+    void checkpointNeeded() {
+        if (deferCheckpoints) {
+            checkpointDue = true;
+        } else {
+            engine.checkpoint();
+        }
+    }
+
+    // replaces everything in memory, e.g. with a loaded snapshot, and has the engine persist it
+    public void replaceContents(ArrayList<Player> players, ArrayList<League> leagues) {
+        setContents(players, leagues);
+        engine.contentsReplaced();
+    }
+
+    public void close() {
+        engine.close();
+    }
+
+    // used by engines while loading
+    void setContents(ArrayList<Player> players, ArrayList<League> leagues) {
+        write(() -> fill(players, leagues));
+    }
+
+    private void fill(ArrayList<Player> players, ArrayList<League> leagues) {
+        playersById = new IntMap<>(players.size());
+        leaguesById = new IntMap<>(leagues.size());
+        playerIdsByEmail.clear();
+        indexedEmails.clear();
+        emailFilter = newEmailFilter(players.size());
+        playerSearch.clear();
+        for (Player p : players) {
+            playersById.put(p.getId(), p);
+            indexPlayer(p);
+        }
+        leagueIdsByName.clear();
+        indexedLeagueNames.clear();
+        leaguesByMember.clear();
+        leaguesByOwner.clear();
+        leaguesByPlayerInvite.clear();
+        leaguesByEmailInvite.clear();
+        leaguesByGameType.clear();
+        leagueSchedule.clear();
+        for (League l : leagues) {
+            leaguesById.put(l.getId(), l);
+            reserveLeagueName(l.getLeagueName(), l.getId());
+            l.publish();
+            indexLeague(l.getView());
+        }
+        reserveIdsAbove(players, leagues);
+    }
+
+    // the allocators' files may be older than the data, missing, or from another save
+    // folder, so new ids must start above every id now in use
+    private void reserveIdsAbove(Collection<Player> players, Collection<League> leagues) {
+        int maxPlayerId = -1;
+        for (Player p : players) {
+            maxPlayerId = Math.max(maxPlayerId, p.getId());
+        }
+        int maxLeagueId = -1;
+        for (League l : leagues) {
+            maxLeagueId = Math.max(maxLeagueId, l.getId());
+        }
+        if (maxPlayerId >= 0) {
+            playerIdAllocator.reserveAbove(maxPlayerId);
+        }
+        if (maxLeagueId >= 0) {
+            leagueIdAllocator.reserveAbove(maxLeagueId);
+        }
+    }
+
+    // used by journal replay: replaces the stored player with the same id, or adds it
+    void putPlayer(Player player) {
+        playerIdAllocator.reserveAbove(player.getId());
+        write(() -> {
+            indexPlayer(player);
+            playersById.put(player.getId(), player);
+        });
+    }
+
+    // moves the player's index entries to their current email and names; a blank email
+    // means the player was deactivated and leaves both indexes
+    private void indexPlayer(Player player) {
+        String email = normaliseEmail(player.getEmail());
+        if (email == null) {
+            playerSearch.remove(player.getId());
+        } else {
+            playerSearch.update(player.getId(), player.getDisplayName(), player.getName());
+        }
+        String indexed = indexedEmails.get(player.getId());
+        if (email != null && email.equals(indexed)) {
+            return;
+        }
+        if (indexed != null) {
+            playerIdsByEmail.remove(indexed, player.getId());
+            indexedEmails.remove(player.getId());
+        }
+        if (email != null) {
+            playerIdsByEmail.put(email, player.getId());
+            indexedEmails.put(player.getId(), email);
+            emailFilter.add(email);
+            // emails that left the index still count, so churn also leads to a rebuild
+            if (emailFilter.size() > emailFilter.capacity()) {
+                emailFilter = newEmailFilter(playerIdsByEmail.size());
+                for (String indexedEmail : playerIdsByEmail.keySet()) {
+                    emailFilter.add(indexedEmail);
+                }
+            }
+        }
+    }
+
+    // an empty email filter with room for twice the given number of emails
+    private static BloomFilter newEmailFilter(int emails) {
+        return new BloomFilter(Math.max(MIN_EMAIL_FILTER_CAPACITY, 2 * emails), EMAIL_FILTER_FALSE_POSITIVE_RATE);
+    }
+
+    // refreshes the reverse indexes from the members, owners, invites, game type and dates
+    // the league last published
+    private void indexLeague(LeagueView league) {
+        leaguesByMember.update(league.getId(), league.getLeaguePlayerIds());
+        leaguesByOwner.update(league.getId(), league.getOwnerIds());
+        leaguesByPlayerInvite.update(league.getId(), league.getPlayerInvites());
+        leaguesByEmailInvite.update(league.getId(), league.getEmailInviteKeys());
+        GameType gameType = league.getGameType();
+        leaguesByGameType.update(league.getId(),
+                gameType == null ? Collections.emptySet() : Collections.singleton(gameType));
+        leagueSchedule.update(league.getId(), league.getStartDate(), league.getEndDate());
+    }
+
+    // used by journal replay: replaces the stored league with the same id, or adds it
+    void putLeague(League league) {
+        leagueIdAllocator.reserveAbove(league.getId());
+        write(() -> {
+            leaguesById.put(league.getId(), league);
+            renameLeagueName(league.getId(), league.getLeagueName());
+            league.publish();
+            indexLeague(league.getView());
+        });
+    }
+
+    // used by journal replay and removeLeague: drops the league if it is stored
+    boolean dropLeague(int leagueId) {
+        lock.writeLock().lock();
+        try {
+            League league = leaguesById.remove(leagueId);
+            if (league == null) {
+                return false;
+            }
+            releaseLeagueName(indexedLeagueNames.get(leagueId), leagueId);
+            leaguesByMember.remove(leagueId);
+            leaguesByOwner.remove(leagueId);
+            leaguesByPlayerInvite.remove(leagueId);
+            leaguesByEmailInvite.remove(leagueId);
+            leaguesByGameType.remove(leagueId);
+            leagueSchedule.remove(leagueId);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private <T> T read(Supplier<T> query) {
+        lock.readLock().lock();
+        try {
+            return query.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void write(Runnable update) {
+        lock.writeLock().lock();
+        try {
+            update.run();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+}
@@ -0,0 +1,106 @@
+package gamesleague;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands out unique, never reused ids from blocks reserved on disk.
+ * <p>
+ * The id file holds the end of the last reserved block rather than the next id.
+ * Ids inside a reserved block are handed out from memory, so the file is only
+ * written (and forced to disk) once every {@value #BLOCK_SIZE} ids. After a crash
+ * allocation resumes at the end of the last reserved block: the unused rest of
+ * that block is skipped, but an id is never handed out twice.
+ * <p>
+ * The file keeps the format of the old nextId.ser / nextLeagueId.ser files
+ * (a serialised Integer), so existing save folders carry on from where they were.
+ * A missing or empty file starts a fresh sequence; a file that cannot be read is an
+ * error, as carrying on from 0 could hand out ids that are already in use.
+ * <p>
+ * Each {@link GamesLeagueStore} gets its allocators from its {@link StorageEngine}, which
+ * keeps their files in its save folder; an allocator without a file lives in memory only.
+ */
+public class IdAllocator {
+
+    public static final int BLOCK_SIZE = 1000;
+
+    private final File file;
+    private final AtomicInteger next;
+    // ids below this are covered by a durable reservation
+    private volatile int reservedUntil;
+
+    public IdAllocator(String path) {
+        this.file = path == null ? null : new File(path);
+        this.reservedUntil = readReservation();
+        this.next = new AtomicInteger(reservedUntil);
+    }
+
+    // an allocator that keeps nothing on disk, for stores that persist nothing
+    public static IdAllocator inMemory() {
+        return new IdAllocator(null);
+    }
+
+    public int nextId() {
+        int id = next.getAndIncrement();
+        if (id >= reservedUntil) {
+            reserve(id);
+        }
+        return id;
+    }
+
+    /**
+     * Makes sure no id up to and including the given one is handed out, e.g. once entities
+     * using them were loaded from elsewhere. Returns after the raised floor is reserved on
+     * disk, so it holds across a restart.
+     */
+    void reserveAbove(int id) {
+        next.accumulateAndGet(id + 1, Math::max);
+        if (id >= reservedUntil) {
+            reserve(id);
+        }
+    }
+
+    // reserves up to the end of the block holding the id, in one write; callers wait until
+    // the reservation is on disk
+    private synchronized void reserve(int id) {
+        if (id >= reservedUntil) {
+            int until = (id / BLOCK_SIZE + 1) * BLOCK_SIZE;
+            writeReservation(until);
+            reservedUntil = until;
+        }
+    }
+
+    private int readReservation() {
+        if (file == null || !file.exists() || file.length() == 0) {
+            return 0;
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(file))) {
+            return (int) in.readObject();
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            throw new UncheckedIOException(new IOException("Unreadable id reservation in " + file, e));
+        }
+    }
+
+    private void writeReservation(int reservedUntil) {
+        if (file == null) {
+            return;
+        }
+        Path target = file.toPath().toAbsolutePath();
+        Path temp = target.resolveSibling(file.getName() + ".tmp");
+        try (FileOutputStream fileOut = new FileOutputStream(temp.toFile());
+             ObjectOutputStream out = new ObjectOutputStream(fileOut)) {
+            out.writeObject(reservedUntil);
+            out.flush();
+            fileOut.getFD().sync();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        try {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+}
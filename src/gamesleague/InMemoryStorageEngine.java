@@ -0,0 +1,40 @@
+package gamesleague;
+
+/**
+ * Storage engine that persists nothing: every store starts empty and changes only
+ * live as long as the process. Used by tests and to benchmark the other engines
+ * against a lower bound.
+ */
+public class InMemoryStorageEngine implements StorageEngine {
+
+    public void load(GamesLeagueStore store) {
+    }
+
+    public void playerChanged(Player player) {
+    }
+
+    // nothing is journalled, so the league need not keep its changes for a journal record
+    public void leagueChanged(League league) {
+        league.markJournalled();
+    }
+
+    public void leagueRemoved(int leagueId) {
+    }
+
+    public void contentsReplaced() {
+    }
+
+    public void flush() {
+    }
+
+    public void checkpoint() {
+    }
+
+    public void close() {
+    }
+
+    public IdAllocator idAllocator(String name) {
+        return IdAllocator.inMemory();
+    }
+
+}
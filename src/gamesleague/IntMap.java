@@ -0,0 +1,152 @@
+package gamesleague;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * Hash map from int keys to objects, used to look players and leagues up by id.
+ * <p>
+ * Keys are kept in a plain int array, so lookups never box the id into an Integer.
+ * Collisions are resolved by linear probing in a power-of-two table that is doubled
+ * once it is half full, and removal shifts later entries back into the gap, so the
+ * table never holds deleted markers. Null values are not allowed.
+ * Not thread-safe.
+ */
+public class IntMap<V> implements Serializable {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private int[] keys;
+    private Object[] values;
+    private int size;
+    private int mask;
+    // 32 - log2(capacity), so hashing keeps the best mixed top bits of the product
+    private int shift;
+
+    public IntMap() {
+        this(MIN_CAPACITY);
+    }
+
+    public IntMap(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean containsKey(int key) {
+        return values[slot(key)] != null;
+    }
+
+    // returns the value for the key or null if there is none
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        return (V) values[slot(key)];
+    }
+
+    // returns the value previously stored for the key, or null
+    @SuppressWarnings("unchecked")
+    public V put(int key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("IntMap does not hold null values");
+        }
+        int i = slot(key);
+        V previous = (V) values[i];
+        keys[i] = key;
+        values[i] = value;
+        if (previous == null && ++size * 2 > keys.length) {
+            resize(keys.length * 2);
+        }
+        return previous;
+    }
+
+    // returns the removed value or null if the key was not present
+    @SuppressWarnings("unchecked")
+    public V remove(int key) {
+        int i = slot(key);
+        V previous = (V) values[i];
+        if (previous == null) {
+            return null;
+        }
+        // shift later entries of the probe run back so lookups never stop at the gap
+        int gap = i;
+        for (int j = (i + 1) & mask; values[j] != null; j = (j + 1) & mask) {
+            int home = hash(keys[j]);
+            // the entry may move to the gap only if the gap lies between its home slot and j
+            if (((j - home) & mask) >= ((j - gap) & mask)) {
+                keys[gap] = keys[j];
+                values[gap] = values[j];
+                gap = j;
+            }
+        }
+        values[gap] = null;
+        size--;
+        return previous;
+    }
+
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    // calls the action for every value, in no particular order
+    @SuppressWarnings("unchecked")
+    public void forEachValue(Consumer<? super V> action) {
+        for (Object value : values) {
+            if (value != null) {
+                action.accept((V) value);
+            }
+        }
+    }
+
+    // calls the action for every key, in no particular order
+    public void forEachKey(IntConsumer action) {
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                action.accept(keys[i]);
+            }
+        }
+    }
+
+    // the slot holding the key, or the empty slot where it would be inserted
+    private int slot(int key) {
+        int i = hash(key);
+        while (values[i] != null && keys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    // ids are mostly sequential, so they are spread over the table by Fibonacci hashing
+    private int hash(int key) {
+        return (key * 0x9E3779B9) >>> shift;
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        shift = Integer.numberOfLeadingZeros(capacity) + 1;
+    }
+
+    private void resize(int capacity) {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != null) {
+                int j = slot(oldKeys[i]);
+                keys[j] = oldKeys[i];
+                values[j] = oldValues[i];
+            }
+        }
+    }
+
+}
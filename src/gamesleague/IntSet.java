@@ -0,0 +1,232 @@
+package gamesleague;
+
+import java.io.Serializable;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * Set of ints that remembers insertion order, used for a league's players, owners and
+ * invites.
+ * <p>
+ * Members are held in an int array in the order they were added, with an open-addressing
+ * table from each member to its position, so add, contains and remove are O(1) without
+ * boxing. A removed member is only flagged in the array, which keeps the order of the
+ * rest intact; flagged slots are compacted away when the array next needs to grow.
+ * As a {@code Set<Integer>} it iterates and prints in insertion order.
+ * Not thread-safe, but a read-only copy (see {@link #readOnlyCopy}) can be shared between
+ * threads once safely published.
+ */
+public class IntSet extends AbstractSet<Integer> implements Serializable {
+
+    private static final int MIN_CAPACITY = 8;
+    private static final int FREE = -1;
+
+    // members in insertion order; the first 'length' slots are used, some may be flagged in removed
+    private int[] order;
+    private BitSet removed;
+    private int length;
+    private int size;
+    // open-addressing table: member -> position in order, FREE where the slot is empty
+    private int[] keys;
+    private int[] positions;
+    private int shift;
+    // set on read-only copies, which reject every change
+    private transient boolean readOnly;
+
+    public IntSet() {
+        this(MIN_CAPACITY);
+    }
+
+    public IntSet(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < expectedSize) {
+            capacity <<= 1;
+        }
+        order = new int[capacity];
+        removed = new BitSet();
+        allocateTable(capacity * 2);
+    }
+
+    public IntSet(Collection<Integer> values) {
+        this(values.size());
+        for (int value : values) {
+            add(value);
+        }
+    }
+
+    // a copy of the set, compacted, that throws UnsupportedOperationException on any change
+    public IntSet readOnlyCopy() {
+        IntSet copy = new IntSet(size);
+        for (int p = 0; p < length; p++) {
+            if (!removed.get(p)) {
+                copy.add(order[p]);
+            }
+        }
+        copy.readOnly = true;
+        return copy;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean contains(int value) {
+        return positions[slot(value)] != FREE;
+    }
+
+    public boolean contains(Object value) {
+        return value instanceof Integer && contains(((Integer) value).intValue());
+    }
+
+    // returns false if the value was already a member
+    public boolean add(int value) {
+        checkWritable();
+        int i = slot(value);
+        if (positions[i] != FREE) {
+            return false;
+        }
+        if (length == order.length) {
+            // make room: compacting alone is enough while at least half the slots are flagged
+            compact(size * 2 < order.length ? order.length : order.length * 2);
+            i = slot(value);
+        }
+        order[length] = value;
+        keys[i] = value;
+        positions[i] = length++;
+        size++;
+        return true;
+    }
+
+    public boolean add(Integer value) {
+        return add(value.intValue());
+    }
+
+    // returns false if the value was not a member
+    public boolean remove(int value) {
+        checkWritable();
+        int i = slot(value);
+        if (positions[i] == FREE) {
+            return false;
+        }
+        removed.set(positions[i]);
+        size--;
+        // shift later entries of the probe run back so lookups never stop at the gap
+        int mask = keys.length - 1;
+        int gap = i;
+        for (int j = (i + 1) & mask; positions[j] != FREE; j = (j + 1) & mask) {
+            int home = hash(keys[j]);
+            if (((j - home) & mask) >= ((j - gap) & mask)) {
+                keys[gap] = keys[j];
+                positions[gap] = positions[j];
+                gap = j;
+            }
+        }
+        positions[gap] = FREE;
+        return true;
+    }
+
+    public boolean remove(Object value) {
+        return value instanceof Integer && remove(((Integer) value).intValue());
+    }
+
+    public void clear() {
+        checkWritable();
+        Arrays.fill(positions, FREE);
+        removed.clear();
+        length = 0;
+        size = 0;
+    }
+
+    // the members in insertion order
+    public int[] toIntArray() {
+        int[] values = new int[size];
+        int n = 0;
+        for (int p = 0; p < length; p++) {
+            if (!removed.get(p)) {
+                values[n++] = order[p];
+            }
+        }
+        return values;
+    }
+
+    // iterates in insertion order; removing through the iterator or the set while iterating is allowed
+    public PrimitiveIterator.OfInt iterator() {
+        return new PrimitiveIterator.OfInt() {
+            private int next = advance(0);
+            private int last = -1;
+
+            public boolean hasNext() {
+                return next < length;
+            }
+
+            public int nextInt() {
+                if (next >= length) {
+                    throw new NoSuchElementException();
+                }
+                last = next;
+                next = advance(next + 1);
+                return order[last];
+            }
+
+            public void remove() {
+                if (last < 0 || removed.get(last)) {
+                    throw new IllegalStateException();
+                }
+                IntSet.this.remove(order[last]);
+            }
+
+            private int advance(int p) {
+                while (p < length && removed.get(p)) {
+                    p++;
+                }
+                return p;
+            }
+        };
+    }
+
+    private void checkWritable() {
+        if (readOnly) {
+            throw new UnsupportedOperationException("read-only IntSet");
+        }
+    }
+
+    // the table slot holding the value, or the free slot where it would be inserted
+    private int slot(int value) {
+        int mask = keys.length - 1;
+        int i = hash(value);
+        while (positions[i] != FREE && keys[i] != value) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    private int hash(int value) {
+        return (value * 0x9E3779B9) >>> shift;
+    }
+
+    private void allocateTable(int capacity) {
+        keys = new int[capacity];
+        positions = new int[capacity];
+        Arrays.fill(positions, FREE);
+        shift = Integer.numberOfLeadingZeros(capacity) + 1;
+    }
+
+    // drops flagged slots from the order array and rebuilds the table for the given capacity
+    private void compact(int capacity) {
+        int[] members = toIntArray();
+        order = Arrays.copyOf(members, capacity);
+        removed.clear();
+        length = members.length;
+        allocateTable(capacity * 2);
+        for (int p = 0; p < length; p++) {
+            int i = slot(order[p]);
+            keys[i] = order[p];
+            positions[i] = p;
+        }
+    }
+
+}
@@ -0,0 +1,189 @@
+package gamesleague;
+
+import java.io.*;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * Append-only journal of changes made to players and leagues.
+ * <p>
+ * Each change is appended as a small typed record holding the new state of the
+ * single player that changed, or what changed in a league, so a write costs the size of
+ * that change rather than a rewrite of every save file. A new league is recorded whole.
+ * On startup the records are replayed over the last checkpoint of the storage engine.
+ * Player and whole league records hold whole entity states and league changes are
+ * skipped when older than the league, so replaying a record that is already part of
+ * the checkpoint is harmless.
+ * <p>
+ * Records are buffered by {@link #append} and only reach the file on {@link #commit},
+ * so several changes can share one write and one fsync. A commit that fails cuts the file
+ * back to the end of the last successful commit, so the records can be appended again.
+ * <p>
+ * Record layout: type (byte), entity id (int), payload length (int), payload bytes.
+ * A removed league is recorded by its id with an empty payload.
+ * Payloads are written with {@link EntityCodec}; payloads written by older versions
+ * with default Java serialization are still read.
+ */
+public class Journal {
+
+    public static final byte PLAYER = 1;
+    public static final byte LEAGUE = 2;
+    // a removed league, with an empty payload
+    public static final byte LEAGUE_REMOVED = 3;
+    // what changed in a league already recorded or checkpointed (see EntityCodec#encodeLeagueChanges)
+    public static final byte LEAGUE_CHANGES = 4;
+
+    private final File file;
+    private FileOutputStream fileOut;
+    private DataOutputStream out;
+    // also read by threads that do not write the journal, to see when a checkpoint is due
+    private volatile int recordCount;
+    // file length and record count as of the last successful commit
+    private long committedLength;
+    private int committedCount;
+
+    public Journal(String path) {
+        this.file = new File(path);
+    }
+
+    // appends an encoded player or league state to the journal buffer
+    public void append(byte type, int id, byte[] payload) throws IOException {
+        if (out == null) {
+            fileOut = new FileOutputStream(file, true);
+            out = new DataOutputStream(new BufferedOutputStream(fileOut));
+        }
+        try {
+            out.writeByte(type);
+            out.writeInt(id);
+            out.writeInt(payload.length);
+            out.write(payload);
+        } catch (IOException e) {
+            // a full buffer writes through to the file, which can fail like a commit
+            rollback(e);
+            throw e;
+        }
+        recordCount++;
+    }
+
+    // writes the buffered records to the file, forcing them to disk when sync is set
+    public void commit(boolean sync) throws IOException {
+        if (out == null) {
+            return;
+        }
+        try {
+            out.flush();
+            if (sync) {
+                fileOut.getFD().sync();
+            }
+        } catch (IOException e) {
+            rollback(e);
+            throw e;
+        }
+        committedLength = fileOut.getChannel().position();
+        committedCount = recordCount;
+    }
+
+    // drops whatever part of the failed commit reached the file
+    private void rollback(IOException failure) {
+        out = null;
+        try {
+            fileOut.close();
+        } catch (IOException e) {
+            failure.addSuppressed(e);
+        }
+        fileOut = null;
+        recordCount = committedCount;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(committedLength);
+        } catch (IOException e) {
+            failure.addSuppressed(e);
+        }
+    }
+
+    /**
+     * Hands every complete record to the given consumers in order. A torn record at the
+     * end, or everything from the first unreadable record on, is cut off the file.
+     *
+     * @return The number of bytes cut off, 0 if every record was replayed.
+     * @throws UncheckedIOException If the unreadable bytes could not be cut off, so new
+     *                              records could not be appended after them.
+     */
+    public long replay(Consumer<Player> players, Consumer<League> leagues, BiConsumer<Integer, byte[]> leagueChanges,
+                       IntConsumer removedLeagues) {
+        if (!file.exists()) {
+            return 0;
+        }
+        long validLength = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while (true) {
+                byte type = in.readByte();
+                int id = in.readInt();
+                byte[] payload = new byte[in.readInt()];
+                in.readFully(payload);
+
+                if (type == PLAYER) {
+                    players.accept(isJavaSerialized(payload) ? (Player) deserialize(payload) : EntityCodec.decodePlayer(payload));
+                } else if (type == LEAGUE) {
+                    leagues.accept(isJavaSerialized(payload) ? (League) deserialize(payload) : EntityCodec.decodeLeague(payload));
+                } else if (type == LEAGUE_CHANGES) {
+                    leagueChanges.accept(id, payload);
+                } else if (type == LEAGUE_REMOVED) {
+                    removedLeagues.accept(id);
+                }
+                validLength += 9 + payload.length;
+                recordCount++;
+            }
+        } catch (EOFException e) {
+            // reached the end of the journal (or the end of the last complete record)
+        } catch (IOException | UncheckedIOException | ClassNotFoundException e) {
+            // an unreadable record, replayed up to it and cut off with the rest
+        }
+
+        // cut off anything after the last complete record so new appends start cleanly
+        long dropped = file.length() - validLength;
+        if (dropped > 0) {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(validLength);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        committedLength = validLength;
+        committedCount = recordCount;
+        return Math.max(dropped, 0);
+    }
+
+    // empties the journal once its records have been folded into a checkpoint
+    public void truncate() throws IOException {
+        close();
+        new FileOutputStream(file).close();
+        recordCount = 0;
+        committedLength = 0;
+        committedCount = 0;
+    }
+
+    public void close() throws IOException {
+        if (out != null) {
+            out.close();
+            out = null;
+            fileOut = null;
+        }
+    }
+
+    public int getRecordCount() {
+        return this.recordCount;
+    }
+
+    // default Java serialization streams start with the magic number 0xACED
+    private static boolean isJavaSerialized(byte[] payload) {
+        return payload.length > 1 && payload[0] == (byte) 0xAC && payload[1] == (byte) 0xED;
+    }
+
+    private static Object deserialize(byte[] payload) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream objectIn = new ObjectInputStream(new ByteArrayInputStream(payload))) {
+            return objectIn.readObject();
+        }
+    }
+
+}
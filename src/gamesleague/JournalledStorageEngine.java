@@ -0,0 +1,411 @@
+package gamesleague;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Base of the engines that persist changes through a {@link Journal} in a save folder.
+ * <p>
+ * Changes are persisted write-behind: the latest state of each changed player, each new
+ * league and what changed in each existing league is held as a pending record, and pending
+ * records are written to the journal together in one group commit once the batch size is
+ * reached or the flush interval elapses.
+ * How often the journal is forced to disk is set by the {@link FsyncPolicy}. A group commit
+ * that fails on the caller's thread, i.e. every commit under EVERY_COMMIT and the one a
+ * full batch starts, fails the caller with an {@link UncheckedIOException}; one that fails
+ * on the background flusher keeps its records pending and is retried on the next interval.
+ * Every {@value #CHECKPOINT_INTERVAL} records the journal is folded into a checkpoint,
+ * whose format is up to the subclass, and a fresh journal is started.
+ */
+public abstract class JournalledStorageEngine implements StorageEngine {
+
+    public static final int CHECKPOINT_INTERVAL = 500;
+
+    protected final String saveDir;
+    private final FsyncPolicy fsyncPolicy;
+    private final int batchSize;
+    private final long flushIntervalMillis;
+
+    protected GamesLeagueStore store;
+    private Journal journal;
+    // latest encoded state of each changed player and new league, and the changes to each
+    // league in order, waiting for the next group commit
+    private final LinkedHashMap<Integer, byte[]> pendingPlayers = new LinkedHashMap<>();
+    private final LinkedHashMap<Integer, byte[]> pendingLeagues = new LinkedHashMap<>();
+    private final LinkedHashMap<Integer, ArrayList<byte[]>> pendingChanges = new LinkedHashMap<>();
+    private final LinkedHashSet<Integer> pendingRemovals = new LinkedHashSet<>();
+    private int pendingChangeCount;
+    // tickets of the last change recorded and of the last one committed; a group commit is
+    // led by one caller at a time, under commitLock, which is always taken before the engine
+    private long enqueued;
+    private long committed;
+    private final Object commitLock = new Object();
+    private ScheduledExecutorService flusher;
+    private Thread shutdownFlush;
+    // bytes of torn or unreadable journal records dropped at load
+    private long droppedJournalBytes;
+    // the last failure of work that has no caller to report it to
+    private volatile Exception lastBackgroundFailure;
+
+    protected JournalledStorageEngine(String saveDir, FsyncPolicy fsyncPolicy, int batchSize, long flushIntervalMillis) {
+        this.saveDir = saveDir;
+        this.fsyncPolicy = fsyncPolicy;
+        this.batchSize = batchSize;
+        this.flushIntervalMillis = flushIntervalMillis;
+    }
+
+    public FsyncPolicy getFsyncPolicy() {
+        return this.fsyncPolicy;
+    }
+
+    // the number of bytes of torn or unreadable records cut off the journal when it was loaded
+    public long getDroppedJournalBytes() {
+        return this.droppedJournalBytes;
+    }
+
+    /**
+     * Returns the last failure of the background flusher or of other background work, or
+     * null if there was none. Changes a failed background flush could not write stay
+     * pending, so they are retried and any lasting failure reaches the next caller to flush.
+     */
+    public Exception getLastBackgroundFailure() {
+        return this.lastBackgroundFailure;
+    }
+
+    protected void backgroundFailed(Exception failure) {
+        lastBackgroundFailure = failure;
+    }
+
+    // id reservations are kept in the save folder, next to the data using the ids
+    public IdAllocator idAllocator(String name) {
+        new File(saveDir).mkdirs();
+        return new IdAllocator(saveDir + "/" + name);
+    }
+
+    // loads the last checkpoint once, at startup, then replays any journalled changes
+    public void load(GamesLeagueStore store) {
+        this.store = store;
+        new File(saveDir).mkdirs();
+        try {
+            loadCheckpoint();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.journal = new Journal(saveDir + "/Journal.ser");
+        droppedJournalBytes = journal.replay(player -> {
+            store.putPlayer(player);
+            changedSinceCheckpoint(player);
+        }, league -> {
+            store.putLeague(league);
+            league.markDirty(League.ALL_SECTIONS);
+            changedSinceCheckpoint(league);
+        }, (leagueId, changes) -> {
+            League league = store.getLeague(leagueId);
+            try {
+                // the league was removed by a later record if it is missing
+                if (league != null && EntityCodec.applyLeagueChanges(league, changes)) {
+                    store.putLeague(league);
+                    changedSinceCheckpoint(league);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, leagueId -> {
+            store.dropLeague(leagueId);
+            removedSinceCheckpoint(leagueId);
+        });
+    }
+
+    // records the current state of a changed player for the next group commit
+    public void playerChanged(Player player) {
+        // the caller holds the player's lock, so it can be encoded outside the engine's monitor
+        byte[] record = EntityCodec.encodePlayer(player);
+        long ticket;
+        synchronized (this) {
+            pendingPlayers.put(player.getId(), record);
+            changedSinceCheckpoint(player);
+            ticket = ++enqueued;
+        }
+        afterUpdate(ticket);
+    }
+
+    // records a new league whole, or what changed in a league, for the next group commit
+    public void leagueChanged(League league) {
+        boolean whole = league.needsWholeRecord();
+        byte[] record = whole ? EntityCodec.encodeLeague(league) : EntityCodec.encodeLeagueChanges(league);
+        league.markJournalled();
+        long ticket;
+        synchronized (this) {
+            if (whole) {
+                pendingLeagues.put(league.getId(), record);
+                dropPendingChanges(league.getId());
+            } else {
+                pendingChanges.computeIfAbsent(league.getId(), id -> new ArrayList<>()).add(record);
+                pendingChangeCount++;
+            }
+            changedSinceCheckpoint(league);
+            ticket = ++enqueued;
+        }
+        afterUpdate(ticket);
+    }
+
+    private void dropPendingChanges(int leagueId) {
+        ArrayList<byte[]> dropped = pendingChanges.remove(leagueId);
+        if (dropped != null) {
+            pendingChangeCount -= dropped.size();
+        }
+    }
+
+    // records the removal for the next group commit, in place of any pending state of the league
+    public void leagueRemoved(int leagueId) {
+        long ticket;
+        synchronized (this) {
+            pendingLeagues.remove(leagueId);
+            dropPendingChanges(leagueId);
+            pendingRemovals.add(leagueId);
+            removedSinceCheckpoint(leagueId);
+            ticket = ++enqueued;
+        }
+        afterUpdate(ticket);
+    }
+
+    public void contentsReplaced() {
+        checkpoint(true);
+    }
+
+    /**
+     * Writes every pending record to the journal as one group commit.
+     * The journal is forced to disk unless the fsync policy is NONE.
+     *
+     * @throws UncheckedIOException If the commit failed; its records stay pending.
+     */
+    public void flush() {
+        try {
+            commitThrough(lastEnqueued());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // used by the interval flusher and the shutdown hook, which have no caller to fail
+    private void flushInBackground() {
+        try {
+            commitThrough(lastEnqueued());
+        } catch (IOException e) {
+            // the records stay pending and are retried on the next flush
+            backgroundFailed(e);
+        }
+    }
+
+    private synchronized long lastEnqueued() {
+        return enqueued;
+    }
+
+    /**
+     * Returns once the record with the given ticket is committed. The first caller to get
+     * the commit lock leads: it takes every record pending at that moment, so the callers
+     * queued behind it usually find their records committed and return without writing.
+     * The journal write and fsync run outside the engine's monitor, so changes keep being
+     * recorded while they are in progress.
+     */
+    private void commitThrough(long ticket) throws IOException {
+        synchronized (commitLock) {
+            if (committed >= ticket) {
+                return;
+            }
+            LinkedHashMap<Integer, byte[]> players;
+            LinkedHashMap<Integer, byte[]> leagues;
+            LinkedHashMap<Integer, ArrayList<byte[]>> changes;
+            LinkedHashSet<Integer> removals;
+            long upTo;
+            synchronized (this) {
+                players = new LinkedHashMap<>(pendingPlayers);
+                leagues = new LinkedHashMap<>(pendingLeagues);
+                changes = new LinkedHashMap<>(pendingChanges);
+                removals = new LinkedHashSet<>(pendingRemovals);
+                clearPending();
+                upTo = enqueued;
+            }
+            try {
+                for (Integer id : players.keySet()) {
+                    journal.append(Journal.PLAYER, id, players.get(id));
+                }
+                for (Integer id : leagues.keySet()) {
+                    journal.append(Journal.LEAGUE, id, leagues.get(id));
+                }
+                // a league's changes always follow its whole record
+                for (Integer id : changes.keySet()) {
+                    for (byte[] record : changes.get(id)) {
+                        journal.append(Journal.LEAGUE_CHANGES, id, record);
+                    }
+                }
+                // ids are never reused, so a removal can follow every league record
+                for (Integer id : removals) {
+                    journal.append(Journal.LEAGUE_REMOVED, id, new byte[0]);
+                }
+                journal.commit(fsyncPolicy != FsyncPolicy.NONE);
+            } catch (IOException e) {
+                synchronized (this) {
+                    // states recorded meanwhile are newer than the ones that failed, and
+                    // changes recorded meanwhile follow the ones that failed
+                    players.forEach(pendingPlayers::putIfAbsent);
+                    changes.forEach((id, failed) -> {
+                        // a whole record of the league recorded meanwhile already holds them
+                        if (!pendingRemovals.contains(id) && !pendingLeagues.containsKey(id)) {
+                            ArrayList<byte[]> later = pendingChanges.put(id, failed);
+                            if (later != null) {
+                                failed.addAll(later);
+                            }
+                            pendingChangeCount += failed.size() - (later == null ? 0 : later.size());
+                        }
+                    });
+                    leagues.forEach((id, record) -> {
+                        if (!pendingRemovals.contains(id)) {
+                            pendingLeagues.putIfAbsent(id, record);
+                        }
+                    });
+                    pendingRemovals.addAll(removals);
+                }
+                throw e;
+            }
+            committed = upTo;
+        }
+    }
+
+    /**
+     * Writes a checkpoint of the store and starts a fresh journal.
+     *
+     * @throws UncheckedIOException If the checkpoint could not be written; the journal
+     *                              still holds every change, so nothing is lost.
+     */
+    public void checkpoint() {
+        checkpoint(false);
+    }
+
+    private void checkpoint(boolean replaced) {
+        synchronized (commitLock) {
+            synchronized (this) {
+                if (replaced) {
+                    replacedSinceCheckpoint();
+                }
+                try {
+                    writeCheckpoint();
+                    clearPending();
+                    committed = enqueued;
+                    // records left behind by a failed truncate hold nothing newer than the checkpoint
+                    journal.truncate();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+    }
+
+    // flushes anything pending and stops the background flusher
+    public void close() {
+        try {
+            flush();
+        } finally {
+            synchronized (commitLock) {
+                synchronized (this) {
+                    stopFlusher();
+                }
+            }
+        }
+    }
+
+    private void stopFlusher() {
+        if (flusher != null) {
+            flusher.shutdown();
+            flusher = null;
+            // the hook would otherwise keep this engine, its store and all its data reachable
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownFlush);
+            } catch (IllegalStateException e) {
+                // already shutting down
+            }
+            shutdownFlush = null;
+        }
+        try {
+            journal.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // fills the store from the last checkpoint in the save folder
+    protected abstract void loadCheckpoint() throws IOException;
+
+    // writes the store, or what changed in it since the last checkpoint, to the save folder
+    protected abstract void writeCheckpoint() throws IOException;
+
+    // called for every change the next checkpoint has to include
+    protected void changedSinceCheckpoint(Player player) {
+    }
+
+    protected void changedSinceCheckpoint(League league) {
+    }
+
+    protected void removedSinceCheckpoint(int leagueId) {
+    }
+
+    private void clearPending() {
+        pendingPlayers.clear();
+        pendingLeagues.clear();
+        pendingChanges.clear();
+        pendingChangeCount = 0;
+        pendingRemovals.clear();
+    }
+
+    // everything in the store was replaced, so the next checkpoint has to include all of it
+    protected void replacedSinceCheckpoint() {
+    }
+
+    private void afterUpdate(long ticket) {
+        boolean commitNow;
+        synchronized (this) {
+            commitNow = fsyncPolicy == FsyncPolicy.EVERY_COMMIT || pendingPlayers.size() + pendingLeagues.size()
+                    + pendingChangeCount + pendingRemovals.size() >= batchSize;
+            if (!commitNow) {
+                startFlusher();
+            }
+        }
+        if (commitNow) {
+            try {
+                commitThrough(ticket);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        // checkpoints never run on the flusher, which must not touch live objects; the store
+        // runs them here or, when deferred, once its caller has no operation in progress
+        if (journal.getRecordCount() >= CHECKPOINT_INTERVAL) {
+            store.checkpointNeeded();
+        }
+    }
+
+    // starts the interval flusher on the first write-behind change
+    private void startFlusher() {
+        if (flusher != null) {
+            return;
+        }
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "gamesleague-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushInBackground, flushIntervalMillis, flushIntervalMillis,
+                TimeUnit.MILLISECONDS);
+        // pending changes are still written if the program exits between intervals
+        shutdownFlush = new Thread(this::flushInBackground);
+        Runtime.getRuntime().addShutdownHook(shutdownFlush);
+    }
+
+}
@@ -2,12 +2,35 @@ package gamesleague;
 
 import java.io.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import java.time.LocalDate;
 
 
+/**
+ * A league's state, changed by one thread at a time under the league's lock.
+ * <p>
+ * At the end of every change the league publishes an immutable {@link LeagueView} of
+ * itself (see {@link #publish}), which readers use without locking. The getters here
+ * return read-only copies or views rather than the live collections.
+ */
 public class League implements Serializable {
 
+    // sections of a league, used to record what changed since the last checkpoint
+    static final int HEADER = 1;        // name, game type, dates and status
+    static final int MEMBERS = 2;       // owners, players and player statuses
+    static final int INVITES = 4;
+    static final int DAY_SCORES = 8;
+    static final int GAME_REPORTS = 16;
+    static final int ALL_SECTIONS = HEADER | MEMBERS | INVITES | DAY_SCORES | GAME_REPORTS;
+
     private int leagueId;
     private String name;
     private GameType gameType;
@@ -15,17 +38,44 @@ public class League implements Serializable {
     private LocalDate endDate;
     private LocalDate closeDate;
     private Status leagueStatus;
-    private ArrayList<Integer> ownerIds;
-    private ArrayList<Integer> playerIds;
-    private ArrayList<String> emailInvites;
-    private ArrayList<Integer> playerInvites;
+    // players, owners and invites keep insertion order, getLeaguePlayers relies on it
+    private IntSet ownerIds;
+    private IntSet playerIds;
+    // normalised email -> email as invited
+    private LinkedHashMap<String, String> emailInvites;
+    private IntSet playerInvites;
     private HashMap<Integer, int[]> dayScores;
     private HashMap<Integer, HashMap<Integer, String>> gameReports;
     private HashMap<Integer, Status> playerStatus;
-
-
-    public League(int owner, String name, GameType gameType) {
-        this.ownerIds = new ArrayList<>();
+    // snapshot bytes of dayScores/gameReports, read on first use and after they are released (see loadedDayScores)
+    private transient LeagueSections sections;
+    // when dayScores or gameReports were last used, in System.currentTimeMillis() time;
+    // also set by readers of the view, which hold no lock
+    private transient volatile long sectionsUsed;
+    // sections changed since the last checkpoint, a new league has every section changed
+    private transient int dirtySections;
+    // the last published state, and the sections changed or decoded since it was built
+    private transient volatile LeagueView view;
+    private transient int unpublished;
+    // counts the changes published since the league was created, and is saved with it;
+    // modified is set by a change until it is published
+    private long version;
+    private transient boolean modified;
+    // what changed since the league was last journalled (see writeChanges): the sections,
+    // those that must be written whole, and the days and reports changed in the others
+    private transient int unjournalled;
+    private transient int journalWhole;
+    private transient HashSet<Integer> unjournalledDays;
+    private transient HashMap<Integer, HashSet<Integer>> unjournalledReports;
+
+    private static final AtomicReferenceFieldUpdater<League, LeagueView> VIEW =
+            AtomicReferenceFieldUpdater.newUpdater(League.class, LeagueView.class, "view");
+
+
+    // the id comes from the store the league is for (see GamesLeagueStore#nextLeagueId)
+    public League(int id, int owner, String name, GameType gameType) {
+        this.leagueId = id;
+        this.ownerIds = new IntSet();
         this.ownerIds.add(owner);
         this.name = name;
         this.gameType = gameType;
@@ -33,86 +83,92 @@ public class League implements Serializable {
         this.endDate = null;
         this.closeDate = null;
         this.leagueStatus = null;
-        setId();
 
-        this.playerIds = new ArrayList<>();
-        this.emailInvites = new ArrayList<>();
-        this.playerInvites = new ArrayList<>();
+        this.playerIds = new IntSet();
+        this.emailInvites = new LinkedHashMap<>();
+        this.playerInvites = new IntSet();
         this.dayScores = new HashMap<>();
         this.gameReports = new HashMap<>();
         this.playerStatus = new HashMap<>();
+        this.dirtySections = ALL_SECTIONS;
+        this.unjournalled = ALL_SECTIONS;
+        this.journalWhole = ALL_SECTIONS;
     }
 
-    public void addLeagueToList() {
-        ArrayList<League> leagueList = getLeagues();
-        leagueList.add(this);
-        serialiseLeagues(leagueList); // serialising new list of leagues containing the current league into memory
+    // used by read() to rebuild a stored league
+    private League() {
     }
 
-    public static ArrayList<League> getLeagues() {
-        // De-serialising an ArrayList of League objects from 'Leagues.ser'
-        try (ObjectInputStream leagueIn = new ObjectInputStream(new FileInputStream("./src/gamesleague/save/Leagues.ser"))) {
-            return (ArrayList<League>) leagueIn.readObject(); // reading value from bytestream
-        } catch (IOException | ClassNotFoundException e) {
-            // if the code reaches this point, the file is empty so we serialise an empty League ArrayList to hold all League objects
-            serialiseLeagues(new ArrayList<League>());
+    public void addPlayerToLeague(int playerId) {
+        if (playerIds.add(playerId)) {
+            changed(MEMBERS);
         }
-        return new ArrayList<League>(); // if there are no leagues stored in 'Leagues.ser', an empty list is returned
     }
 
-    public static void serialiseLeagues(ArrayList<League> leagues) {
-        // Serialising the 'leagues' parameter to be stored in 'Leagues.ser'
-        try (ObjectOutputStream leagueOut = new ObjectOutputStream(new FileOutputStream("./src/gamesleague/save/Leagues.ser"))) {
-            leagueOut.writeObject(leagues); // writing value of 'leagues' to bytestream
-        } catch (IOException e) {
-            e.printStackTrace();
+    public void addPlayerInvite(int playerId) {
+        if (playerInvites.add(playerId)) {
+            changed(INVITES);
         }
     }
 
-    public static int getNextLeagueId() {
-        // De-serialising nextLeagueId from 'nextLeagueId.ser'
-        try (ObjectInputStream leagueIdIn = new ObjectInputStream(new FileInputStream("./src/gamesleague/save/nextLeagueId.ser"))) {
-            return (int) leagueIdIn.readObject(); // reading value from bytestream
-        } catch (IOException | ClassNotFoundException e) {
-            System.out.println("nextLeagueId.ser not found or unreadable. Starting from ID 0.");
-            return 0;
+    // an email already invited in another case is not added again
+    public void addEmailInvite(String email) {
+        if (emailInvites.putIfAbsent(GamesLeagueStore.normaliseEmail(email), email) == null) {
+            changed(INVITES);
         }
     }
 
-    public static void serialiseNextLeagueId(int nextLeagueId) {
-        // Serialising the 'nextLeagueId' parameter to be stored in 'nextLeagueId.ser'
-        try (ObjectOutputStream leagueIdOut = new ObjectOutputStream(new FileOutputStream("./src/gamesleague/save/nextLeagueId.ser"))) {
-            leagueIdOut.writeObject(nextLeagueId); // writing value of 'nextLeagueId' to bytestream
-        } catch (IOException e) {
-            e.printStackTrace();
+    // returns true if the player had an invite to remove
+    public boolean removePlayerInvite(int playerId) {
+        boolean removed = playerInvites.remove(playerId);
+        if (removed) {
+            changed(INVITES);
         }
+        return removed;
     }
 
-    public void addPlayerToLeague(int playerId) {
-        if (!playerIds.contains(playerId)) {
-            playerIds.add(playerId);
-            League.serialiseLeagues(getLeagues());
+    // returns true if the email, in any case, had an invite to remove
+    public boolean removeEmailInvite(String email) {
+        String key = GamesLeagueStore.normaliseEmail(email);
+        boolean removed = key != null && emailInvites.remove(key) != null;
+        if (removed) {
+            changed(INVITES);
         }
+        return removed;
     }
 
-    public void addPlayerInvite(int playerId) {
-            this.playerInvites.add(playerId);
-            League.serialiseLeagues(getLeagues());
-    }
-
-    public void addEmailInvite(String email) {
-            this.emailInvites.add(email);
-            League.serialiseLeagues(getLeagues());
+    // emails are invited case-insensitively, like they are registered
+    public boolean hasEmailInvite(String email) {
+        String key = GamesLeagueStore.normaliseEmail(email);
+        return key != null && emailInvites.containsKey(key);
     }
 
     public void addOwner(int playerId) {
-        this.ownerIds.add(playerId);
-        League.serialiseLeagues(getLeagues());
+        if (ownerIds.add(playerId)) {
+            changed(MEMBERS);
+        }
     }
 
     public void removeOwner(int playerId) {
-            ownerIds.remove(Integer.valueOf(playerId));
-            League.serialiseLeagues(getLeagues());
+        if (ownerIds.remove(playerId)) {
+            changed(MEMBERS);
+        }
+    }
+
+    public boolean hasPlayer(int playerId) {
+        return playerIds.contains(playerId);
+    }
+
+    public boolean isOwner(int playerId) {
+        return ownerIds.contains(playerId);
+    }
+
+    public int getOwnerCount() {
+        return ownerIds.size();
+    }
+
+    public boolean hasPlayerInvite(int playerId) {
+        return playerInvites.contains(playerId);
     }
 
     // getters and setters
@@ -120,15 +176,9 @@ public class League implements Serializable {
         return this.leagueId;
     }
 
-    // ensure unique, non-reassignable league IDs using nextLeagueId.ser
-    private void setId() {
-        int newLeagueId = getNextLeagueId();
-        this.leagueId = newLeagueId;
-        serialiseNextLeagueId(newLeagueId + 1);
-    }
-
-    public ArrayList<Integer> getOwnerIds() {
-        return this.ownerIds;
+    // a read-only copy of the owners
+    public IntSet getOwnerIds() {
+        return this.ownerIds.readOnlyCopy();
     }
 
     public String getLeagueName(){
@@ -137,7 +187,7 @@ public class League implements Serializable {
 
     public void setLeagueName(String name) {
         this.name = name;
-        serialiseLeagues(getLeagues());
+        changed(HEADER);
     }
 
     public GameType getGameType() {
@@ -146,7 +196,7 @@ public class League implements Serializable {
 
     public void setGameType(GameType gameType) {
         this.gameType = gameType;
-        serialiseLeagues(getLeagues());
+        changed(HEADER);
     }
 
     public LocalDate getStartDate() {
@@ -155,7 +205,7 @@ public class League implements Serializable {
 
     public void setStartDate(LocalDate startDate) {
         this.startDate = startDate;
-        serialiseLeagues(getLeagues());
+        changed(HEADER);
     }
 
     public LocalDate getEndDate() {
@@ -164,7 +214,7 @@ public class League implements Serializable {
 
     public void setEndDate(LocalDate endDate) {
         this.endDate = endDate;
-        serialiseLeagues(getLeagues());
+        changed(HEADER);
     }
 
     public LocalDate getCloseDate() {
@@ -173,7 +223,7 @@ public class League implements Serializable {
 
     public void setCloseDate(LocalDate closeDate) {
         this.closeDate = closeDate;
-        serialiseLeagues(getLeagues());
+        changed(HEADER);
     }
 
     public Status getLeagueStatus() {
@@ -182,48 +232,87 @@ public class League implements Serializable {
 
     public void setLeagueStatus(Status leagueStatus) {
         this.leagueStatus = leagueStatus;
-        serialiseLeagues(getLeagues());
+        changed(HEADER);
+    }
+
+    // a read-only copy of the players, in the order they joined
+    public IntSet getLeaguePlayerIds() {
+        return this.playerIds.readOnlyCopy();
     }
 
-    public ArrayList<Integer> getLeaguePlayerIds() {
-        return this.playerIds;
+    public void setLeaguePlayerIds(Collection<Integer> playerIds) {
+        this.playerIds = new IntSet(playerIds);
+        changed(MEMBERS);
     }
 
-    public void setLeaguePlayerIds(ArrayList<Integer> playerIds) {
-        this.playerIds = new ArrayList<>(playerIds);
-        serialiseLeagues(getLeagues());
+    // a read-only copy of the invited players
+    public IntSet getPlayerInvites() {
+        return this.playerInvites.readOnlyCopy();
     }
 
-    public ArrayList<Integer> getPlayerInvites() {
-        return this.playerInvites;
+    // the invited emails as they were entered, read-only
+    public Collection<String> getEmailInvites() {
+        return Collections.unmodifiableCollection(this.emailInvites.values());
     }
 
-    public ArrayList<String> getEmailInvites() {
-        return this.emailInvites;
+    // the invited emails in the form the store indexes them
+    Set<String> getEmailInviteKeys() {
+        return Collections.unmodifiableSet(this.emailInvites.keySet());
     }
 
-    public HashMap<Integer, int[]> getDayScores() {
-        return this.dayScores;
+    // the scores of each day, read-only; score arrays are never changed once stored
+    public Map<Integer, int[]> getDayScores() {
+        return Collections.unmodifiableMap(loadedDayScores());
     }
 
-    public void setDayScores(HashMap<Integer, int[]> dayScores) {
-        this.dayScores = dayScores;
+    public void setDayScores(Map<Integer, int[]> dayScores) {
+        this.dayScores = new HashMap<>();
+        for (Map.Entry<Integer, int[]> entry : dayScores.entrySet()) {
+            this.dayScores.put(entry.getKey(), entry.getValue().clone());
+        }
+        journalWhole |= DAY_SCORES;
+        changed(DAY_SCORES);
     }
 
     public void addDayScores(int day, int[] scores) {
-        this.dayScores.put(day, scores);
-        serialiseLeagues(getLeagues());
+        loadedDayScores().put(day, scores.clone());
+        changedDay(day);
+        changed(DAY_SCORES);
     }
 
 
-    public HashMap<Integer, HashMap<Integer, String>> getGameReports() {
-        return this.gameReports;
+    // each player's reports by day, read-only
+    public Map<Integer, Map<Integer, String>> getGameReports() {
+        HashMap<Integer, Map<Integer, String>> reports = new HashMap<>();
+        for (Map.Entry<Integer, HashMap<Integer, String>> entry : loadedGameReports().entrySet()) {
+            reports.put(entry.getKey(), Collections.unmodifiableMap(entry.getValue()));
+        }
+        return Collections.unmodifiableMap(reports);
+    }
+
+    // the player's report for the day, or null if there is none
+    public String getGameReport(int playerId, int day) {
+        HashMap<Integer, String> reports = loadedGameReports().get(playerId);
+        return reports == null ? null : reports.get(day);
     }
 
     public void addGameReport(int playerId, int day, String gameReport) {
-        HashMap<Integer, String> playerGameReports = this.gameReports.get(playerId);
+        HashMap<Integer, String> playerGameReports = loadedGameReports().computeIfAbsent(playerId, id -> new HashMap<>());
         playerGameReports.put(day, gameReport);
-        serialiseLeagues(getLeagues());
+        changedReport(playerId, day);
+        changed(GAME_REPORTS);
+    }
+
+    // sets every report of the player to "", keeping the days they played
+    public void clearGameReports(int playerId) {
+        HashMap<Integer, String> playerGameReports = loadedGameReports().get(playerId);
+        if (playerGameReports != null) {
+            playerGameReports.replaceAll((day, report) -> "");
+            for (Integer day : playerGameReports.keySet()) {
+                changedReport(playerId, day);
+            }
+            changed(GAME_REPORTS);
+        }
     }
 
     public HashMap<Integer, Status> getPlayerStatus() {
@@ -232,8 +321,449 @@ public class League implements Serializable {
 
     public void setPlayerStatus(int playerId, Status status) {
         this.playerStatus.replace(playerId, status);
-        serialiseLeagues(getLeagues());
+        changed(MEMBERS);
     }
 
-}
+    int getDirtySections() {
+        return this.dirtySections;
+    }
+
+    void markDirty(int sections) {
+        this.dirtySections |= sections;
+    }
+
+    // called once the league's changes are part of a checkpoint
+    void markClean() {
+        this.dirtySections = 0;
+    }
+
+    /**
+     * The league's version, which goes up by one with every published change and never
+     * goes down, so a caller can tell whether the league changed since it last looked.
+     * Versions are saved with the league, so they also carry on across a restart or a load.
+     */
+    public long getVersion() {
+        return this.version;
+    }
+
+    // the state last published, or null before the league was first published
+    public LeagueView getView() {
+        return this.view;
+    }
 
+    /**
+     * Publishes the league's current state as a new {@link LeagueView}, rebuilding only the
+     * sections changed since the last one. Called once a change to the league is complete.
+     * Returns the sections that changed.
+     */
+    int publish() {
+        if (modified) {
+            version++;
+            modified = false;
+        }
+        int sections;
+        LeagueView current;
+        LeagueView next;
+        do {
+            current = view;
+            sections = current == null ? ALL_SECTIONS : unpublished;
+            next = buildView(current, sections);
+        } while (!VIEW.compareAndSet(this, current, next));
+        unpublished = 0;
+        return sections;
+    }
+
+    private LeagueView buildView(LeagueView previous, int sections) {
+        boolean members = (sections & MEMBERS) != 0;
+        boolean invites = (sections & INVITES) != 0;
+        Map<Integer, int[]> scores = previous == null ? null : previous.getDayScoreMap();
+        if ((sections & DAY_SCORES) != 0) {
+            // arrays are shared, as they are never changed once stored
+            scores = dayScores == null ? null : Collections.unmodifiableMap(new HashMap<>(dayScores));
+        }
+        return new LeagueView(leagueId, version, name, gameType, startDate, endDate, closeDate, leagueStatus,
+                members ? ownerIds.readOnlyCopy() : previous.getOwnerIds(),
+                members ? playerIds.readOnlyCopy() : previous.getLeaguePlayerIds(),
+                invites ? playerInvites.readOnlyCopy() : previous.getPlayerInvites(),
+                invites ? Collections.unmodifiableList(new ArrayList<>(emailInvites.values())) : previous.getEmailInvites(),
+                invites ? Collections.unmodifiableSet(new LinkedHashSet<>(emailInvites.keySet())) : previous.getEmailInviteKeys(),
+                members ? Collections.unmodifiableMap(new HashMap<>(playerStatus)) : previous.getPlayerStatus(),
+                scores);
+    }
+
+    private void changed(int sections) {
+        dirtySections |= sections;
+        unpublished |= sections;
+        unjournalled |= sections;
+        modified = true;
+    }
+
+    private void changedDay(int day) {
+        if ((journalWhole & DAY_SCORES) == 0) {
+            if (unjournalledDays == null) {
+                unjournalledDays = new HashSet<>();
+            }
+            unjournalledDays.add(day);
+        }
+    }
+
+    private void changedReport(int playerId, int day) {
+        if ((journalWhole & GAME_REPORTS) == 0) {
+            if (unjournalledReports == null) {
+                unjournalledReports = new HashMap<>();
+            }
+            unjournalledReports.computeIfAbsent(playerId, id -> new HashSet<>()).add(day);
+        }
+    }
+
+    // whether the next journal record has to hold the whole league, as it does for a new one
+    boolean needsWholeRecord() {
+        return this.journalWhole == ALL_SECTIONS;
+    }
+
+    // called once the league's changes are in a journal record, or are never journalled
+    void markJournalled() {
+        unjournalled = 0;
+        journalWhole = 0;
+        unjournalledDays = null;
+        unjournalledReports = null;
+    }
+
+    /**
+     * Records a use of the dayScores published in the league's view. Those reads take no
+     * lock and never reach the league, so without this a league read only through its view
+     * would look idle and have its sections released (see {@link #releaseIdleSections}).
+     */
+    void viewSectionsUsed() {
+        long now = System.currentTimeMillis();
+        // most reads within the same millisecond leave the field alone
+        if (sectionsUsed != now) {
+            sectionsUsed = now;
+        }
+    }
+
+    // dayScores and gameReports of a league restored from a snapshot are only decoded on first use
+    private HashMap<Integer, int[]> loadedDayScores() {
+        sectionsUsed = System.currentTimeMillis();
+        if (dayScores == null) {
+            // decoded scores are published with the league's next view
+            unpublished |= DAY_SCORES;
+            try {
+                dayScores = readDayScores(sections.dayScoresInput());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return dayScores;
+    }
+
+    private HashMap<Integer, HashMap<Integer, String>> loadedGameReports() {
+        sectionsUsed = System.currentTimeMillis();
+        if (gameReports == null) {
+            try {
+                gameReports = readGameReports(sections.gameReportsInput());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return gameReports;
+    }
+
+    /**
+     * Drops decoded dayScores and gameReports that were not used since idleSince and are
+     * unchanged since they were written to a snapshot, so their memory can be reclaimed.
+     * They are decoded from the mapped snapshot again on next use.
+     * Returns true if anything was dropped.
+     */
+    boolean releaseIdleSections(long idleSince) {
+        if (sections == null || sectionsUsed > idleSince) {
+            return false;
+        }
+        boolean released = false;
+        if (dayScores != null && sections.hasDayScores() && (dirtySections & DAY_SCORES) == 0) {
+            dayScores = null;
+            // the view would otherwise keep them reachable
+            unpublished |= DAY_SCORES;
+            publish();
+            released = true;
+        }
+        if (gameReports != null && sections.hasGameReports() && (dirtySections & GAME_REPORTS) == 0) {
+            gameReports = null;
+            released = true;
+        }
+        return released;
+    }
+
+    // points the league at the sections just written to a checkpoint, keeping any it left out
+    void relocateSections(LeagueSections written) {
+        sections = LeagueSections.combine(written.hasDayScores() ? written : sections,
+                written.hasGameReports() ? written : sections);
+    }
+
+    // leaves dayScores and gameReports in the snapshot until they are first used
+    void setLazySections(LeagueSections sections) {
+        this.sections = sections;
+        this.dayScores = null;
+        this.gameReports = null;
+    }
+
+    // fills in the sections a delta snapshot left out with those of the league state it replaces
+    void inheritSections(League previous) {
+        if (sections == null) {
+            return;
+        }
+        LeagueSections scoresFrom = sections;
+        LeagueSections reportsFrom = sections;
+        if (!sections.hasDayScores()) {
+            scoresFrom = previous == null ? null : previous.sections;
+            dayScores = previous == null ? new HashMap<>() : previous.dayScores;
+        }
+        if (!sections.hasGameReports()) {
+            reportsFrom = previous == null ? null : previous.sections;
+            gameReports = previous == null ? new HashMap<>() : previous.gameReports;
+        }
+        sections = LeagueSections.combine(scoresFrom, reportsFrom);
+    }
+
+    // default serialization must see the decoded sections
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        loadedDayScores();
+        loadedGameReports();
+        out.defaultWriteObject();
+    }
+
+    // binary form used by EntityCodec: header, dayScores, gameReports, playerStatus
+    void write(DataOutput out) throws IOException {
+        writeHeader(out);
+        writeDayScores(out);
+        writeGameReports(out);
+        writePlayerStatus(out);
+    }
+
+    /**
+     * Writes what changed since the league was last journalled, so a journal record for a
+     * change costs the size of the change rather than of the league's whole history:
+     * the version, the changed parts and those written whole, then the header and player
+     * statuses if the header, members or invites changed, then the scores of the changed
+     * days and the changed reports, or every score or report where they were replaced.
+     */
+    void writeChanges(DataOutput out) throws IOException {
+        int parts = unjournalled;
+        if ((parts & (HEADER | MEMBERS | INVITES)) != 0) {
+            parts |= HEADER | MEMBERS | INVITES;
+        }
+        int whole = journalWhole & parts;
+        EntityCodec.writeVarLong(out, version);
+        EntityCodec.writeVarInt(out, parts);
+        EntityCodec.writeVarInt(out, whole);
+        if ((parts & HEADER) != 0) {
+            writeHeader(out);
+            writePlayerStatus(out);
+        }
+        if ((whole & DAY_SCORES) != 0) {
+            writeDayScores(out);
+        } else if ((parts & DAY_SCORES) != 0) {
+            EntityCodec.writeVarInt(out, unjournalledDays == null ? 0 : unjournalledDays.size());
+            if (unjournalledDays != null) {
+                for (Integer day : unjournalledDays) {
+                    EntityCodec.writeSignedVarInt(out, day);
+                    EntityCodec.writeScores(out, dayScores.get(day));
+                }
+            }
+        }
+        if ((whole & GAME_REPORTS) != 0) {
+            writeGameReports(out);
+        } else if ((parts & GAME_REPORTS) != 0) {
+            int count = 0;
+            if (unjournalledReports != null) {
+                for (HashSet<Integer> days : unjournalledReports.values()) {
+                    count += days.size();
+                }
+            }
+            EntityCodec.writeVarInt(out, count);
+            if (unjournalledReports != null) {
+                for (Integer playerId : unjournalledReports.keySet()) {
+                    HashMap<Integer, String> reports = gameReports.get(playerId);
+                    for (Integer day : unjournalledReports.get(playerId)) {
+                        EntityCodec.writeVarInt(out, playerId);
+                        EntityCodec.writeSignedVarInt(out, day);
+                        EntityCodec.writeString(out, reports.get(day));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Applies changes written by {@link #writeChanges} while the journal is replayed. Changes
+     * older than the league's state, which is then from a later checkpoint, are skipped.
+     * Returns true if they were applied.
+     */
+    boolean applyChanges(DataInput in, int codecVersion) throws IOException {
+        long changedVersion = EntityCodec.readVarLong(in);
+        if (changedVersion < version) {
+            return false;
+        }
+        int parts = EntityCodec.readVarInt(in);
+        int whole = EntityCodec.readVarInt(in);
+        if ((parts & HEADER) != 0) {
+            League header = readHeader(in, codecVersion);
+            name = header.name;
+            gameType = header.gameType;
+            startDate = header.startDate;
+            endDate = header.endDate;
+            closeDate = header.closeDate;
+            leagueStatus = header.leagueStatus;
+            ownerIds = header.ownerIds;
+            playerIds = header.playerIds;
+            emailInvites = header.emailInvites;
+            playerInvites = header.playerInvites;
+            readPlayerStatus(in);
+        }
+        if ((whole & DAY_SCORES) != 0) {
+            dayScores = readDayScores(in);
+        } else if ((parts & DAY_SCORES) != 0) {
+            HashMap<Integer, int[]> scores = loadedDayScores();
+            int count = EntityCodec.readVarInt(in);
+            for (int i = 0; i < count; i++) {
+                int day = EntityCodec.readSignedVarInt(in);
+                scores.put(day, EntityCodec.readScores(in));
+            }
+        }
+        if ((whole & GAME_REPORTS) != 0) {
+            gameReports = readGameReports(in);
+        } else if ((parts & GAME_REPORTS) != 0) {
+            HashMap<Integer, HashMap<Integer, String>> reports = loadedGameReports();
+            int count = EntityCodec.readVarInt(in);
+            for (int i = 0; i < count; i++) {
+                int playerId = EntityCodec.readVarInt(in);
+                int day = EntityCodec.readSignedVarInt(in);
+                reports.computeIfAbsent(playerId, id -> new HashMap<>()).put(day, EntityCodec.readString(in));
+            }
+        }
+        version = changedVersion;
+        dirtySections |= parts;
+        unpublished |= parts;
+        return true;
+    }
+
+    // codecVersion is the EntityCodec version the league was written with
+    static League read(DataInput in, int codecVersion) throws IOException {
+        League league = readHeader(in, codecVersion);
+        league.dayScores = readDayScores(in);
+        league.gameReports = readGameReports(in);
+        league.readPlayerStatus(in);
+        return league;
+    }
+
+    void writeHeader(DataOutput out) throws IOException {
+        EntityCodec.writeVarInt(out, leagueId);
+        EntityCodec.writeString(out, name);
+        EntityCodec.writeEnum(out, gameType);
+        EntityCodec.writeDay(out, startDate);
+        EntityCodec.writeDay(out, endDate);
+        EntityCodec.writeDay(out, closeDate);
+        EntityCodec.writeEnum(out, leagueStatus);
+        EntityCodec.writeIdSet(out, ownerIds);
+        EntityCodec.writeIdSet(out, playerIds);
+        EntityCodec.writeStringList(out, emailInvites.values());
+        EntityCodec.writeIdSet(out, playerInvites);
+        EntityCodec.writeVarLong(out, version);
+    }
+
+    static League readHeader(DataInput in, int codecVersion) throws IOException {
+        League league = new League();
+        league.leagueId = EntityCodec.readVarInt(in);
+        league.name = EntityCodec.readString(in);
+        league.gameType = EntityCodec.readEnum(in, GameType.values());
+        league.startDate = EntityCodec.readDay(in);
+        league.endDate = EntityCodec.readDay(in);
+        league.closeDate = EntityCodec.readDay(in);
+        league.leagueStatus = EntityCodec.readEnum(in, Status.values());
+        league.ownerIds = EntityCodec.readIdSet(in);
+        league.playerIds = EntityCodec.readIdSet(in);
+        league.emailInvites = new LinkedHashMap<>();
+        for (String email : EntityCodec.readStringList(in)) {
+            league.emailInvites.putIfAbsent(GamesLeagueStore.normaliseEmail(email), email);
+        }
+        league.playerInvites = EntityCodec.readIdSet(in);
+        if (codecVersion >= EntityCodec.VERSIONED_ENTITIES) {
+            league.version = EntityCodec.readVarLong(in);
+        }
+        return league;
+    }
+
+    // copies the snapshot bytes as they are when dayScores have not been decoded
+    void writeDayScores(DataOutput out) throws IOException {
+        if (dayScores == null) {
+            out.write(sections.dayScoresBytes());
+            return;
+        }
+        EntityCodec.writeVarInt(out, dayScores.size());
+        for (Integer day : dayScores.keySet()) {
+            EntityCodec.writeSignedVarInt(out, day);
+            EntityCodec.writeScores(out, dayScores.get(day));
+        }
+    }
+
+    static HashMap<Integer, int[]> readDayScores(DataInput in) throws IOException {
+        int dayCount = EntityCodec.readVarInt(in);
+        HashMap<Integer, int[]> dayScores = new HashMap<>();
+        for (int i = 0; i < dayCount; i++) {
+            int day = EntityCodec.readSignedVarInt(in);
+            dayScores.put(day, EntityCodec.readScores(in));
+        }
+        return dayScores;
+    }
+
+    void writeGameReports(DataOutput out) throws IOException {
+        if (gameReports == null) {
+            out.write(sections.gameReportsBytes());
+            return;
+        }
+        EntityCodec.writeVarInt(out, gameReports.size());
+        for (Integer playerId : gameReports.keySet()) {
+            HashMap<Integer, String> reports = gameReports.get(playerId);
+            EntityCodec.writeVarInt(out, playerId);
+            EntityCodec.writeVarInt(out, reports.size());
+            for (Integer day : reports.keySet()) {
+                EntityCodec.writeSignedVarInt(out, day);
+                EntityCodec.writeString(out, reports.get(day));
+            }
+        }
+    }
+
+    static HashMap<Integer, HashMap<Integer, String>> readGameReports(DataInput in) throws IOException {
+        int reportPlayerCount = EntityCodec.readVarInt(in);
+        HashMap<Integer, HashMap<Integer, String>> gameReports = new HashMap<>();
+        for (int i = 0; i < reportPlayerCount; i++) {
+            int playerId = EntityCodec.readVarInt(in);
+            int reportCount = EntityCodec.readVarInt(in);
+            HashMap<Integer, String> reports = new HashMap<>();
+            for (int j = 0; j < reportCount; j++) {
+                int day = EntityCodec.readSignedVarInt(in);
+                reports.put(day, EntityCodec.readString(in));
+            }
+            gameReports.put(playerId, reports);
+        }
+        return gameReports;
+    }
+
+    void writePlayerStatus(DataOutput out) throws IOException {
+        EntityCodec.writeVarInt(out, playerStatus.size());
+        for (Integer playerId : playerStatus.keySet()) {
+            EntityCodec.writeVarInt(out, playerId);
+            EntityCodec.writeEnum(out, playerStatus.get(playerId));
+        }
+    }
+
+    void readPlayerStatus(DataInput in) throws IOException {
+        int statusCount = EntityCodec.readVarInt(in);
+        playerStatus = new HashMap<>();
+        for (int i = 0; i < statusCount; i++) {
+            int playerId = EntityCodec.readVarInt(in);
+            playerStatus.put(playerId, EntityCodec.readEnum(in, Status.values()));
+        }
+    }
+
+}
@@ -0,0 +1,214 @@
+package gamesleague;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A single writer for each league, fed through a mailbox.
+ * <p>
+ * Callers queue changes to a league in its mailbox and get a future back straight away.
+ * At most one task per league drains its mailbox, taking up to {@link #MAX_BATCH}
+ * changes at a time and handing them to the {@link Writer} as one {@link Batch}, which
+ * applies them in the order they were queued. A burst of changes to one league, such as
+ * the reports arriving at the close of a day, so costs one lock, one store update and one
+ * published view per batch rather than per change, and callers never wait on each other.
+ * <p>
+ * A mailbox is dropped once it drains empty, so only leagues with changes waiting or being
+ * written have one. Messages are only added to a mailbox, and a mailbox only dropped, while
+ * its entry in the map is locked, so a message never lands in a dropped mailbox.
+ */
+final class LeagueActors {
+
+    static final int MAX_BATCH = 256;
+
+    // a change to one league; it checks everything it needs before changing the league,
+    // so one that throws leaves the league as it was
+    interface Mutation {
+        void apply(League league);
+    }
+
+    // applies a drained batch to its league and completes it
+    interface Writer {
+        void write(int leagueId, Batch batch);
+    }
+
+    private final ConcurrentHashMap<Integer, Mailbox> mailboxes = new ConcurrentHashMap<>();
+    private final Writer writer;
+    // created with the first drain, so a system that never queues a change starts no threads
+    private volatile ExecutorService executor;
+    private boolean closed;
+
+    LeagueActors(Writer writer) {
+        this.writer = writer;
+    }
+
+    // the executor draining mailboxes, or null once closed
+    private ExecutorService executor() {
+        ExecutorService current = executor;
+        if (current == null) {
+            synchronized (this) {
+                if (executor == null && !closed) {
+                    executor = TaskExecutors.newTaskExecutor("league-actor");
+                }
+                current = executor;
+            }
+        }
+        return current;
+    }
+
+    // queues the change; the future completes once it is applied and stored, or
+    // exceptionally with what it threw
+    CompletableFuture<Void> submit(int leagueId, Mutation mutation) {
+        Message message = new Message(mutation);
+        Mailbox mailbox = mailboxes.compute(leagueId, (id, current) -> {
+            Mailbox target = current == null ? new Mailbox(id) : current;
+            target.messages.add(message);
+            return target;
+        });
+        mailbox.schedule();
+        return message.done;
+    }
+
+    // the number of leagues with changes waiting or being written
+    int mailboxCount() {
+        return mailboxes.size();
+    }
+
+    // waits for every queued change to be written; changes queued afterwards are
+    // written on the thread that queues them
+    void close() {
+        ExecutorService running;
+        synchronized (this) {
+            closed = true;
+            running = executor;
+        }
+        if (running == null) {
+            return;
+        }
+        running.shutdown();
+        try {
+            while (!running.awaitTermination(1, TimeUnit.SECONDS)) {
+                // keep waiting for the mailboxes to drain
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private final class Mailbox {
+
+        private final int leagueId;
+        private final Queue<Message> messages = new ConcurrentLinkedQueue<>();
+        // set while a task is draining, or about to drain, this mailbox
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        private Mailbox(int leagueId) {
+            this.leagueId = leagueId;
+        }
+
+        // starts a drain unless one is running; a drain clears the flag before looking
+        // for more messages, so a message queued meanwhile is never left behind
+        private void schedule() {
+            if (messages.isEmpty() || !scheduled.compareAndSet(false, true)) {
+                return;
+            }
+            ExecutorService executor = executor();
+            if (executor == null) {
+                // closed before anything was queued
+                drain();
+                return;
+            }
+            try {
+                executor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                // closed
+                drain();
+            }
+        }
+
+        private void drain() {
+            Batch batch = new Batch();
+            Message message;
+            while (batch.messages.size() < MAX_BATCH && (message = messages.poll()) != null) {
+                batch.messages.add(message);
+            }
+            try {
+                writer.write(leagueId, batch);
+            } catch (RuntimeException e) {
+                batch.fail(e);
+            } finally {
+                scheduled.set(false);
+                retireIfIdle();
+                schedule();
+            }
+        }
+
+        // drops the mailbox unless a message arrived or another drain started meanwhile; a
+        // later message starts a new mailbox, which cannot write before this one's last batch
+        private void retireIfIdle() {
+            if (messages.isEmpty()) {
+                mailboxes.computeIfPresent(leagueId,
+                        (id, current) -> current == this && messages.isEmpty() && !scheduled.get() ? null : current);
+            }
+        }
+    }
+
+    private static final class Message {
+
+        private final Mutation mutation;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+        private boolean applied;
+
+        private Message(Mutation mutation) {
+            this.mutation = mutation;
+        }
+    }
+
+    /**
+     * Changes drained from one league's mailbox, in the order they were queued.
+     */
+    static final class Batch {
+
+        private final List<Message> messages = new ArrayList<>();
+
+        // applies each change in turn; one that throws fails on its own. True if any applied.
+        boolean applyTo(League league) {
+            boolean changed = false;
+            for (Message message : messages) {
+                try {
+                    message.mutation.apply(league);
+                    message.applied = true;
+                    changed = true;
+                } catch (RuntimeException e) {
+                    message.done.completeExceptionally(e);
+                }
+            }
+            return changed;
+        }
+
+        // completes the changes that applied, once they are stored
+        void complete() {
+            for (Message message : messages) {
+                if (message.applied) {
+                    message.done.complete(null);
+                }
+            }
+        }
+
+        // fails every change not already failed
+        void fail(RuntimeException e) {
+            for (Message message : messages) {
+                message.done.completeExceptionally(e);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,85 @@
+package gamesleague;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Reverse index from keys listed by leagues, such as member ids or invited emails, to
+ * the ids of the leagues listing them.
+ * <p>
+ * The index is kept in step by passing a league's current keys to {@link #update}
+ * whenever they may have changed; only the difference from what was indexed before
+ * is applied. Leagues are listed for a key in the order they were indexed under it.
+ * Not thread-safe.
+ */
+public class LeagueIndex<K> implements Serializable {
+
+    private final HashMap<K, LinkedHashSet<Integer>> leaguesByKey = new HashMap<>();
+    // the keys each league is currently indexed under
+    private final IntMap<Set<K>> keysByLeague = new IntMap<>();
+
+    // indexes the league under exactly the given keys
+    public void update(int leagueId, Collection<K> keys) {
+        Set<K> indexed = keysByLeague.get(leagueId);
+        if (indexed == null) {
+            indexed = new LinkedHashSet<>();
+            keysByLeague.put(leagueId, indexed);
+        } else if (indexed.size() == keys.size() && indexed.containsAll(keys)) {
+            return;
+        }
+        Set<K> current = new LinkedHashSet<>(keys);
+        for (K key : indexed) {
+            if (!current.contains(key)) {
+                unlink(key, leagueId);
+            }
+        }
+        for (K key : current) {
+            if (!indexed.contains(key)) {
+                leaguesByKey.computeIfAbsent(key, k -> new LinkedHashSet<>()).add(leagueId);
+            }
+        }
+        keysByLeague.put(leagueId, current);
+    }
+
+    // drops the league from every key it was indexed under
+    public void remove(int leagueId) {
+        Set<K> indexed = keysByLeague.remove(leagueId);
+        if (indexed != null) {
+            for (K key : indexed) {
+                unlink(key, leagueId);
+            }
+        }
+    }
+
+    // the ids of the leagues listing the key, read-only
+    public Set<Integer> leaguesOf(K key) {
+        LinkedHashSet<Integer> leagues = leaguesByKey.get(key);
+        return leagues == null ? Collections.emptySet() : Collections.unmodifiableSet(leagues);
+    }
+
+    // the number of keys the league is indexed under
+    public int keyCount(int leagueId) {
+        Set<K> indexed = keysByLeague.get(leagueId);
+        return indexed == null ? 0 : indexed.size();
+    }
+
+    public void clear() {
+        leaguesByKey.clear();
+        keysByLeague.clear();
+    }
+
+    private void unlink(K key, int leagueId) {
+        LinkedHashSet<Integer> leagues = leaguesByKey.get(key);
+        if (leagues != null) {
+            leagues.remove(leagueId);
+            if (leagues.isEmpty()) {
+                leaguesByKey.remove(key);
+            }
+        }
+    }
+
+}
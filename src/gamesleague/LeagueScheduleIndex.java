@@ -0,0 +1,163 @@
+package gamesleague;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.PrimitiveIterator;
+import java.util.TreeMap;
+
+/**
+ * Index of leagues by start and end date, answering which leagues run over a range of
+ * days and which are pending, in progress or closed on a given day.
+ * <p>
+ * Leagues are kept in two sorted maps, one keyed by start day and one by end day, plus
+ * sets of the leagues with no start or no end date yet. A league's status on a day only
+ * depends on how its dates compare with that day, so each status is one range of a map,
+ * filtered on the other date where needed. The ranges read leave out the leagues that
+ * closed before the day, which soon make up most of them.
+ * Not thread-safe.
+ */
+public class LeagueScheduleIndex implements Serializable {
+
+    private final TreeMap<Long, IntSet> leaguesByStart = new TreeMap<>();
+    private final TreeMap<Long, IntSet> leaguesByEnd = new TreeMap<>();
+    private final IntSet unscheduled = new IntSet();
+    private final IntSet openEnded = new IntSet();
+    // the {start, end} dates each league is currently indexed under
+    private final IntMap<LocalDate[]> datesByLeague = new IntMap<>();
+
+    // indexes the league under the given dates, either of which may be null
+    public void update(int leagueId, LocalDate start, LocalDate end) {
+        LocalDate[] indexed = datesByLeague.get(leagueId);
+        if (indexed != null && Objects.equals(indexed[0], start) && Objects.equals(indexed[1], end)) {
+            return;
+        }
+        remove(leagueId);
+        if (start == null) {
+            unscheduled.add(leagueId);
+        } else {
+            leaguesByStart.computeIfAbsent(start.toEpochDay(), day -> new IntSet()).add(leagueId);
+        }
+        if (end == null) {
+            openEnded.add(leagueId);
+        } else {
+            leaguesByEnd.computeIfAbsent(end.toEpochDay(), day -> new IntSet()).add(leagueId);
+        }
+        datesByLeague.put(leagueId, new LocalDate[] {start, end});
+    }
+
+    public void remove(int leagueId) {
+        LocalDate[] indexed = datesByLeague.remove(leagueId);
+        if (indexed == null) {
+            return;
+        }
+        if (indexed[0] == null) {
+            unscheduled.remove(leagueId);
+        } else {
+            unlink(leaguesByStart, indexed[0].toEpochDay(), leagueId);
+        }
+        if (indexed[1] == null) {
+            openEnded.remove(leagueId);
+        } else {
+            unlink(leaguesByEnd, indexed[1].toEpochDay(), leagueId);
+        }
+    }
+
+    public void clear() {
+        leaguesByStart.clear();
+        leaguesByEnd.clear();
+        unscheduled.clear();
+        openEnded.clear();
+        datesByLeague.clear();
+    }
+
+    /**
+     * Returns the ids, in ascending order, of the leagues with the given status on the day,
+     * decided as {@link GamesLeague#getLeagueStatus} does: PENDING before the start date or
+     * with none, IN_PROGRESS from the start date until the day before the end date, CLOSED
+     * after the end date. A league ending on the day itself has none of them there.
+     */
+    public int[] leaguesWithStatus(Status status, LocalDate day) {
+        long today = day.toEpochDay();
+        IntSet found = new IntSet();
+        switch (status) {
+            case PENDING:
+                found.addAll(unscheduled);
+                for (IntSet leagues : leaguesByStart.tailMap(today, false).values()) {
+                    found.addAll(leagues);
+                }
+                break;
+            case IN_PROGRESS:
+                addStartedBy(found, openEnded, today);
+                for (IntSet leagues : leaguesByEnd.tailMap(today, false).values()) {
+                    addStartedBy(found, leagues, today);
+                }
+                break;
+            case CLOSED:
+                for (IntSet leagues : leaguesByEnd.headMap(today, false).values()) {
+                    addStartedBy(found, leagues, today);
+                }
+                break;
+        }
+        return sorted(found);
+    }
+
+    // ids of the leagues running on at least one day from first to last, both included;
+    // a league with no end date runs on from its start
+    public int[] leaguesRunningBetween(LocalDate first, LocalDate last) {
+        long to = last.toEpochDay();
+        IntSet found = new IntSet();
+        addStartedBy(found, openEnded, to);
+        for (IntSet leagues : leaguesByEnd.tailMap(first.toEpochDay(), true).values()) {
+            addStartedBy(found, leagues, to);
+        }
+        return sorted(found);
+    }
+
+    // ids of the leagues starting from first to last, both included
+    public int[] leaguesStartingBetween(LocalDate first, LocalDate last) {
+        return between(leaguesByStart, first, last);
+    }
+
+    // ids of the leagues ending from first to last, both included
+    public int[] leaguesEndingBetween(LocalDate first, LocalDate last) {
+        return between(leaguesByEnd, first, last);
+    }
+
+    // adds the leagues that have started by the given day
+    private void addStartedBy(IntSet found, IntSet leagues, long day) {
+        for (PrimitiveIterator.OfInt ids = leagues.iterator(); ids.hasNext(); ) {
+            int leagueId = ids.nextInt();
+            LocalDate start = datesByLeague.get(leagueId)[0];
+            if (start != null && start.toEpochDay() <= day) {
+                found.add(leagueId);
+            }
+        }
+    }
+
+    private static int[] between(TreeMap<Long, IntSet> leaguesByDay, LocalDate first, LocalDate last) {
+        IntSet found = new IntSet();
+        if (!first.isAfter(last)) {
+            for (IntSet leagues : leaguesByDay.subMap(first.toEpochDay(), true, last.toEpochDay(), true).values()) {
+                found.addAll(leagues);
+            }
+        }
+        return sorted(found);
+    }
+
+    private static int[] sorted(IntSet ids) {
+        int[] values = ids.toIntArray();
+        Arrays.sort(values);
+        return values;
+    }
+
+    private static void unlink(TreeMap<Long, IntSet> leaguesByDay, long day, int leagueId) {
+        IntSet leagues = leaguesByDay.get(day);
+        leagues.remove(leagueId);
+        if (leagues.isEmpty()) {
+            leaguesByDay.remove(day);
+        }
+    }
+
+}
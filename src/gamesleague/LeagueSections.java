@@ -0,0 +1,80 @@
+package gamesleague;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Location of a league's dayScores and gameReports inside a mapped snapshot,
+ * kept by the league until the sections are first used.
+ * A delta snapshot leaves out sections that did not change; their length is
+ * {@link #ABSENT} until the league inherits them from its previous state.
+ */
+class LeagueSections {
+
+    static final int ABSENT = -1;
+
+    private final ByteBuffer scores;
+    private final int scoresOffset;
+    private final int scoresLength;
+    private final ByteBuffer reports;
+    private final int reportsOffset;
+    private final int reportsLength;
+
+    LeagueSections(ByteBuffer scores, int scoresOffset, int scoresLength,
+                   ByteBuffer reports, int reportsOffset, int reportsLength) {
+        this.scores = scores;
+        this.scoresOffset = scoresOffset;
+        this.scoresLength = scoresLength;
+        this.reports = reports;
+        this.reportsOffset = reportsOffset;
+        this.reportsLength = reportsLength;
+    }
+
+    boolean hasDayScores() {
+        return scoresLength != ABSENT;
+    }
+
+    boolean hasGameReports() {
+        return reportsLength != ABSENT;
+    }
+
+    // takes dayScores from one set of sections and gameReports from another, either may be null
+    static LeagueSections combine(LeagueSections scoresFrom, LeagueSections reportsFrom) {
+        if (scoresFrom == null && reportsFrom == null) {
+            return null;
+        }
+        return new LeagueSections(
+                scoresFrom == null ? null : scoresFrom.scores,
+                scoresFrom == null ? 0 : scoresFrom.scoresOffset,
+                scoresFrom == null ? ABSENT : scoresFrom.scoresLength,
+                reportsFrom == null ? null : reportsFrom.reports,
+                reportsFrom == null ? 0 : reportsFrom.reportsOffset,
+                reportsFrom == null ? ABSENT : reportsFrom.reportsLength);
+    }
+
+    byte[] dayScoresBytes() {
+        return copy(scores, scoresOffset, scoresLength);
+    }
+
+    byte[] gameReportsBytes() {
+        return copy(reports, reportsOffset, reportsLength);
+    }
+
+    DataInput dayScoresInput() {
+        return new DataInputStream(new ByteArrayInputStream(dayScoresBytes()));
+    }
+
+    DataInput gameReportsInput() {
+        return new DataInputStream(new ByteArrayInputStream(gameReportsBytes()));
+    }
+
+    // absolute get, so leagues sharing one mapped buffer never disturb each other's position
+    private static byte[] copy(ByteBuffer buffer, int offset, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(offset, bytes);
+        return bytes;
+    }
+
+}
@@ -0,0 +1,144 @@
+package gamesleague;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable state of a {@link League} as of its last completed change.
+ * <p>
+ * A league publishes a new view at the end of every operation that changes it (see
+ * {@link League#publish}), so a view never shows part of an operation. Readers take the
+ * league's current view without any lock and may keep using it while the league moves
+ * on. A new view shares everything that did not change with the one before, so only the
+ * changed sections are copied.
+ * <p>
+ * The day scores of a league restored from a checkpoint are only decoded on first use,
+ * under the league's lock; until then {@link #hasDayScores} is false.
+ */
+public final class LeagueView {
+
+    private final int id;
+    private final long version;
+    private final String name;
+    private final GameType gameType;
+    private final LocalDate startDate;
+    private final LocalDate endDate;
+    private final LocalDate closeDate;
+    private final Status leagueStatus;
+    // read-only IntSets, in insertion order
+    private final IntSet ownerIds;
+    private final IntSet playerIds;
+    private final IntSet playerInvites;
+    // unmodifiable; the invited emails as entered, and in the form the store indexes them
+    private final Collection<String> emailInvites;
+    private final Set<String> emailInviteKeys;
+    private final Map<Integer, Status> playerStatus;
+    // unmodifiable, with score arrays that are never changed; null until decoded
+    private final Map<Integer, int[]> dayScores;
+
+    LeagueView(int id, long version, String name, GameType gameType, LocalDate startDate, LocalDate endDate,
+            LocalDate closeDate, Status leagueStatus, IntSet ownerIds, IntSet playerIds,
+            IntSet playerInvites, Collection<String> emailInvites, Set<String> emailInviteKeys,
+            Map<Integer, Status> playerStatus, Map<Integer, int[]> dayScores) {
+        this.id = id;
+        this.version = version;
+        this.name = name;
+        this.gameType = gameType;
+        this.startDate = startDate;
+        this.endDate = endDate;
+        this.closeDate = closeDate;
+        this.leagueStatus = leagueStatus;
+        this.ownerIds = ownerIds;
+        this.playerIds = playerIds;
+        this.playerInvites = playerInvites;
+        this.emailInvites = emailInvites;
+        this.emailInviteKeys = emailInviteKeys;
+        this.playerStatus = playerStatus;
+        this.dayScores = dayScores;
+    }
+
+    public int getId() {
+        return this.id;
+    }
+
+    // the league's version when the view was published (see League#getVersion)
+    public long getVersion() {
+        return this.version;
+    }
+
+    public String getLeagueName() {
+        return this.name;
+    }
+
+    public GameType getGameType() {
+        return this.gameType;
+    }
+
+    public LocalDate getStartDate() {
+        return this.startDate;
+    }
+
+    public LocalDate getEndDate() {
+        return this.endDate;
+    }
+
+    public LocalDate getCloseDate() {
+        return this.closeDate;
+    }
+
+    public Status getLeagueStatus() {
+        return this.leagueStatus;
+    }
+
+    // the owners, read-only
+    public IntSet getOwnerIds() {
+        return this.ownerIds;
+    }
+
+    // the players in the order they joined, read-only
+    public IntSet getLeaguePlayerIds() {
+        return this.playerIds;
+    }
+
+    // the invited players, read-only
+    public IntSet getPlayerInvites() {
+        return this.playerInvites;
+    }
+
+    // the invited emails as they were entered, read-only
+    public Collection<String> getEmailInvites() {
+        return this.emailInvites;
+    }
+
+    Set<String> getEmailInviteKeys() {
+        return this.emailInviteKeys;
+    }
+
+    // each player's status, read-only
+    public Map<Integer, Status> getPlayerStatus() {
+        return this.playerStatus;
+    }
+
+    // false while the day scores are still only in the mapped checkpoint
+    public boolean hasDayScores() {
+        return this.dayScores != null;
+    }
+
+    // a copy of the scores registered for the day, or null if there are none
+    public int[] getDayScores(int day) {
+        int[] scores = dayScores.get(day);
+        return scores == null ? null : scores.clone();
+    }
+
+    // the days with registered scores, read-only
+    public Set<Integer> getScoredDays() {
+        return dayScores.keySet();
+    }
+
+    Map<Integer, int[]> getDayScoreMap() {
+        return this.dayScores;
+    }
+
+}
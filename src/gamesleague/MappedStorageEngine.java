@@ -0,0 +1,181 @@
+package gamesleague;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Storage engine checkpointing to memory-mapped snapshots ({@link SnapshotShards}).
+ * <p>
+ * The first checkpoint of a folder writes a full sharded base; later ones only write a
+ * delta of the players and leagues changed since the previous checkpoint, leaving out the
+ * dayScores and gameReports of leagues whose scores or reports did not change (see
+ * {@link League#getDirtySections}), plus the ids of the leagues removed meanwhile. Once {@value #MERGE_THRESHOLD} deltas have built up
+ * they are merged into the base on a background thread.
+ * <p>
+ * League headers are always resident, while dayScores and gameReports are decoded from the
+ * mapped checkpoint on first use. After each checkpoint those sections are released again
+ * for leagues that have not used them for {@value #SECTION_IDLE_MILLIS} ms and have no
+ * unsaved changes to them (see {@link #reclaimIdleSections}).
+ * <p>
+ * Save folders from before sharding are still read from GamesLeague.snap, or from
+ * Players.ser / Leagues.ser, until the first checkpoint.
+ */
+public class MappedStorageEngine extends JournalledStorageEngine {
+
+    // single-file checkpoint used before sharding, read only
+    public static final String SNAPSHOT_FILE = "GamesLeague.snap";
+    public static final int MERGE_THRESHOLD = 8;
+    public static final long SECTION_IDLE_MILLIS = 60000;
+
+    // entities changed since the last checkpoint, or everything when the base must be rewritten
+    private final LinkedHashMap<Integer, Player> dirtyPlayers = new LinkedHashMap<>();
+    private final LinkedHashMap<Integer, League> dirtyLeagues = new LinkedHashMap<>();
+    private final LinkedHashSet<Integer> removedLeagues = new LinkedHashSet<>();
+    private boolean fullCheckpoint;
+    private ExecutorService merger;
+    private final AtomicBoolean mergeQueued = new AtomicBoolean();
+    // held by a merge and by a full checkpoint, which must not overlap
+    private final Object mergeLock = new Object();
+
+    public MappedStorageEngine(String saveDir, FsyncPolicy fsyncPolicy, int batchSize, long flushIntervalMillis) {
+        super(saveDir, fsyncPolicy, batchSize, flushIntervalMillis);
+    }
+
+    protected void loadCheckpoint() throws IOException {
+        if (SnapshotShards.exists(saveDir)) {
+            Snapshot checkpoint = SnapshotShards.read(saveDir);
+            store.setContents(checkpoint.getPlayers(), checkpoint.getLeagues());
+        } else if (new File(saveDir, SNAPSHOT_FILE).exists()) {
+            Snapshot snapshot = Snapshot.read(saveDir + "/" + SNAPSHOT_FILE);
+            store.setContents(snapshot.getPlayers(), snapshot.getLeagues());
+            fullCheckpoint = true;
+        } else {
+            store.setContents(FileStorageEngine.readList(saveDir + "/" + FileStorageEngine.PLAYERS_FILE),
+                    FileStorageEngine.readList(saveDir + "/" + FileStorageEngine.LEAGUES_FILE));
+            fullCheckpoint = true;
+        }
+    }
+
+    // writes the changes since the last checkpoint as a delta, or a full base when needed
+    protected void writeCheckpoint() throws IOException {
+        int deltaCount = 0;
+        if (fullCheckpoint) {
+            synchronized (mergeLock) {
+                SnapshotShards.write(saveDir, store.getPlayers(), store.getLeagues());
+            }
+        } else if (!dirtyPlayers.isEmpty() || !dirtyLeagues.isEmpty() || !removedLeagues.isEmpty()) {
+            deltaCount = SnapshotShards.writeDelta(saveDir, dirtyPlayers.values(), dirtyLeagues.values(),
+                    removedLeagues);
+        }
+        for (League l : fullCheckpoint ? store.getLeagues() : dirtyLeagues.values()) {
+            l.markClean();
+        }
+        dirtyPlayers.clear();
+        dirtyLeagues.clear();
+        removedLeagues.clear();
+        fullCheckpoint = false;
+        if (deltaCount >= MERGE_THRESHOLD) {
+            startMerge();
+        }
+        reclaimIdleSections(SECTION_IDLE_MILLIS);
+    }
+
+    protected void changedSinceCheckpoint(Player player) {
+        dirtyPlayers.put(player.getId(), player);
+    }
+
+    protected void changedSinceCheckpoint(League league) {
+        dirtyLeagues.put(league.getId(), league);
+    }
+
+    // the next delta carries the removal as a tombstone
+    protected void removedSinceCheckpoint(int leagueId) {
+        dirtyLeagues.remove(leagueId);
+        removedLeagues.add(leagueId);
+    }
+
+    protected void replacedSinceCheckpoint() {
+        fullCheckpoint = true;
+    }
+
+    /**
+     * Folds the delta chain into the base shards, waiting for a background merge in progress.
+     *
+     * @throws UncheckedIOException If the merge failed; the deltas stay in the chain.
+     */
+    public void mergeDeltas() {
+        synchronized (mergeLock) {
+            try {
+                SnapshotShards.merge(saveDir);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Releases the decoded dayScores and gameReports of leagues that have not used them
+     * for idleMillis, where they are unchanged since the last checkpoint. They are read
+     * back from the mapped checkpoint when next used.
+     * Returns the number of leagues that released anything.
+     */
+    public synchronized int reclaimIdleSections(long idleMillis) {
+        long idleSince = System.currentTimeMillis() - idleMillis;
+        int released = 0;
+        for (League l : store.getLeagues()) {
+            if (l.releaseIdleSections(idleSince)) {
+                released++;
+            }
+        }
+        return released;
+    }
+
+    // flushes anything pending and stops the background flusher and merger
+    public void close() {
+        super.close();
+        ExecutorService merger;
+        synchronized (this) {
+            merger = this.merger;
+            this.merger = null;
+        }
+        if (merger != null) {
+            merger.shutdown();
+            try {
+                merger.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // merges on a background thread so checkpoints never wait for it
+    private void startMerge() {
+        if (!mergeQueued.compareAndSet(false, true)) {
+            return;
+        }
+        if (merger == null) {
+            merger = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "gamesleague-merger");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        merger.execute(() -> {
+            mergeQueued.set(false);
+            try {
+                mergeDeltas();
+            } catch (UncheckedIOException e) {
+                // the deltas stay in the chain and are merged next time
+                backgroundFailed(e);
+            }
+        });
+    }
+
+}
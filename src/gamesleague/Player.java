@@ -1,7 +1,6 @@
 package gamesleague;
 
 import java.io.*;
-import java.util.ArrayList;
 import java.time.LocalDate;
 
 public class Player implements Serializable {
@@ -12,89 +11,48 @@ public class Player implements Serializable {
     private String name;
     private String phone;
     private LocalDate joinDate;
+    // goes up by one with every stored change (see GamesLeagueStore#updatePlayer); saved with
+    // the player, so a version seen before a restart is never handed out again
+    private volatile long version;
 
-    public Player(String email, String displayName, String name) {
-        this.email = email;
-        this.displayName = displayName;
-        this.name = name;
-        this.joinDate = LocalDate.now();
-        setId();
+    // the id comes from the store the player is for (see GamesLeagueStore#nextPlayerId)
+    public Player(int id, String email, String displayName, String name) {
+        this(id, email, displayName, name, null);
     }
 
-    public Player(String email, String displayName, String name, String phone) {
+    public Player(int id, String email, String displayName, String name, String phone) {
+        this.id = id;
         this.email = email;
         this.displayName = displayName;
         this.name = name;
         this.phone = phone;
         this.joinDate = LocalDate.now();
-        setId();
-    }
-
-    public void addPlayerToList() {
-        ArrayList<Player> playerList = getPlayers();
-        playerList.add(this);
-        serialisePlayers(playerList); // serialising new list of players containing the current player into memory
     }
 
-    public static ArrayList<Player> getPlayers() {
-        // De-serialising an ArrayList of Player objects from 'Players.ser' 
-        try (ObjectInputStream playerIn = new ObjectInputStream(new FileInputStream("./src/gamesleague/save/Players.ser"))) {
-            return (ArrayList<Player>) playerIn.readObject(); // reading value from bytestream
-        } catch (IOException | ClassNotFoundException e) {
-            // if the code reaches this point, the file is empty so we serialise an empty Player ArrayList to hold all Player objects
-            serialisePlayers(new ArrayList<Player>()); 
-        }
-        return new ArrayList<Player>(); // if there are no players stored in 'Players.ser', an empty list is returned
-    }
-
-    public static void serialisePlayers(ArrayList<Player> players) {
-        // Serialising the 'players' parameter to be stored in 'Players.ser'
-        try (ObjectOutputStream playerOut = new ObjectOutputStream(new FileOutputStream("./src/gamesleague/save/Players.ser"))) {
-            playerOut.writeObject(players); // writing value of 'players' to bytestream
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+    // used by read() to rebuild a stored player
+    private Player() {
     }
 
-    public static int getNextId() {
-        // De-serialising nextId from 'nextId.ser'
-        try (ObjectInputStream nextIdIn = new ObjectInputStream(new FileInputStream("./src/gamesleague/save/nextId.ser"))) {
-            return (int) nextIdIn.readObject(); // reading value from bytestream
-        } catch (IOException | ClassNotFoundException e) {
-            System.out.println("nextId.ser not found or unreadable. Starting from ID 0.");
-            return 0;
-        }
-
+    // getters and setters
+    public long getVersion() {
+        return this.version;
     }
 
-    public static void serialiseNextId(int nextId) {
-        // Serialising the 'nextId' parameter to be stored in 'nextId.ser'
-        try (ObjectOutputStream nextIdOut = new ObjectOutputStream(new FileOutputStream("./src/gamesleague/save/nextId.ser"))) {
-            nextIdOut.writeObject(nextId); // writing value of 'nextId' to bytestream
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+    // only called by the thread changing the player, under its lock
+    void nextVersion() {
+        this.version++;
     }
 
-    // getters and setters
     public int getId() {
         return this.id;
     }
 
-    // ensure unique, non-reassignable IDs using nextId.ser
-    private void setId() {
-        int newId = getNextId();
-        this.id = newId;
-        serialiseNextId(newId + 1);
-    }
-
     public String getEmail() {
         return this.email;
     }
 
     public void setEmail(String email) {
         this.email = email;
-        serialisePlayers(getPlayers()); // Writes changes to object into memory
     }
 
     public String getDisplayName() {
@@ -103,7 +61,6 @@ public class Player implements Serializable {
 
     public void setDisplayName(String displayName) {
         this.displayName = displayName;
-        serialisePlayers(getPlayers());
     }
 
     public String getName() {
@@ -112,7 +69,6 @@ public class Player implements Serializable {
 
     public void setName(String name) {
         this.name = name;
-        serialisePlayers(getPlayers());
     }
 
     public String getPhone() {
@@ -121,11 +77,36 @@ public class Player implements Serializable {
 
     public void setPhone(String phone) {
         this.phone = phone;
-        serialisePlayers(getPlayers());
     }
 
     public LocalDate getJoinDate() {
         return this.joinDate;
     }
 
+    // binary form used by EntityCodec
+    void write(DataOutput out) throws IOException {
+        EntityCodec.writeVarInt(out, id);
+        EntityCodec.writeString(out, email);
+        EntityCodec.writeString(out, displayName);
+        EntityCodec.writeString(out, name);
+        EntityCodec.writeString(out, phone);
+        EntityCodec.writeDay(out, joinDate);
+        EntityCodec.writeVarLong(out, version);
+    }
+
+    // codecVersion is the EntityCodec version the player was written with
+    static Player read(DataInput in, int codecVersion) throws IOException {
+        Player player = new Player();
+        player.id = EntityCodec.readVarInt(in);
+        player.email = EntityCodec.readString(in);
+        player.displayName = EntityCodec.readString(in);
+        player.name = EntityCodec.readString(in);
+        player.phone = EntityCodec.readString(in);
+        player.joinDate = EntityCodec.readDay(in);
+        if (codecVersion >= EntityCodec.VERSIONED_ENTITIES) {
+            player.version = EntityCodec.readVarLong(in);
+        }
+        return player;
+    }
+
 }
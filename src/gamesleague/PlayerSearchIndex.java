@@ -0,0 +1,305 @@
+package gamesleague;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.PrimitiveIterator;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Search index over players' display names and names.
+ * <p>
+ * Names are split into lower-case words (terms). A sorted dictionary maps each term to
+ * the players using it, which answers prefix queries by walking the terms that start
+ * with the query. Fuzzy queries look for terms within a small edit distance, where
+ * swapping two neighbouring letters counts as one edit. The terms starting with the
+ * query word's first letter are walked as a trie, dropping a prefix as soon as no term
+ * starting with it can be close enough, so only a small part of the dictionary is visited.
+ * Not thread-safe.
+ */
+public class PlayerSearchIndex implements Serializable {
+
+    // at most this many dictionary terms are taken as prefix matches of one fuzzy query word
+    private static final int MAX_PREFIX_TERMS = 64;
+
+    private final TreeMap<String, IntSet> playersByTerm = new TreeMap<>();
+    // the terms each player is currently indexed under
+    private final IntMap<String[]> termsByPlayer = new IntMap<>();
+
+    // indexes the player under the words of the given names, replacing what was indexed before
+    public void update(int playerId, String... names) {
+        String[] terms = terms(names);
+        String[] indexed = termsByPlayer.get(playerId);
+        if (indexed != null && Arrays.equals(indexed, terms)) {
+            return;
+        }
+        remove(playerId);
+        for (String term : terms) {
+            playersByTerm.computeIfAbsent(term, t -> new IntSet()).add(playerId);
+        }
+        termsByPlayer.put(playerId, terms);
+    }
+
+    public void remove(int playerId) {
+        String[] indexed = termsByPlayer.remove(playerId);
+        if (indexed == null) {
+            return;
+        }
+        for (String term : indexed) {
+            IntSet players = playersByTerm.get(term);
+            players.remove(playerId);
+            if (players.isEmpty()) {
+                playersByTerm.remove(term);
+            }
+        }
+    }
+
+    public void clear() {
+        playersByTerm.clear();
+        termsByPlayer.clear();
+    }
+
+    /**
+     * Returns up to limit players with, for every word of the query, a word starting with it.
+     * Players are walked in the dictionary order of the matching words, so a word equal to
+     * the query comes before longer ones.
+     */
+    public int[] prefixSearch(String query, int limit) {
+        String[] words = terms(query);
+        LinkedHashSet<Integer> found = new LinkedHashSet<>();
+        if (words.length == 0 || limit <= 0) {
+            return new int[0];
+        }
+        // the longest word matches the fewest terms, the others are checked per player
+        String driver = words[0];
+        for (String word : words) {
+            if (word.length() > driver.length()) {
+                driver = word;
+            }
+        }
+        for (Map.Entry<String, IntSet> entry : playersByTerm.subMap(driver, true, driver + Character.MAX_VALUE, false).entrySet()) {
+            for (PrimitiveIterator.OfInt players = entry.getValue().iterator(); players.hasNext(); ) {
+                int playerId = players.nextInt();
+                if (hasWordsStartingWith(termsByPlayer.get(playerId), words) && found.add(playerId)
+                        && found.size() == limit) {
+                    return toArray(found);
+                }
+            }
+        }
+        return toArray(found);
+    }
+
+    /**
+     * Returns up to limit players whose words best match the words of the query, allowing
+     * for typing errors. Each query word scores the best of its matches among the player's
+     * words: equal, a prefix, or within one edit (two for words of six or more letters) with
+     * the first letter right.
+     * Players are ordered by total score, then by id.
+     */
+    public int[] fuzzySearch(String query, int limit) {
+        String[] words = terms(query);
+        if (words.length == 0 || limit <= 0) {
+            return new int[0];
+        }
+        if (words.length == 1) {
+            return bestPlayers(matchingTerms(words[0]), limit);
+        }
+        // per player, the best score reached by each query word
+        IntMap<double[]> scores = new IntMap<>();
+        for (int w = 0; w < words.length; w++) {
+            for (Map.Entry<String, Double> match : matchingTerms(words[w]).entrySet()) {
+                double score = match.getValue();
+                for (PrimitiveIterator.OfInt players = playersByTerm.get(match.getKey()).iterator(); players.hasNext(); ) {
+                    int playerId = players.nextInt();
+                    double[] best = scores.get(playerId);
+                    if (best == null) {
+                        best = new double[words.length];
+                        scores.put(playerId, best);
+                    }
+                    best[w] = Math.max(best[w], score);
+                }
+            }
+        }
+
+        // keep the top limit players in a min-heap on (score, -id)
+        PriorityQueue<double[]> top = new PriorityQueue<>(limit + 1,
+                (a, b) -> a[0] != b[0] ? Double.compare(a[0], b[0]) : Double.compare(b[1], a[1]));
+        scores.forEachKey(playerId -> {
+            double total = 0;
+            for (double score : scores.get(playerId)) {
+                total += score;
+            }
+            top.add(new double[] {total, playerId});
+            if (top.size() > limit) {
+                top.poll();
+            }
+        });
+        int[] result = new int[top.size()];
+        for (int i = result.length - 1; i >= 0; i--) {
+            result[i] = (int) top.poll()[1];
+        }
+        return result;
+    }
+
+    // for a one-word query, a player's score is that of its best matching term, so the
+    // players of the best terms are taken a score at a time until there are enough
+    private int[] bestPlayers(HashMap<String, Double> matches, int limit) {
+        TreeMap<Double, IntSet> playersByScore = new TreeMap<>(Collections.reverseOrder());
+        for (Map.Entry<String, Double> match : matches.entrySet()) {
+            playersByScore.computeIfAbsent(match.getValue(), score -> new IntSet()).addAll(playersByTerm.get(match.getKey()));
+        }
+        IntSet found = new IntSet();
+        for (IntSet players : playersByScore.values()) {
+            int[] ids = players.toIntArray();
+            Arrays.sort(ids);
+            for (int i = 0; i < ids.length && found.size() < limit; i++) {
+                found.add(ids[i]);
+            }
+            if (found.size() == limit) {
+                break;
+            }
+        }
+        return found.toIntArray();
+    }
+
+    // dictionary terms matching one query word, with their score
+    private HashMap<String, Double> matchingTerms(String word) {
+        HashMap<String, Double> matches = new HashMap<>();
+        int prefixTerms = 0;
+        for (String term : playersByTerm.subMap(word, true, word + Character.MAX_VALUE, false).keySet()) {
+            matches.put(term, term.equals(word) ? 1.0 : 0.8);
+            if (++prefixTerms == MAX_PREFIX_TERMS) {
+                break;
+            }
+        }
+
+        // like most spelling correction, trust the first letter: only terms starting with it are looked at
+        walk(word, word.length() >= 6 ? 2 : 1, word.charAt(0), matches);
+        return matches;
+    }
+
+    /**
+     * Adds the terms starting with first that are within maxEdits of the word, unless already
+     * matched. The terms are visited in order, keeping one row of the optimal string alignment
+     * table per character of the current term, so a term only computes the rows past the
+     * prefix it shares with the one before. When a prefix's row is all over maxEdits, every
+     * term starting with it is skipped at once.
+     */
+    private void walk(String word, int maxEdits, char first, HashMap<String, Double> matches) {
+        ArrayList<int[]> rows = new ArrayList<>();
+        int[] firstRow = new int[word.length() + 1];
+        for (int j = 0; j <= word.length(); j++) {
+            firstRow[j] = j;
+        }
+        rows.add(firstRow);
+        String end = String.valueOf((char) (first + 1));
+        Iterator<String> terms = playersByTerm.subMap(String.valueOf(first), end).keySet().iterator();
+        String previous = "";
+        String term = terms.hasNext() ? terms.next() : null;
+        while (term != null) {
+            int depth = 0;
+            while (depth < previous.length() && depth < term.length() && previous.charAt(depth) == term.charAt(depth)) {
+                depth++;
+            }
+            boolean pruned = false;
+            while (depth < term.length()) {
+                if (rows.size() == depth + 1) {
+                    rows.add(new int[word.length() + 1]);
+                }
+                nextRow(word, term, depth, rows.get(depth), depth > 0 ? rows.get(depth - 1) : null, rows.get(depth + 1));
+                depth++;
+                if (min(rows.get(depth)) > maxEdits) {
+                    pruned = true;
+                    break;
+                }
+            }
+            previous = term;
+            if (!pruned) {
+                int distance = rows.get(depth)[word.length()];
+                if (distance <= maxEdits) {
+                    matches.putIfAbsent(term, 0.6 - 0.1 * distance);
+                }
+                term = terms.hasNext() ? terms.next() : null;
+                continue;
+            }
+            // jump past every term starting with the first depth characters of this one
+            String skip = term.substring(0, depth - 1) + (char) (term.charAt(depth - 1) + 1);
+            terms = playersByTerm.subMap(skip, end).keySet().iterator();
+            term = terms.hasNext() ? terms.next() : null;
+        }
+    }
+
+    // fills next with the table row for the first depth + 1 characters of the term, from the
+    // rows for depth and depth - 1 characters
+    private static void nextRow(String word, String term, int depth, int[] row, int[] previousRow, int[] next) {
+        char c = term.charAt(depth);
+        next[0] = depth + 1;
+        for (int j = 1; j <= word.length(); j++) {
+            int substitute = row[j - 1] + (word.charAt(j - 1) == c ? 0 : 1);
+            next[j] = Math.min(substitute, Math.min(row[j], next[j - 1]) + 1);
+            if (previousRow != null && j > 1 && word.charAt(j - 2) == c
+                    && word.charAt(j - 1) == term.charAt(depth - 1)) {
+                next[j] = Math.min(next[j], previousRow[j - 2] + 1);
+            }
+        }
+    }
+
+    private static int min(int[] row) {
+        int min = row[0];
+        for (int value : row) {
+            min = Math.min(min, value);
+        }
+        return min;
+    }
+
+    // the distinct lower-case words (runs of letters and digits) of the names, sorted
+    static String[] terms(String... names) {
+        TreeSet<String> terms = new TreeSet<>();
+        for (String name : names) {
+            if (name == null) {
+                continue;
+            }
+            String lower = name.toLowerCase(Locale.ROOT);
+            int start = -1;
+            for (int i = 0; i <= lower.length(); i++) {
+                boolean inWord = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+                if (inWord && start < 0) {
+                    start = i;
+                } else if (!inWord && start >= 0) {
+                    terms.add(lower.substring(start, i));
+                    start = -1;
+                }
+            }
+        }
+        return terms.toArray(new String[0]);
+    }
+
+    private static boolean hasWordsStartingWith(String[] terms, String[] words) {
+        for (String word : words) {
+            boolean matched = false;
+            for (String term : terms) {
+                if (term.startsWith(word)) {
+                    matched = true;
+                    break;
+                }
+            }
+            if (!matched) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int[] toArray(LinkedHashSet<Integer> ids) {
+        return ids.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+}
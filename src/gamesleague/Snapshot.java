@@ -0,0 +1,240 @@
+package gamesleague;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Memory-mapped snapshot of all players and leagues.
+ * <p>
+ * Layout:
+ * <pre>
+ *   header    64 bytes: magic, version, player count, league count,
+ *             then the file offsets of the index and of each section and the file length
+ *   index     per player: id, offset, length                      (12 bytes)
+ *             per league: id, header offset/length, scores offset/length,
+ *                         reports offset/length                   (28 bytes)
+ *   players   EntityCodec player records
+ *   leagues   league headers and player statuses
+ *   scores    league dayScores
+ *   reports   league gameReports
+ * </pre>
+ * Index offsets are relative to the start of their section. On restore each section is
+ * mapped separately; players and league headers are decoded straight away while every
+ * league keeps only the location of its scores and reports, which are decoded the first
+ * time they are used.
+ * <p>
+ * A snapshot is written to a temporary file and moved into place, so an existing snapshot
+ * is never left half-written.
+ * <p>
+ * A delta snapshot ({@link #writeDelta}) has the same layout but only holds the scores and
+ * reports of leagues whose dayScores or gameReports changed; the index length of a section
+ * left out is -1. Leagues read from a delta must inherit those sections from their previous
+ * state (see {@link SnapshotShards}) before they are used.
+ * <p>
+ * Checkpoint writes ({@link #writeCheckpoint}, {@link #writeDelta}) also point each written
+ * league at its sections in the new file, so a league can release its decoded sections and
+ * read them back from there later. Plain {@link #write} is for exports and leaves the
+ * leagues as they are.
+ */
+public class Snapshot {
+
+    public static final int MAGIC = 0x474C534E; // "GLSN"
+    // version 2 holds EntityCodec version 2 records, version 1 those of version 1
+    public static final int VERSION = 2;
+
+    private static final int HEADER_SIZE = 64;
+    private static final int PLAYER_INDEX_SIZE = 12;
+    private static final int LEAGUE_INDEX_SIZE = 28;
+
+    private final ArrayList<Player> players;
+    private final ArrayList<League> leagues;
+
+    Snapshot(ArrayList<Player> players, ArrayList<League> leagues) {
+        this.players = players;
+        this.leagues = leagues;
+    }
+
+    public ArrayList<Player> getPlayers() {
+        return this.players;
+    }
+
+    public ArrayList<League> getLeagues() {
+        return this.leagues;
+    }
+
+    public static void write(String filename, List<Player> players, List<League> leagues) throws IOException {
+        write(filename, players, leagues, false, false);
+    }
+
+    // writes a snapshot the leagues' sections are read back from, see the class comment
+    static void writeCheckpoint(String filename, List<Player> players, List<League> leagues) throws IOException {
+        write(filename, players, leagues, false, true);
+    }
+
+    // writes only the changed sections of each league, see the class comment
+    static void writeDelta(String filename, Collection<Player> players, Collection<League> leagues) throws IOException {
+        write(filename, players, leagues, true, true);
+    }
+
+    private static void write(String filename, Collection<Player> players, Collection<League> leagues,
+                              boolean delta, boolean relocate) throws IOException {
+        ByteArrayOutputStream playerBytes = new ByteArrayOutputStream();
+        ByteArrayOutputStream leagueBytes = new ByteArrayOutputStream();
+        ByteArrayOutputStream scoreBytes = new ByteArrayOutputStream();
+        ByteArrayOutputStream reportBytes = new ByteArrayOutputStream();
+        DataOutputStream playerOut = new DataOutputStream(playerBytes);
+        DataOutputStream leagueOut = new DataOutputStream(leagueBytes);
+        DataOutputStream scoreOut = new DataOutputStream(scoreBytes);
+        DataOutputStream reportOut = new DataOutputStream(reportBytes);
+
+        ByteBuffer index = ByteBuffer.allocate(players.size() * PLAYER_INDEX_SIZE + leagues.size() * LEAGUE_INDEX_SIZE);
+        for (Player p : players) {
+            int start = playerOut.size();
+            p.write(playerOut);
+            index.putInt(p.getId()).putInt(start).putInt(playerOut.size() - start);
+        }
+        for (League l : leagues) {
+            int headerStart = leagueOut.size();
+            l.writeHeader(leagueOut);
+            l.writePlayerStatus(leagueOut);
+            int scoresStart = scoreOut.size();
+            int scoresLength = LeagueSections.ABSENT;
+            if (!delta || (l.getDirtySections() & League.DAY_SCORES) != 0) {
+                l.writeDayScores(scoreOut);
+                scoresLength = scoreOut.size() - scoresStart;
+            }
+            int reportsStart = reportOut.size();
+            int reportsLength = LeagueSections.ABSENT;
+            if (!delta || (l.getDirtySections() & League.GAME_REPORTS) != 0) {
+                l.writeGameReports(reportOut);
+                reportsLength = reportOut.size() - reportsStart;
+            }
+            index.putInt(l.getId())
+                 .putInt(headerStart).putInt(leagueOut.size() - headerStart)
+                 .putInt(scoresStart).putInt(scoresLength)
+                 .putInt(reportsStart).putInt(reportsLength);
+        }
+
+        long indexOffset = HEADER_SIZE;
+        long playersOffset = indexOffset + index.capacity();
+        long leaguesOffset = playersOffset + playerBytes.size();
+        long scoresOffset = leaguesOffset + leagueBytes.size();
+        long reportsOffset = scoresOffset + scoreBytes.size();
+        long fileLength = reportsOffset + reportBytes.size();
+
+        Path target = Paths.get(filename).toAbsolutePath();
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, playersOffset);
+            header.putInt(MAGIC).putInt(VERSION).putInt(players.size()).putInt(leagues.size())
+                  .putLong(indexOffset).putLong(playersOffset).putLong(leaguesOffset)
+                  .putLong(scoresOffset).putLong(reportsOffset).putLong(fileLength);
+            header.position(HEADER_SIZE);
+            header.put(index.array());
+            header.force();
+
+            writeSection(channel, playersOffset, playerBytes);
+            writeSection(channel, leaguesOffset, leagueBytes);
+            ByteBuffer scoreSection = writeSection(channel, scoresOffset, scoreBytes);
+            ByteBuffer reportSection = writeSection(channel, reportsOffset, reportBytes);
+
+            if (relocate) {
+                // the mappings outlive the channel and the move below
+                index.position(players.size() * PLAYER_INDEX_SIZE);
+                for (League l : leagues) {
+                    index.position(index.position() + 12); // id, header offset/length
+                    l.relocateSections(new LeagueSections(scoreSection, index.getInt(), index.getInt(),
+                            reportSection, index.getInt(), index.getInt()));
+                }
+            }
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // returns a read-only view of the written section
+    private static ByteBuffer writeSection(FileChannel channel, long offset, ByteArrayOutputStream bytes) throws IOException {
+        if (bytes.size() == 0) {
+            return ByteBuffer.allocate(0);
+        }
+        MappedByteBuffer section = channel.map(FileChannel.MapMode.READ_WRITE, offset, bytes.size());
+        section.put(bytes.toByteArray());
+        section.force();
+        return section.asReadOnlyBuffer();
+    }
+
+    public static Snapshot read(String filename) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) {
+                throw new IOException(filename + " is not a GamesLeague snapshot");
+            }
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            if (header.getInt() != MAGIC) {
+                throw new IOException(filename + " is not a GamesLeague snapshot");
+            }
+            int version = header.getInt();
+            if (version < 1 || version > VERSION) {
+                throw new IOException("Unsupported snapshot version " + version);
+            }
+            int codecVersion = version == 1 ? 1 : EntityCodec.VERSION;
+            int playerCount = header.getInt();
+            int leagueCount = header.getInt();
+            long indexOffset = header.getLong();
+            long playersOffset = header.getLong();
+            long leaguesOffset = header.getLong();
+            long scoresOffset = header.getLong();
+            long reportsOffset = header.getLong();
+            long fileLength = header.getLong();
+            if (channel.size() < fileLength) {
+                throw new IOException(filename + " is truncated");
+            }
+
+            // a mapping stays valid after its channel is closed
+            MappedByteBuffer index = channel.map(FileChannel.MapMode.READ_ONLY, indexOffset, playersOffset - indexOffset);
+            MappedByteBuffer playerSection = channel.map(FileChannel.MapMode.READ_ONLY, playersOffset, leaguesOffset - playersOffset);
+            MappedByteBuffer leagueSection = channel.map(FileChannel.MapMode.READ_ONLY, leaguesOffset, scoresOffset - leaguesOffset);
+            MappedByteBuffer scoreSection = channel.map(FileChannel.MapMode.READ_ONLY, scoresOffset, reportsOffset - scoresOffset);
+            MappedByteBuffer reportSection = channel.map(FileChannel.MapMode.READ_ONLY, reportsOffset, fileLength - reportsOffset);
+
+            ArrayList<Player> players = new ArrayList<>(playerCount);
+            for (int i = 0; i < playerCount; i++) {
+                index.getInt(); // id
+                int offset = index.getInt();
+                int length = index.getInt();
+                players.add(Player.read(input(playerSection, offset, length), codecVersion));
+            }
+
+            ArrayList<League> leagues = new ArrayList<>(leagueCount);
+            for (int i = 0; i < leagueCount; i++) {
+                index.getInt(); // id
+                int headerStart = index.getInt();
+                int headerLength = index.getInt();
+                int scoresStart = index.getInt();
+                int scoresLength = index.getInt();
+                int reportsStart = index.getInt();
+                int reportsLength = index.getInt();
+
+                DataInput in = input(leagueSection, headerStart, headerLength);
+                League league = League.readHeader(in, codecVersion);
+                league.readPlayerStatus(in);
+                league.setLazySections(new LeagueSections(scoreSection, scoresStart, scoresLength,
+                        reportSection, reportsStart, reportsLength));
+                leagues.add(league);
+            }
+            return new Snapshot(players, leagues);
+        }
+    }
+
+    private static DataInput input(ByteBuffer section, int offset, int length) {
+        byte[] bytes = new byte[length];
+        section.get(offset, bytes);
+        return new DataInputStream(new ByteArrayInputStream(bytes));
+    }
+
+}
@@ -0,0 +1,368 @@
+package gamesleague;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Checkpoint of a save folder split into shards, with a chain of deltas on top.
+ * <p>
+ * The base is one snapshot of players and {@value #SHARD_COUNT} snapshots of leagues,
+ * bucketed by leagueId. Each shard is an ordinary {@link Snapshot} and can be read on its
+ * own; whole folders are read and written with one task per shard in parallel.
+ * <p>
+ * Checkpoints after the first only write a delta snapshot of the players and leagues that
+ * changed (see {@link Snapshot#writeDelta}), so their cost follows the size of the change
+ * rather than the size of the system. The leagues removed since the previous checkpoint
+ * are listed with each delta in the manifest, as tombstones. Deltas are applied over the
+ * base in order when the folder is read, each dropping the leagues it lists as removed. {@link #merge} folds the deltas into the base shards they touch and drops
+ * them from the chain; it reads and writes files only, so it can run in the background.
+ * <p>
+ * A small MANIFEST file records the layout and the delta chain with its tombstones. It is written after the
+ * first full set of shards, so a folder without a manifest never has a partial shard set
+ * in use, and it is replaced atomically whenever the chain changes.
+ */
+public class SnapshotShards {
+
+    public static final int SHARD_COUNT = 16;
+    public static final String MANIFEST_FILE = "MANIFEST";
+    public static final String PLAYERS_FILE = "players.snap";
+
+    private static final int MANIFEST_MAGIC = 0x474C4D46; // "GLMF"
+    // version 3 adds the leagues removed with each delta
+    private static final int MANIFEST_VERSION = 3;
+
+    // guards read-modify-write of manifests; held only briefly, so one lock serves every folder
+    private static final Object MANIFEST_LOCK = new Object();
+
+    private SnapshotShards() {
+    }
+
+    public static int shardOf(int leagueId) {
+        return Math.floorMod(leagueId, SHARD_COUNT);
+    }
+
+    public static String shardFile(int shard) {
+        return String.format("leagues-%02d.snap", shard);
+    }
+
+    public static String deltaFile(int sequence) {
+        return String.format("delta-%06d.snap", sequence);
+    }
+
+    // true once a folder has a complete, manifest-listed set of shards
+    public static boolean exists(String saveDir) {
+        return new File(saveDir, MANIFEST_FILE).exists();
+    }
+
+    // number of deltas waiting to be merged into the base
+    public static int deltaCount(String saveDir) throws IOException {
+        synchronized (MANIFEST_LOCK) {
+            return readManifest(saveDir).deltas.size();
+        }
+    }
+
+    /**
+     * Reads the base shards in parallel and applies the delta chain over them.
+     * Players and leagues are returned in id (creation) order.
+     */
+    public static Snapshot read(String saveDir) throws IOException {
+        Manifest manifest;
+        synchronized (MANIFEST_LOCK) {
+            manifest = readManifest(saveDir);
+        }
+        HashMap<Integer, Player> players = byPlayerId(Snapshot.read(saveDir + "/" + PLAYERS_FILE).getPlayers());
+        HashMap<Integer, League> leagues = byLeagueId(readShards(saveDir, allShards()));
+        ArrayList<Snapshot> deltas = readDeltas(saveDir, manifest.deltas);
+        for (int i = 0; i < deltas.size(); i++) {
+            apply(deltas.get(i), manifest.removedWith(manifest.deltas.get(i)), players, leagues);
+        }
+        return new Snapshot(sortedPlayers(players), sortedLeagues(leagues));
+    }
+
+    // reads a single league shard of the base independently of the others
+    public static ArrayList<League> readShard(String saveDir, int shard) throws IOException {
+        return Snapshot.read(saveDir + "/" + shardFile(shard)).getLeagues();
+    }
+
+    /**
+     * Rewrites the whole base: the players snapshot and every league shard.
+     * Any deltas are dropped from the chain, since the new base already holds them.
+     */
+    public static void write(String saveDir, List<Player> players, List<League> leagues) throws IOException {
+        writeShards(saveDir, players, leagues, allShards());
+        List<Integer> dropped;
+        synchronized (MANIFEST_LOCK) {
+            Manifest manifest = exists(saveDir) ? readManifest(saveDir) : new Manifest();
+            dropped = manifest.deltas;
+            manifest.deltas = new ArrayList<>();
+            manifest.removed.clear();
+            writeManifest(saveDir, manifest);
+        }
+        deleteDeltas(saveDir, dropped);
+    }
+
+    /**
+     * Writes the changed players and leagues as the next delta of the chain, with the ids of
+     * the leagues removed since the last one as its tombstones.
+     * The base must already exist. Returns the number of deltas now in the chain.
+     */
+    public static int writeDelta(String saveDir, Collection<Player> players, Collection<League> leagues,
+                                 Collection<Integer> removedLeagues) throws IOException {
+        synchronized (MANIFEST_LOCK) {
+            Manifest manifest = readManifest(saveDir);
+            int sequence = manifest.nextDelta;
+            Snapshot.writeDelta(saveDir + "/" + deltaFile(sequence), players, leagues);
+            manifest.deltas.add(sequence);
+            if (!removedLeagues.isEmpty()) {
+                manifest.removed.put(sequence, removedLeagues.stream().mapToInt(Integer::intValue).toArray());
+            }
+            manifest.nextDelta = sequence + 1;
+            writeManifest(saveDir, manifest);
+            return manifest.deltas.size();
+        }
+    }
+
+    /**
+     * Folds every delta currently in the chain into the base, rewriting only the players
+     * snapshot and the league shards the deltas touch or remove leagues from, then drops
+     * them from the chain.
+     * Deltas written while the merge runs stay in the chain. Must not run at the same time
+     * as another merge or a full {@link #write} of the same folder.
+     * Returns the number of deltas merged.
+     */
+    public static int merge(String saveDir) throws IOException {
+        Manifest chain;
+        synchronized (MANIFEST_LOCK) {
+            chain = readManifest(saveDir);
+        }
+        List<Integer> merged = chain.deltas;
+        if (merged.isEmpty()) {
+            return 0;
+        }
+        ArrayList<Snapshot> deltas = readDeltas(saveDir, merged);
+
+        boolean playersTouched = false;
+        TreeSet<Integer> touchedShards = new TreeSet<>();
+        for (Snapshot delta : deltas) {
+            playersTouched |= !delta.getPlayers().isEmpty();
+            for (League l : delta.getLeagues()) {
+                touchedShards.add(shardOf(l.getId()));
+            }
+        }
+        for (int sequence : merged) {
+            for (int leagueId : chain.removedWith(sequence)) {
+                touchedShards.add(shardOf(leagueId));
+            }
+        }
+
+        HashMap<Integer, Player> players = playersTouched
+                ? byPlayerId(Snapshot.read(saveDir + "/" + PLAYERS_FILE).getPlayers())
+                : new HashMap<>();
+        HashMap<Integer, League> leagues = byLeagueId(readShards(saveDir, touchedShards));
+        for (int i = 0; i < deltas.size(); i++) {
+            apply(deltas.get(i), chain.removedWith(merged.get(i)), players, leagues);
+        }
+
+        // a crash before the manifest below is harmless: the deltas are applied again on the next read
+        writeShards(saveDir, playersTouched ? sortedPlayers(players) : null, sortedLeagues(leagues), touchedShards);
+        synchronized (MANIFEST_LOCK) {
+            Manifest manifest = readManifest(saveDir);
+            manifest.deltas.removeAll(merged);
+            manifest.removed.keySet().removeAll(merged);
+            writeManifest(saveDir, manifest);
+        }
+        deleteDeltas(saveDir, merged);
+        return merged.size();
+    }
+
+    // replaces players and leagues by id with their state in the delta, then drops the removed leagues
+    private static void apply(Snapshot delta, int[] removedLeagues, HashMap<Integer, Player> players,
+                              HashMap<Integer, League> leagues) {
+        for (Player p : delta.getPlayers()) {
+            players.put(p.getId(), p);
+        }
+        for (League l : delta.getLeagues()) {
+            l.inheritSections(leagues.get(l.getId()));
+            leagues.put(l.getId(), l);
+        }
+        for (int leagueId : removedLeagues) {
+            leagues.remove(leagueId);
+        }
+    }
+
+    // rewrites the players snapshot (if players is not null) and the given league shards in parallel
+    private static void writeShards(String saveDir, List<Player> players, List<League> leagues,
+                                    Collection<Integer> shards) throws IOException {
+        ArrayList<ArrayList<League>> buckets = new ArrayList<>(SHARD_COUNT);
+        for (int i = 0; i < SHARD_COUNT; i++) {
+            buckets.add(new ArrayList<>());
+        }
+        for (League l : leagues) {
+            int shard = shardOf(l.getId());
+            if (shards.contains(shard)) {
+                buckets.get(shard).add(l);
+            }
+        }
+
+        try {
+            shards.parallelStream().forEach(shard -> {
+                try {
+                    Snapshot.writeCheckpoint(saveDir + "/" + shardFile(shard), new ArrayList<>(), buckets.get(shard));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        if (players != null) {
+            Snapshot.write(saveDir + "/" + PLAYERS_FILE, players, new ArrayList<>());
+        }
+    }
+
+    private static ArrayList<League> readShards(String saveDir, Collection<Integer> shards) throws IOException {
+        ArrayList<League> leagues = new ArrayList<>();
+        try {
+            List<ArrayList<League>> read = shards.parallelStream()
+                    .map(shard -> {
+                        try {
+                            return readShard(saveDir, shard);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    })
+                    .collect(Collectors.toList());
+            for (ArrayList<League> shard : read) {
+                leagues.addAll(shard);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return leagues;
+    }
+
+    private static ArrayList<Snapshot> readDeltas(String saveDir, List<Integer> sequences) throws IOException {
+        ArrayList<Snapshot> deltas = new ArrayList<>(sequences.size());
+        for (int sequence : sequences) {
+            deltas.add(Snapshot.read(saveDir + "/" + deltaFile(sequence)));
+        }
+        return deltas;
+    }
+
+    private static void deleteDeltas(String saveDir, List<Integer> sequences) {
+        for (int sequence : sequences) {
+            new File(saveDir, deltaFile(sequence)).delete();
+        }
+    }
+
+    private static List<Integer> allShards() {
+        return IntStream.range(0, SHARD_COUNT).boxed().collect(Collectors.toList());
+    }
+
+    private static HashMap<Integer, Player> byPlayerId(List<Player> players) {
+        HashMap<Integer, Player> byId = new HashMap<>();
+        for (Player p : players) {
+            byId.put(p.getId(), p);
+        }
+        return byId;
+    }
+
+    private static HashMap<Integer, League> byLeagueId(List<League> leagues) {
+        HashMap<Integer, League> byId = new HashMap<>();
+        for (League l : leagues) {
+            byId.put(l.getId(), l);
+        }
+        return byId;
+    }
+
+    private static ArrayList<Player> sortedPlayers(HashMap<Integer, Player> players) {
+        ArrayList<Player> sorted = new ArrayList<>(players.values());
+        sorted.sort(Comparator.comparingInt(Player::getId));
+        return sorted;
+    }
+
+    private static ArrayList<League> sortedLeagues(HashMap<Integer, League> leagues) {
+        ArrayList<League> sorted = new ArrayList<>(leagues.values());
+        sorted.sort(Comparator.comparingInt(League::getId));
+        return sorted;
+    }
+
+    // layout of a save folder: the next delta number, the deltas still to be merged and
+    // the leagues removed with each of them
+    private static class Manifest {
+        int nextDelta;
+        List<Integer> deltas = new ArrayList<>();
+        HashMap<Integer, int[]> removed = new HashMap<>();
+
+        int[] removedWith(int sequence) {
+            return removed.getOrDefault(sequence, new int[0]);
+        }
+    }
+
+    private static void writeManifest(String saveDir, Manifest manifest) throws IOException {
+        Path target = Paths.get(saveDir, MANIFEST_FILE);
+        Path temp = Paths.get(saveDir, MANIFEST_FILE + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(temp.toFile()))) {
+            out.writeInt(MANIFEST_MAGIC);
+            out.writeInt(MANIFEST_VERSION);
+            out.writeInt(SHARD_COUNT);
+            out.writeInt(manifest.nextDelta);
+            out.writeInt(manifest.deltas.size());
+            for (int sequence : manifest.deltas) {
+                out.writeInt(sequence);
+                int[] removed = manifest.removedWith(sequence);
+                out.writeInt(removed.length);
+                for (int leagueId : removed) {
+                    out.writeInt(leagueId);
+                }
+            }
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static Manifest readManifest(String saveDir) throws IOException {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(new File(saveDir, MANIFEST_FILE)))) {
+            if (in.readInt() != MANIFEST_MAGIC) {
+                throw new IOException(saveDir + "/" + MANIFEST_FILE + " is not a GamesLeague manifest");
+            }
+            int version = in.readInt();
+            if (version < 1 || version > MANIFEST_VERSION) {
+                throw new IOException("Unsupported manifest version " + version);
+            }
+            int shardCount = in.readInt();
+            if (shardCount != SHARD_COUNT) {
+                throw new IOException("Save folder has " + shardCount + " shards, expected " + SHARD_COUNT);
+            }
+            Manifest manifest = new Manifest();
+            // version 1 manifests were written before deltas and describe a base only,
+            // version 2 ones before tombstones
+            if (version >= 2) {
+                manifest.nextDelta = in.readInt();
+                int deltaCount = in.readInt();
+                for (int i = 0; i < deltaCount; i++) {
+                    int sequence = in.readInt();
+                    manifest.deltas.add(sequence);
+                    if (version >= 3) {
+                        int[] removed = new int[in.readInt()];
+                        for (int j = 0; j < removed.length; j++) {
+                            removed[j] = in.readInt();
+                        }
+                        if (removed.length > 0) {
+                            manifest.removed.put(sequence, removed);
+                        }
+                    }
+                }
+            }
+            return manifest;
+        }
+    }
+
+}
@@ -0,0 +1,46 @@
+package gamesleague;
+
+/**
+ * Where a {@link GamesLeagueStore} keeps its players and leagues between runs.
+ * <p>
+ * The store always serves reads from memory; the engine only decides how changes are
+ * persisted and how the store is filled when it is created. Available engines:
+ * <pre>
+ *   InMemoryStorageEngine  nothing is persisted, for tests and benchmarks
+ *   FileStorageEngine      serialised Players.ser / Leagues.ser checkpoints plus a journal
+ *   MappedStorageEngine    sharded memory-mapped snapshots with deltas plus a journal
+ * </pre>
+ * An engine is used by one store only; {@link #load} is called once, when the store is created.
+ */
+public interface StorageEngine {
+
+    // fills the store with everything persisted so far
+    void load(GamesLeagueStore store);
+
+    // a player was added or changed
+    void playerChanged(Player player);
+
+    // a league was added or changed
+    void leagueChanged(League league);
+
+    // a league was removed; its id is never used again
+    void leagueRemoved(int leagueId);
+
+    // everything in the store was replaced, e.g. by loadGamesLeagueData
+    void contentsReplaced();
+
+    // writes changes still held back by the engine; a failed write is thrown as an UncheckedIOException
+    void flush();
+
+    // folds the changes persisted so far into the engine's compact form; a failed write is
+    // thrown as an UncheckedIOException and leaves what was persisted before untouched
+    void checkpoint();
+
+    // flushes anything pending and stops background work
+    void close();
+
+    // the allocator for the ids kept under the given name, e.g. "nextId.ser"; called by the
+    // store before load, once per name
+    IdAllocator idAllocator(String name);
+
+}
@@ -0,0 +1,140 @@
+package gamesleague;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Locks that let a {@link GamesLeague} serve many threads at once.
+ * <p>
+ * League ids and player ids are each spread over a fixed set of lock stripes, so
+ * operations on different leagues almost always hold different locks and run in
+ * parallel. Every operation also holds the shared side of one read-write lock for
+ * its whole length; work on the whole store, such as a checkpoint or loading saved
+ * data, holds the exclusive side and so runs between operations.
+ * <p>
+ * Locks are only ever taken in one order: the read-write lock, then league stripes
+ * by ascending index, then player stripes by ascending index. An operation names
+ * every league and player it needs when it locks, so two operations can never each
+ * hold a lock the other is waiting for. All locks are reentrant, which lets an
+ * operation call another that needs no more than it holds.
+ */
+public class StripedLocks {
+
+    public static final int DEFAULT_STRIPES = 64;
+
+    private final ReentrantReadWriteLock operations = new ReentrantReadWriteLock();
+    private final ReentrantLock[] leagueStripes;
+    private final ReentrantLock[] playerStripes;
+    private final int shift;
+    // run by a thread once it has finished its outermost operation
+    private final Runnable afterOperation;
+
+    public StripedLocks(int stripes, Runnable afterOperation) {
+        int count = 1;
+        while (count < stripes) {
+            count <<= 1;
+        }
+        leagueStripes = new ReentrantLock[count];
+        playerStripes = new ReentrantLock[count];
+        for (int i = 0; i < count; i++) {
+            leagueStripes[i] = new ReentrantLock();
+            playerStripes[i] = new ReentrantLock();
+        }
+        shift = count == 1 ? 32 : Integer.numberOfLeadingZeros(count) + 1;
+        this.afterOperation = afterOperation;
+    }
+
+    // an operation that only reads or changes the store's indexes
+    public Held shared() {
+        return lock(new int[0], new int[0]);
+    }
+
+    public Held league(int leagueId) {
+        return lock(new int[] {leagueId}, new int[0]);
+    }
+
+    public Held player(int playerId) {
+        return lock(new int[0], new int[] {playerId});
+    }
+
+    public Held leagueAndPlayer(int leagueId, int playerId) {
+        return lock(new int[] {leagueId}, new int[] {playerId});
+    }
+
+    // an operation on every given league and player, locked in stripe order
+    public Held lock(int[] leagueIds, int[] playerIds) {
+        Lock[] leagues = stripes(leagueStripes, leagueIds);
+        Lock[] players = stripes(playerStripes, playerIds);
+        Lock[] locks = new Lock[1 + leagues.length + players.length];
+        locks[0] = operations.readLock();
+        System.arraycopy(leagues, 0, locks, 1, leagues.length);
+        System.arraycopy(players, 0, locks, 1 + leagues.length, players.length);
+        return new Held(locks, true);
+    }
+
+    // waits for every operation in progress and keeps new ones out until released
+    public Held exclusive() {
+        return new Held(new Lock[] {operations.writeLock()}, false);
+    }
+
+    // the distinct stripes of the ids, in ascending index order
+    private Lock[] stripes(ReentrantLock[] stripes, int[] ids) {
+        int[] indexes = new int[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            indexes[i] = ((ids[i] * 0x9E3779B9) >>> shift) & (stripes.length - 1);
+        }
+        Arrays.sort(indexes);
+        int distinct = 0;
+        for (int i = 0; i < indexes.length; i++) {
+            if (i == 0 || indexes[i] != indexes[i - 1]) {
+                indexes[distinct++] = indexes[i];
+            }
+        }
+        Lock[] locks = new Lock[distinct];
+        for (int i = 0; i < distinct; i++) {
+            locks[i] = stripes[indexes[i]];
+        }
+        return locks;
+    }
+
+    /**
+     * Locks held by one operation, released in reverse order when closed.
+     */
+    public final class Held implements AutoCloseable {
+
+        private final Lock[] locks;
+        private final boolean shared;
+
+        private Held(Lock[] locks, boolean shared) {
+            this.locks = locks;
+            this.shared = shared;
+            int taken = 0;
+            try {
+                for (Lock lock : locks) {
+                    lock.lock();
+                    taken++;
+                }
+            } finally {
+                if (taken < locks.length) {
+                    unlock(taken);
+                }
+            }
+        }
+
+        public void close() {
+            unlock(locks.length);
+            if (shared && operations.getReadHoldCount() == 0) {
+                afterOperation.run();
+            }
+        }
+
+        private void unlock(int taken) {
+            for (int i = taken - 1; i >= 0; i--) {
+                locks[i].unlock();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,43 @@
+package gamesleague;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Creates the executors running the tasks of {@link AsyncGamesLeague} and
+ * {@link LeagueActors}: a virtual thread per task where the Java runtime has them
+ * (Java 21 on), and a cached pool of daemon threads otherwise.
+ */
+final class TaskExecutors {
+
+    private TaskExecutors() {
+    }
+
+    // a virtual thread per task where the runtime has them, else a cached pool of daemon
+    // threads with the given name
+    static ExecutorService newTaskExecutor(String threadName) {
+        ExecutorService virtual = newVirtualThreadExecutor();
+        if (virtual != null) {
+            return virtual;
+        }
+        return Executors.newCachedThreadPool(task -> {
+            Thread thread = new Thread(task, threadName);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor(), or null if this runtime has none; looked
+    // up by reflection so the class still builds and runs on Java 17
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // not there, or a preview feature that is not enabled
+            return null;
+        }
+    }
+
+}